@@ -11,7 +11,6 @@ import java.util.List;
  * @author 230018374
  */
 public class Actors {
-  private static int amountOfActors = 1;
   private final String name;
   private final String birthday;
   private final int age;
@@ -24,18 +23,18 @@ public class Actors {
    * initialises ArrayList for the awardIDs and movieIDs, which are later used to fill data for
    * other intermediate tables.
    *
+   * @param id the actor's ID, which is its position in the Actors file starting from 1
    * @param name the actors name
    * @param age the actors age
    * @param birthday the actors birthday
    */
-  public Actors(String name, int age, String birthday) {
+  public Actors(int id, String name, int age, String birthday) {
     this.name = name;
     this.age = age;
     this.birthday = birthday;
     this.awardIDs = new ArrayList<>();
     this.movieIDs = new ArrayList<>();
-    this.id = amountOfActors;
-    amountOfActors++;
+    this.id = id;
   }
 
   /**
@@ -0,0 +1,251 @@
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.PriorityQueue;
+import javax.sql.rowset.CachedRowSet;
+
+/**
+ * Type-ahead index over the names of the actors, the directors and the movies. Every name is kept
+ * in a single array sorted by its lower case form, so the names starting with a prefix are the
+ * ones between two binary searches, and the best ones of that range are picked by their
+ * popularity without going through the rest of the names.
+ *
+ * <p>The popularity of a name is the amount of rows that point to it: movies and awards for the
+ * actors, movies directed and awards for the directors, and cast members and awards for the
+ * movies. Ties are broken alphabetically.
+ *
+ * <p>The index is built by PopulateDB once the tables have been filled out, and by QueryServer
+ * when it starts. It is built again from the tables if the QueryCache has been invalidated since
+ * then, in the same way as the NameFilters.
+ *
+ * @author 230018374
+ */
+public class Autocomplete {
+  /** Amount of names given for a prefix, set with the moviesdb.autocomplete.limit property. */
+  public static final int DEFAULT_LIMIT = Integer.getInteger("moviesdb.autocomplete.limit", 10);
+
+  private static final String[] KINDS = {"Actor", "Director", "Movie"};
+  private static final String[] SOURCES = {
+      "SELECT a.name, (SELECT COUNT(*) FROM Cast c WHERE c.actorID = a.actorID) "
+          + "+ (SELECT COUNT(*) FROM awardWinningActor w WHERE w.actorID = a.actorID) FROM Actors a",
+      "SELECT d.name, (SELECT COUNT(*) FROM Movies m WHERE m.directorID = d.directorID) "
+          + "+ (SELECT COUNT(*) FROM awardWinningDirector w WHERE w.directorID = d.directorID) FROM Director d",
+      "SELECT m.name, (SELECT COUNT(*) FROM Cast c WHERE c.movieID = m.movieID) "
+          + "+ (SELECT COUNT(*) FROM awardWinningMovie w WHERE w.movieID = m.movieID) FROM Movies m"
+  };
+
+  private static Autocomplete current;
+  private static long currentGeneration;
+
+  private final String[] keys;
+  private final String[] names;
+  private final byte[] kinds;
+  private final int[] scores;
+
+  private Autocomplete(String[] keys, String[] names, byte[] kinds, int[] scores) {
+    this.keys = keys;
+    this.names = names;
+    this.kinds = kinds;
+    this.scores = scores;
+  }
+
+  /**
+   * Reads the names of the actors, directors and movies together with their popularity and sorts
+   * them into a new index
+   *
+   * @param conn an open connection to the database
+   * @return the index of the names
+   * @throws SQLException if the tables cannot be read
+   */
+  public static Autocomplete build(Connection conn) throws SQLException {
+    List<String> names = new ArrayList<>();
+    List<Integer> scores = new ArrayList<>();
+    List<Byte> kinds = new ArrayList<>();
+
+    try (Statement statement = conn.createStatement()) {
+      for (byte kind = 0; kind < SOURCES.length; kind++) {
+        try (ResultSet rs = statement.executeQuery(SOURCES[kind])) {
+          while (rs.next()) {
+            if (rs.getString(1) != null) {
+              names.add(rs.getString(1));
+              scores.add(rs.getInt(2));
+              kinds.add(kind);
+            }
+          }
+        }
+      }
+    }
+
+    String[] lowerCase = new String[names.size()];
+
+    for (int i = 0; i < lowerCase.length; i++) {
+      lowerCase[i] = names.get(i).toLowerCase(Locale.ROOT);
+    }
+
+    Integer[] order = new Integer[lowerCase.length];
+
+    for (int i = 0; i < order.length; i++) {
+      order[i] = i;
+    }
+    Arrays.sort(order, Comparator.comparing((Integer i) -> lowerCase[i]).thenComparing(names::get));
+
+    String[] sortedKeys = new String[order.length];
+    String[] sortedNames = new String[order.length];
+    byte[] sortedKinds = new byte[order.length];
+    int[] sortedScores = new int[order.length];
+
+    for (int i = 0; i < order.length; i++) {
+      sortedKeys[i] = lowerCase[order[i]];
+      sortedNames[i] = names.get(order[i]);
+      sortedKinds[i] = kinds.get(order[i]);
+      sortedScores[i] = scores.get(order[i]);
+    }
+    return new Autocomplete(sortedKeys, sortedNames, sortedKinds, sortedScores);
+  }
+
+  /**
+   * Gives the index of the current contents of the database, building it if it has not been built
+   * since the last time the QueryCache was invalidated
+   *
+   * @return the index of the names
+   * @throws ClassNotFoundException if the drivers are not loaded
+   * @throws SQLException if the tables cannot be read
+   */
+  public static synchronized Autocomplete current() throws ClassNotFoundException, SQLException {
+    long generation = QueryDB.getQueryCache().getGeneration();
+
+    if (current == null || currentGeneration != generation) {
+      try (Connection conn = InitialiseDB.readPreparation()) {
+        current = build(conn);
+        currentGeneration = generation;
+      }
+    }
+    return current;
+  }
+
+  /**
+   * Makes the passed index the current one. It is only used while the QueryCache stays in the
+   * generation it was built in.
+   *
+   * @param index the index that has just been built
+   * @param generation the generation of the QueryCache read before the index was built
+   */
+  public static synchronized void install(Autocomplete index, long generation) {
+    current = index;
+    currentGeneration = generation;
+  }
+
+  /**
+   * Finds the most popular names that start with a prefix, ignoring its case
+   *
+   * @param prefix the start of the names
+   * @param limit the maximum amount of names given
+   * @return the positions of the names in the index, most popular first
+   */
+  public int[] complete(String prefix, int limit) {
+    if (limit < 1) {
+      throw new IllegalArgumentException("At least one name has to be given");
+    }
+
+    String key = prefix.toLowerCase(Locale.ROOT);
+    int from = lowerBound(key);
+    int to = upperBound(key, from);
+
+    Comparator<Integer> ranking =
+        Comparator.comparingInt((Integer i) -> scores[i]).thenComparing(i -> -i);
+    PriorityQueue<Integer> best = new PriorityQueue<>(limit + 1, ranking);
+
+    for (int i = from; i < to; i++) {
+      if (best.size() < limit) {
+        best.add(i);
+      } else if (ranking.compare(i, best.peek()) > 0) {
+        best.poll();
+        best.add(i);
+      }
+    }
+
+    int[] found = new int[best.size()];
+
+    for (int i = found.length - 1; i >= 0; i--) {
+      found[i] = best.poll();
+    }
+    return found;
+  }
+
+  /**
+   * Gives the rows of the most popular names that start with a prefix, with the columns Name,
+   * Type and Score
+   *
+   * @param prefix the start of the names, in any case
+   * @param limit the maximum amount of names given
+   * @return the rows of the names, most popular first
+   * @throws SQLException if the rows cannot be created
+   */
+  public CachedRowSet completionRows(String prefix, int limit) throws SQLException {
+    CachedRowSet rows =
+        QueryCursor.rows(
+            List.of("Name", "Type", "Score"), List.of(Types.VARCHAR, Types.VARCHAR, Types.INTEGER));
+
+    for (int i : complete(prefix, limit)) {
+      rows.moveToInsertRow();
+      rows.updateString(1, names[i]);
+      rows.updateString(2, KINDS[kinds[i]]);
+      rows.updateInt(3, scores[i]);
+      rows.insertRow();
+    }
+
+    rows.moveToCurrentRow();
+    rows.beforeFirst();
+    return rows;
+  }
+
+  /**
+   * Standard getter for the amount of names in the index
+   *
+   * @return the amount of names
+   */
+  public int getSize() {
+    return keys.length;
+  }
+
+  private int lowerBound(String key) {
+    int low = 0;
+    int high = keys.length;
+
+    while (low < high) {
+      int middle = (low + high) >>> 1;
+
+      if (keys[middle].compareTo(key) < 0) {
+        low = middle + 1;
+      } else {
+        high = middle;
+      }
+    }
+    return low;
+  }
+
+  // The keys that start with the prefix come straight after its lower bound, so the first one
+  // after them is found with a binary search on whether a key starts with it
+  private int upperBound(String key, int from) {
+    int low = from;
+    int high = keys.length;
+
+    while (low < high) {
+      int middle = (low + high) >>> 1;
+
+      if (keys[middle].startsWith(key)) {
+        low = middle + 1;
+      } else {
+        high = middle;
+      }
+    }
+    return low;
+  }
+}
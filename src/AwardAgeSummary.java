@@ -0,0 +1,160 @@
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Running totals behind the report of the average age of the actors that won an award of each
+ * institution, kept in the award_age_summary table with one row per institution: the amount of
+ * awards won by actors, the sum of the ages of those actors and the motive shown for the
+ * institution. The average is worked out from the two totals when it is read, so the report reads
+ * a handful of rows instead of joining the actors with every award they have won.
+ *
+ * <p>The motive shown is the one of the award with the lowest ID among the ones won by actors,
+ * which is the same one the grouped query used to show.
+ *
+ * <p>The table is rebuilt at the end of every population. Afterwards, triggers keep the totals up
+ * to date: a new or removed award of an actor, or a change in the age of an actor, adds or takes
+ * away its share from the totals of the institution, without reading the rest of its awards. The
+ * changes that are rare and can move awards between institutions, such as editing or removing an
+ * award, work the row of the institution out again.
+ *
+ * @author 230018374
+ */
+public class AwardAgeSummary {
+  private static final String SUMMARY_TABLE =
+      "CREATE TABLE IF NOT EXISTS award_age_summary(    awardInstitution VARCHAR(20) UNIQUE,    awardID INTEGER NOT NULL,    motive VARCHAR(100),    actorCount INTEGER NOT NULL,    ageSum INTEGER NOT NULL)";
+  private static final String SUMMARY_DELETION = "DROP TABLE IF EXISTS award_age_summary";
+  private static final String SUMMARY_CONTENT =
+      "INSERT INTO award_age_summary "
+          + "SELECT aw.awardInstitution, MIN(aw.awardID), aw.motive, COUNT(*), SUM(a.age) "
+          + "FROM awardWinningActor w INNER JOIN Actors a ON a.actorID = w.actorID "
+          + "INNER JOIN Awards aw ON aw.awardID = w.awardID";
+  private static final String SUMMARY_GROUPING = " GROUP BY aw.awardInstitution";
+  private static final String INSTITUTION_OF_NEW =
+      "(SELECT awardInstitution FROM Awards WHERE awardID = NEW.awardID)";
+  private static final String INSTITUTION_OF_OLD =
+      "(SELECT awardInstitution FROM Awards WHERE awardID = OLD.awardID)";
+
+  /**
+   * Creates the table if it does not exist, works out the totals again from the tables and creates
+   * the triggers that keep them up to date, all in one transaction
+   *
+   * @param conn an open connection to the database
+   * @return the amount of institutions in the table
+   * @throws SQLException if the table cannot be built
+   */
+  public static int rebuild(Connection conn) throws SQLException {
+    boolean previousAutoCommit = conn.getAutoCommit();
+    conn.setAutoCommit(false);
+
+    try (Statement statement = conn.createStatement()) {
+      statement.executeUpdate(SUMMARY_TABLE);
+      statement.executeUpdate("DELETE FROM award_age_summary");
+      int institutions = statement.executeUpdate(SUMMARY_CONTENT + SUMMARY_GROUPING);
+
+      for (String trigger : triggers()) {
+        statement.executeUpdate(trigger);
+      }
+      conn.commit();
+      QueryDB.getQueryCache().invalidate();
+      return institutions;
+    } catch (SQLException e) {
+      conn.rollback();
+      throw e;
+    } finally {
+      conn.setAutoCommit(previousAutoCommit);
+    }
+  }
+
+  /**
+   * Drops the table. The triggers go away with the tables they are on. It is run together with the
+   * SQL Deletion Script, so that a cleared database is empty again.
+   *
+   * @param conn an open connection to the database
+   * @throws SQLException if the table cannot be dropped
+   */
+  public static void drop(Connection conn) throws SQLException {
+    try (Statement statement = conn.createStatement()) {
+      statement.executeUpdate(SUMMARY_DELETION);
+    }
+  }
+
+  /**
+   * Gives the statements that create the triggers keeping the totals up to date
+   *
+   * @return the statements that create the triggers
+   */
+  public static List<String> triggers() {
+    List<String> triggers = new ArrayList<>();
+
+    triggers.add(
+        "CREATE TRIGGER IF NOT EXISTS award_age_summary_awardWinningActor_insert "
+            + "AFTER INSERT ON awardWinningActor BEGIN "
+            + "UPDATE award_age_summary SET actorCount = actorCount + 1, "
+            + "ageSum = ageSum + (SELECT age FROM Actors WHERE actorID = NEW.actorID), "
+            + "motive = CASE WHEN NEW.awardID < awardID "
+            + "THEN (SELECT motive FROM Awards WHERE awardID = NEW.awardID) ELSE motive END, "
+            + "awardID = MIN(awardID, NEW.awardID) "
+            + "WHERE awardInstitution IS " + INSTITUTION_OF_NEW + " "
+            + "AND EXISTS (SELECT 1 FROM Awards WHERE awardID = NEW.awardID) "
+            + "AND EXISTS (SELECT 1 FROM Actors WHERE actorID = NEW.actorID); "
+            + "INSERT INTO award_age_summary "
+            + "SELECT aw.awardInstitution, aw.awardID, aw.motive, 1, a.age FROM Awards aw, Actors a "
+            + "WHERE aw.awardID = NEW.awardID AND a.actorID = NEW.actorID AND NOT EXISTS "
+            + "(SELECT 1 FROM award_age_summary s WHERE s.awardInstitution IS aw.awardInstitution); "
+            + "END");
+
+    // The award whose motive is shown can lose its last winner, in which case the row is deleted
+    // and worked out again from the awards left
+    triggers.add(
+        "CREATE TRIGGER IF NOT EXISTS award_age_summary_awardWinningActor_delete "
+            + "AFTER DELETE ON awardWinningActor BEGIN "
+            + "UPDATE award_age_summary SET actorCount = actorCount - 1, "
+            + "ageSum = ageSum - (SELECT age FROM Actors WHERE actorID = OLD.actorID) "
+            + "WHERE awardInstitution IS " + INSTITUTION_OF_OLD + " "
+            + "AND EXISTS (SELECT 1 FROM Awards WHERE awardID = OLD.awardID) "
+            + "AND EXISTS (SELECT 1 FROM Actors WHERE actorID = OLD.actorID); "
+            + "DELETE FROM award_age_summary WHERE actorCount = 0 "
+            + "OR (awardID = OLD.awardID AND NOT EXISTS (SELECT 1 FROM awardWinningActor w "
+            + "INNER JOIN Actors a ON a.actorID = w.actorID WHERE w.awardID = OLD.awardID)); "
+            + SUMMARY_CONTENT + " WHERE aw.awardInstitution IS " + INSTITUTION_OF_OLD + " "
+            + "AND NOT EXISTS (SELECT 1 FROM award_age_summary s "
+            + "WHERE s.awardInstitution IS aw.awardInstitution)" + SUMMARY_GROUPING + "; "
+            + "END");
+
+    triggers.add(
+        "CREATE TRIGGER IF NOT EXISTS award_age_summary_Actors_update "
+            + "AFTER UPDATE OF age ON Actors BEGIN "
+            + "UPDATE award_age_summary SET ageSum = ageSum + (NEW.age - OLD.age) * "
+            + "(SELECT COUNT(*) FROM awardWinningActor w INNER JOIN Awards aw ON aw.awardID = w.awardID "
+            + "WHERE w.actorID = NEW.actorID AND aw.awardInstitution IS award_age_summary.awardInstitution); "
+            + "END");
+
+    triggers.add(
+        refresh(
+            "Awards",
+            "UPDATE",
+            "%1$s IS OLD.awardInstitution OR %1$s IS NEW.awardInstitution"));
+    triggers.add(refresh("Awards", "DELETE", "%1$s IS OLD.awardInstitution"));
+    triggers.add(
+        refresh(
+            "Actors",
+            "DELETE",
+            "EXISTS (SELECT 1 FROM awardWinningActor x INNER JOIN Awards y ON y.awardID = x.awardID "
+                + "WHERE x.actorID = OLD.actorID AND y.awardInstitution IS %1$s)"));
+
+    return triggers;
+  }
+
+  private static String refresh(String table, String event, String institutions) {
+    return "CREATE TRIGGER IF NOT EXISTS award_age_summary_" + table + "_" + event.toLowerCase()
+        + " AFTER " + event + " ON " + table + " BEGIN "
+        + "DELETE FROM award_age_summary WHERE "
+        + String.format(institutions, "award_age_summary.awardInstitution") + "; "
+        + SUMMARY_CONTENT + " WHERE " + String.format(institutions, "aw.awardInstitution")
+        + SUMMARY_GROUPING + "; "
+        + "END";
+  }
+}
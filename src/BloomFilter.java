@@ -0,0 +1,175 @@
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Bloom filter over strings. It answers whether a string might have been added or has definitely
+ * not been added, using a fixed array of bits and a few hashes per string, and it never gives a
+ * false negative. The size of the array and the amount of hashes are worked out from the amount
+ * of strings expected and the false positive rate wanted.
+ *
+ * <p>The positions of a string are taken from a single 64 bit hash, split into two halves that are
+ * combined as h1 + i * h2 for the i-th position, so the string is only hashed once.
+ *
+ * <p>The filter also counts how many times it has been asked and how many strings it has rejected,
+ * and works out the false positive rate it has at the moment from the fraction of bits set.
+ *
+ * @author 230018374
+ */
+public class BloomFilter {
+  private final long[] bits;
+  private final int bitCount;
+  private final int hashCount;
+  private final double expectedRate;
+  private int size;
+  private final LongAdder checks = new LongAdder();
+  private final LongAdder rejections = new LongAdder();
+
+  /**
+   * Creates an empty filter
+   *
+   * @param expected the amount of strings that are going to be added
+   * @param falsePositiveRate the chance of a string that has not been added being taken as added,
+   *     between 0 and 1, once the expected amount of strings has been added
+   */
+  public BloomFilter(int expected, double falsePositiveRate) {
+    if (falsePositiveRate <= 0 || falsePositiveRate >= 1) {
+      throw new IllegalArgumentException("The false positive rate has to be between 0 and 1");
+    }
+
+    int strings = Math.max(expected, 1);
+    long optimalBits =
+        (long) Math.ceil(-strings * Math.log(falsePositiveRate) / (Math.log(2) * Math.log(2)));
+    this.bitCount = (int) Math.min(Integer.MAX_VALUE - 63, Math.max(64, optimalBits));
+    this.hashCount = Math.max(1, (int) Math.round(-Math.log(falsePositiveRate) / Math.log(2)));
+    this.bits = new long[(bitCount + 63) >>> 6];
+    this.expectedRate = falsePositiveRate;
+  }
+
+  /**
+   * Adds a string to the filter. Null values are ignored.
+   *
+   * @param value the string that is added
+   */
+  public void add(String value) {
+    if (value == null) {
+      return;
+    }
+
+    long hash = hash(value);
+    int h1 = (int) hash;
+    int h2 = (int) (hash >>> 32);
+
+    for (int i = 0; i < hashCount; i++) {
+      int position = Math.floorMod(h1 + i * h2, bitCount);
+      bits[position >>> 6] |= 1L << position;
+    }
+    size++;
+  }
+
+  /**
+   * Checks if a string might have been added to the filter
+   *
+   * @param value the string that is checked
+   * @return false if it has definitely not been added, and true if it might have been
+   */
+  public boolean mightContain(String value) {
+    checks.increment();
+
+    if (value != null) {
+      long hash = hash(value);
+      int h1 = (int) hash;
+      int h2 = (int) (hash >>> 32);
+
+      for (int i = 0; i < hashCount; i++) {
+        int position = Math.floorMod(h1 + i * h2, bitCount);
+
+        if ((bits[position >>> 6] & (1L << position)) == 0) {
+          rejections.increment();
+          return false;
+        }
+      }
+      return true;
+    }
+
+    rejections.increment();
+    return false;
+  }
+
+  /**
+   * Works out the false positive rate of the filter from the fraction of its bits that are set,
+   * which is the chance that all the positions of a string that has not been added are set
+   *
+   * @return the current false positive rate, between 0 and 1
+   */
+  public double getEstimatedRate() {
+    long set = 0;
+
+    for (long word : bits) {
+      set += Long.bitCount(word);
+    }
+    return Math.pow((double) set / bitCount, hashCount);
+  }
+
+  /**
+   * Gives a summary of the filter and how it has been used
+   *
+   * @return a string with the amount of strings, bits and hashes, the checks and rejections, and
+   *     the expected and estimated false positive rates
+   */
+  public String getMetrics() {
+    return String.format(
+        "names=%d bits=%d hashes=%d checks=%d rejections=%d expectedFpp=%.4f estimatedFpp=%.4f",
+        size,
+        bitCount,
+        hashCount,
+        checks.sum(),
+        rejections.sum(),
+        expectedRate,
+        getEstimatedRate());
+  }
+
+  /**
+   * Standard getter for the amount of strings added
+   *
+   * @return the amount of strings
+   */
+  public int getSize() {
+    return size;
+  }
+
+  /**
+   * Standard getter for the amount of times the filter has been checked
+   *
+   * @return the amount of checks
+   */
+  public long getChecks() {
+    return checks.sum();
+  }
+
+  /**
+   * Standard getter for the amount of checks that answered that the string was not added
+   *
+   * @return the amount of rejections
+   */
+  public long getRejections() {
+    return rejections.sum();
+  }
+
+  // FNV-1a over the UTF-8 bytes, followed by the finalisation step of MurmurHash3 to spread the
+  // bits over both halves of the hash
+  private static long hash(String value) {
+    long hash = 0xcbf29ce484222325L;
+
+    for (byte b : value.getBytes(StandardCharsets.UTF_8)) {
+      hash ^= b & 0xff;
+      hash *= 0x100000001b3L;
+    }
+
+    hash ^= hash >>> 33;
+    hash *= 0xff51afd7ed558ccdL;
+    hash ^= hash >>> 33;
+    hash *= 0xc4ceb9fe1a85ec53L;
+    hash ^= hash >>> 33;
+    return hash;
+  }
+}
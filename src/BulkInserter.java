@@ -0,0 +1,191 @@
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+
+/**
+ * Inserts rows into one table using JDBC batching inside a single explicit transaction. Rows are
+ * added to the batch of the prepared statement and sent to the database every time the batch size
+ * is reached, and everything is committed at once when the table is finished. This avoids SQLite
+ * having to sync the database file after every single row, which is what happens with autocommit.
+ * It also keeps track of how many rows were inserted and how long it took, so that the throughput
+ * of each table can be reported, together with the latency of every batch and of the commit.
+ *
+ * @author 230018374
+ */
+public class BulkInserter implements AutoCloseable {
+  /** Amount of rows sent to the database in each batch if no other size is specified. */
+  public static final int DEFAULT_BATCH_SIZE = 1000;
+
+  private final Connection connection;
+  private final PreparedStatement statement;
+  private final String table;
+  private final int batchSize;
+  private final boolean previousAutoCommit;
+  private final long startTime;
+  private int pending;
+  private long rowCount;
+  private long elapsedTime;
+  private long commitTime;
+  private final LatencyHistogram batchLatencies = new LatencyHistogram();
+  private boolean finished;
+
+  /**
+   * Prepares the insert statement and opens the transaction on the passed connection.
+   *
+   * @param connection the connection to the database where the rows are going to be inserted
+   * @param table the name of the table, only used for the report
+   * @param sql the INSERT statement with one placeholder per column
+   * @param batchSize the amount of rows that are sent to the database at once
+   * @throws SQLException if the statement cannot be prepared or the transaction cannot be opened
+   */
+  public BulkInserter(Connection connection, String table, String sql, int batchSize)
+      throws SQLException {
+    if (batchSize < 1) {
+      throw new IllegalArgumentException("The batch size has to be at least 1");
+    }
+
+    this.connection = connection;
+    this.table = table;
+    this.batchSize = batchSize;
+    this.previousAutoCommit = connection.getAutoCommit();
+    connection.setAutoCommit(false);
+    this.statement = connection.prepareStatement(sql);
+    this.startTime = System.nanoTime();
+  }
+
+  /**
+   * Adds one row to the current batch. If the batch is full, it is sent to the database.
+   *
+   * @param values the values of the row, in the same order as the placeholders of the statement
+   * @throws SQLException if the values cannot be bound or the batch cannot be executed
+   */
+  public void add(Object... values) throws SQLException {
+    for (int i = 0; i < values.length; i++) {
+      statement.setObject(i + 1, values[i]);
+    }
+
+    statement.addBatch();
+    pending++;
+    rowCount++;
+
+    if (pending >= batchSize) {
+      flush();
+    }
+  }
+
+  /**
+   * Sends whatever is left in the batch and commits the transaction. Since the table has changed,
+   * the results kept in the cache of QueryDB and the copy of the DatabaseCatalog are thrown away.
+   *
+   * @return the report of the table, as given by getReport
+   * @throws SQLException if the last batch cannot be executed or the commit fails
+   */
+  public String finish() throws SQLException {
+    flush();
+    long commitStart = System.nanoTime();
+    connection.commit();
+    commitTime = System.nanoTime() - commitStart;
+    QueryDB.getQueryCache().invalidate();
+    DatabaseCatalog.invalidate();
+    finished = true;
+    elapsedTime = System.nanoTime() - startTime;
+    return getReport();
+  }
+
+  /**
+   * Rolls back the transaction if finish was never called (for example, because an exception was
+   * thrown halfway through the table), closes the statement and gives the connection its previous
+   * autocommit mode back.
+   *
+   * @throws SQLException if there is a problem with the database
+   */
+  @Override
+  public void close() throws SQLException {
+    try {
+      if (!finished) {
+        connection.rollback();
+      }
+      statement.close();
+    } finally {
+      connection.setAutoCommit(previousAutoCommit);
+    }
+  }
+
+  /**
+   * Standard getter for the amount of rows that have been added so far
+   *
+   * @return the amount of rows added to this table
+   */
+  public long getRowCount() {
+    return rowCount;
+  }
+
+  /**
+   * Calculates the throughput of the table. Before finish is called, it uses the time elapsed so
+   * far.
+   *
+   * @return the amount of rows inserted per second
+   */
+  public double getRowsPerSecond() {
+    long nanos = getElapsedNanos();
+    return nanos == 0 ? 0 : rowCount * 1_000_000_000.0 / nanos;
+  }
+
+  /**
+   * Gives a human-readable summary of the insertion of this table
+   *
+   * @return a string with the table name, the amount of rows, the time taken and the rows per second
+   */
+  public String getReport() {
+    long nanos = getElapsedNanos();
+    return String.format(
+        "%s: %d rows in %.2f ms (%.0f rows/sec)",
+        table, rowCount, nanos / 1_000_000.0, getRowsPerSecond());
+  }
+
+  /**
+   * Standard getter for the name of the table
+   *
+   * @return the name of the table
+   */
+  public String getTable() {
+    return table;
+  }
+
+  /**
+   * Standard getter for the time taken to fill out the table. Before finish is called, it is the
+   * time elapsed so far.
+   *
+   * @return the time taken in nanoseconds
+   */
+  public long getElapsedNanos() {
+    return finished ? elapsedTime : System.nanoTime() - startTime;
+  }
+
+  /**
+   * Standard getter for the time taken by the commit of the table
+   *
+   * @return the time taken by the commit in nanoseconds, or 0 if finish has not been called
+   */
+  public long getCommitNanos() {
+    return commitTime;
+  }
+
+  /**
+   * Standard getter for the latencies of the batches sent to the database so far
+   *
+   * @return the histogram of the latencies of the batches
+   */
+  public LatencyHistogram getBatchLatencies() {
+    return batchLatencies;
+  }
+
+  private void flush() throws SQLException {
+    if (pending > 0) {
+      long start = System.nanoTime();
+      statement.executeBatch();
+      batchLatencies.record(System.nanoTime() - start);
+      pending = 0;
+    }
+  }
+}
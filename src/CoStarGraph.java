@@ -0,0 +1,411 @@
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Types;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.IntStream;
+import javax.sql.rowset.CachedRowSet;
+
+/**
+ * In memory copy of the Cast table, seen as a graph where actors are joined to the movies they
+ * have been in. It answers how two actors are connected through the movies they share, and which
+ * actors are within a number of movies of another one, with a breadth-first search that would
+ * take a recursive query over the whole Cast table in SQL.
+ *
+ * <p>Actors and movies are numbered from 0 in the order of their IDs, and both sides of the graph
+ * are kept in compressed sparse row form: the movies of actor i are
+ * actorMovies[actorStart[i]] to actorMovies[actorStart[i + 1] - 1], and the same goes for the cast
+ * of every movie. Everything is held in arrays of int, so a graph of the whole table takes a few
+ * bytes per row of Cast and the searches do not create any objects per step.
+ *
+ * <p>The graph is loaded the first time it is needed and kept until the QueryCache is invalidated,
+ * which happens on every population, in the same way as the results kept by the cache.
+ *
+ * @author 230018374
+ */
+public class CoStarGraph {
+  private static CoStarGraph current;
+  private static long currentGeneration;
+
+  private final long[] actorIDs;
+  private final String[] actorNames;
+  private final long[] movieIDs;
+  private final String[] movieNames;
+  private final int[] actorStart;
+  private final int[] actorMovies;
+  private final int[] movieStart;
+  private final int[] movieActors;
+  private final Map<String, Integer> actorsByName;
+
+  private CoStarGraph(
+      long[] actorIDs, String[] actorNames, long[] movieIDs, String[] movieNames, int[] castActors,
+      int[] castMovies, int castSize) {
+    this.actorIDs = actorIDs;
+    this.actorNames = actorNames;
+    this.movieIDs = movieIDs;
+    this.movieNames = movieNames;
+    this.actorStart = new int[actorIDs.length + 1];
+    this.actorMovies = new int[castSize];
+    this.movieStart = new int[movieIDs.length + 1];
+    this.movieActors = new int[castSize];
+    fill(castActors, castMovies, castSize, actorStart, actorMovies);
+    fill(castMovies, castActors, castSize, movieStart, movieActors);
+
+    this.actorsByName = new HashMap<>(actorNames.length * 2);
+
+    for (int i = actorNames.length - 1; i >= 0; i--) {
+      actorsByName.put(actorNames[i], i);
+    }
+  }
+
+  /**
+   * Gives the graph of the current contents of the database, loading it if it has not been loaded
+   * since the last time the QueryCache was invalidated
+   *
+   * @return the graph of the Cast table
+   * @throws ClassNotFoundException if the drivers are not loaded
+   * @throws SQLException if the tables cannot be read
+   */
+  public static synchronized CoStarGraph current() throws ClassNotFoundException, SQLException {
+    long generation = QueryDB.getQueryCache().getGeneration();
+
+    if (current == null || currentGeneration != generation) {
+      try (Connection conn = InitialiseDB.readPreparation()) {
+        current = load(conn);
+        currentGeneration = generation;
+      }
+    }
+    return current;
+  }
+
+  /**
+   * Reads the actors, the movies and the Cast table and builds the graph out of them. Rows of Cast
+   * that point to an actor or a movie that does not exist are left out.
+   *
+   * @param conn an open connection to the database
+   * @return the graph of the Cast table
+   * @throws SQLException if the tables cannot be read
+   */
+  public static CoStarGraph load(Connection conn) throws SQLException {
+    try (Statement statement = conn.createStatement()) {
+      int actors = count(statement, "SELECT COUNT(*) FROM Actors");
+      long[] actorIDs = new long[actors];
+      String[] actorNames = new String[actors];
+      actors = names(statement, "SELECT actorID, name FROM Actors ORDER BY actorID", actorIDs, actorNames);
+
+      int movies = count(statement, "SELECT COUNT(*) FROM Movies");
+      long[] movieIDs = new long[movies];
+      String[] movieNames = new String[movies];
+      movies = names(statement, "SELECT movieID, name FROM Movies ORDER BY movieID", movieIDs, movieNames);
+
+      int[] castActors = new int[count(statement, "SELECT COUNT(*) FROM Cast")];
+      int[] castMovies = new int[castActors.length];
+      int castSize = 0;
+
+      try (ResultSet rs = statement.executeQuery("SELECT actorID, movieID FROM Cast")) {
+        while (rs.next() && castSize < castActors.length) {
+          int actor = Arrays.binarySearch(actorIDs, 0, actors, rs.getLong(1));
+          int movie = Arrays.binarySearch(movieIDs, 0, movies, rs.getLong(2));
+
+          if (actor >= 0 && movie >= 0) {
+            castActors[castSize] = actor;
+            castMovies[castSize] = movie;
+            castSize++;
+          }
+        }
+      }
+
+      return new CoStarGraph(
+          Arrays.copyOf(actorIDs, actors), Arrays.copyOf(actorNames, actors),
+          Arrays.copyOf(movieIDs, movies), Arrays.copyOf(movieNames, movies),
+          castActors, castMovies, castSize);
+    }
+  }
+
+  /**
+   * Finds one of the shortest chains of movies that joins two actors
+   *
+   * @param from the number of the first actor in the graph
+   * @param to the number of the second actor in the graph
+   * @return the actors and movies of the chain, starting and ending with an actor and with the
+   *     movie they share between every two actors. It is empty if they are not connected
+   */
+  public int[] shortestPath(int from, int to) {
+    int[] previousActor = new int[actorIDs.length];
+    int[] previousMovie = new int[actorIDs.length];
+    Arrays.fill(previousActor, -1);
+    previousActor[from] = from;
+
+    if (from != to) {
+      int[] queue = new int[actorIDs.length];
+      boolean[] movieSeen = new boolean[movieIDs.length];
+      int head = 0;
+      int tail = 0;
+      queue[tail++] = from;
+
+      search:
+      while (head < tail) {
+        int actor = queue[head++];
+
+        for (int m = actorStart[actor]; m < actorStart[actor + 1]; m++) {
+          int movie = actorMovies[m];
+
+          if (movieSeen[movie]) {
+            continue;
+          }
+          movieSeen[movie] = true;
+
+          for (int a = movieStart[movie]; a < movieStart[movie + 1]; a++) {
+            int costar = movieActors[a];
+
+            if (previousActor[costar] < 0) {
+              previousActor[costar] = actor;
+              previousMovie[costar] = movie;
+
+              if (costar == to) {
+                break search;
+              }
+              queue[tail++] = costar;
+            }
+          }
+        }
+      }
+
+      if (previousActor[to] < 0) {
+        return new int[0];
+      }
+    }
+
+    int length = 1;
+
+    for (int actor = to; actor != from; actor = previousActor[actor]) {
+      length += 2;
+    }
+
+    int[] path = new int[length];
+
+    for (int actor = to, i = length - 1; ; actor = previousActor[actor], i -= 2) {
+      path[i] = actor;
+
+      if (actor == from) {
+        break;
+      }
+      path[i - 1] = previousMovie[actor];
+    }
+    return path;
+  }
+
+  /**
+   * Finds every actor that can be reached from an actor through at most a number of movies
+   *
+   * @param from the number of the actor in the graph
+   * @param hops the maximum amount of movies between the actor and the ones found
+   * @return the distance in movies of every actor in the graph, or -1 for the ones that are
+   *     further away. The actor itself is at distance 0
+   */
+  public int[] neighbourhood(int from, int hops) {
+    if (hops < 0) {
+      throw new IllegalArgumentException("The amount of hops cannot be negative");
+    }
+
+    int[] distance = new int[actorIDs.length];
+    Arrays.fill(distance, -1);
+    distance[from] = 0;
+
+    int[] queue = new int[actorIDs.length];
+    boolean[] movieSeen = new boolean[movieIDs.length];
+    int head = 0;
+    int tail = 0;
+    queue[tail++] = from;
+
+    while (head < tail) {
+      int actor = queue[head++];
+
+      if (distance[actor] == hops) {
+        continue;
+      }
+
+      for (int m = actorStart[actor]; m < actorStart[actor + 1]; m++) {
+        int movie = actorMovies[m];
+
+        if (movieSeen[movie]) {
+          continue;
+        }
+        movieSeen[movie] = true;
+
+        for (int a = movieStart[movie]; a < movieStart[movie + 1]; a++) {
+          int costar = movieActors[a];
+
+          if (distance[costar] < 0) {
+            distance[costar] = distance[actor] + 1;
+            queue[tail++] = costar;
+          }
+        }
+      }
+    }
+    return distance;
+  }
+
+  /**
+   * Looks an actor up by name. If several actors have the same name, the one with the lowest ID
+   * is given.
+   *
+   * @param name the name of the actor
+   * @return the number of the actor in the graph, or -1 if there is no actor with that name
+   */
+  public int actor(String name) {
+    Integer actor = actorsByName.get(name);
+    return actor == null ? -1 : actor;
+  }
+
+  /**
+   * Gives the rows of the shortest chain between two actors, with the columns Step, Actor and
+   * Movie. The Movie of every step is the one shared with the actor of the step before it, so it is
+   * null on the first step.
+   *
+   * @param from the name of the first actor
+   * @param to the name of the second actor
+   * @return the rows of the chain, which are empty if either actor does not exist or they are not
+   *     connected
+   * @throws SQLException if the rows cannot be created
+   */
+  public CachedRowSet pathRows(String from, String to) throws SQLException {
+    CachedRowSet rows =
+        QueryCursor.rows(List.of("Step", "Actor", "Movie"), List.of(Types.INTEGER, Types.VARCHAR, Types.VARCHAR));
+    int first = actor(from);
+    int last = actor(to);
+
+    if (first >= 0 && last >= 0) {
+      int[] path = shortestPath(first, last);
+
+      for (int i = 0; i < path.length; i += 2) {
+        rows.moveToInsertRow();
+        rows.updateInt(1, i / 2);
+        rows.updateString(2, actorNames[path[i]]);
+        rows.updateString(3, i == 0 ? null : movieNames[path[i - 1]]);
+        rows.insertRow();
+      }
+    }
+    return finish(rows);
+  }
+
+  /**
+   * Gives the rows of the actors within a number of movies of an actor, with the columns Actor and
+   * Distance, sorted by distance and then by name. The actor itself is left out.
+   *
+   * @param from the name of the actor
+   * @param hops the maximum amount of movies between the actor and the ones given
+   * @return the rows of the actors, which are empty if the actor does not exist
+   * @throws SQLException if the rows cannot be created
+   */
+  public CachedRowSet neighbourhoodRows(String from, int hops) throws SQLException {
+    CachedRowSet rows = QueryCursor.rows(List.of("Actor", "Distance"), List.of(Types.VARCHAR, Types.INTEGER));
+    int first = actor(from);
+
+    if (first >= 0) {
+      int[] distance = neighbourhood(first, hops);
+      Integer[] found =
+          IntStream.range(0, distance.length)
+              .filter(actor -> distance[actor] > 0)
+              .boxed()
+              .toArray(Integer[]::new);
+      Arrays.sort(
+          found,
+          (a, b) -> distance[a] != distance[b]
+              ? Integer.compare(distance[a], distance[b])
+              : actorNames[a].compareTo(actorNames[b]));
+
+      for (int actor : found) {
+        rows.moveToInsertRow();
+        rows.updateString(1, actorNames[actor]);
+        rows.updateInt(2, distance[actor]);
+        rows.insertRow();
+      }
+    }
+    return finish(rows);
+  }
+
+  /**
+   * Standard getter for the ID of an actor of the graph
+   *
+   * @param actor the number of the actor in the graph
+   * @return the actorID of the actor
+   */
+  public long getActorID(int actor) {
+    return actorIDs[actor];
+  }
+
+  /**
+   * Standard getter for the ID of a movie of the graph
+   *
+   * @param movie the number of the movie in the graph
+   * @return the movieID of the movie
+   */
+  public long getMovieID(int movie) {
+    return movieIDs[movie];
+  }
+
+  /**
+   * Standard getter for the amount of actors in the graph
+   *
+   * @return the amount of actors
+   */
+  public int getActorCount() {
+    return actorIDs.length;
+  }
+
+  /**
+   * Standard getter for the amount of rows of Cast in the graph
+   *
+   * @return the amount of edges between actors and movies
+   */
+  public int getEdgeCount() {
+    return actorMovies.length;
+  }
+
+  private static int count(Statement statement, String sql) throws SQLException {
+    try (ResultSet rs = statement.executeQuery(sql)) {
+      return rs.next() ? rs.getInt(1) : 0;
+    }
+  }
+
+  private static int names(Statement statement, String sql, long[] ids, String[] names)
+      throws SQLException {
+    int size = 0;
+
+    try (ResultSet rs = statement.executeQuery(sql)) {
+      while (rs.next() && size < ids.length) {
+        ids[size] = rs.getLong(1);
+        names[size] = rs.getString(2);
+        size++;
+      }
+    }
+    return size;
+  }
+
+  // Counting sort of the edges by their source, giving the offsets and targets of the CSR arrays
+  private static void fill(int[] sources, int[] targets, int size, int[] start, int[] adjacent) {
+    for (int i = 0; i < size; i++) {
+      start[sources[i] + 1]++;
+    }
+    for (int i = 1; i < start.length; i++) {
+      start[i] += start[i - 1];
+    }
+
+    int[] next = Arrays.copyOf(start, start.length - 1);
+
+    for (int i = 0; i < size; i++) {
+      adjacent[next[sources[i]]++] = targets[i];
+    }
+  }
+
+  private static CachedRowSet finish(CachedRowSet rows) throws SQLException {
+    rows.moveToCurrentRow();
+    rows.beforeFirst();
+    return rows;
+  }
+}
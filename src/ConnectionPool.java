@@ -0,0 +1,527 @@
+import java.io.File;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Bounded pool of connections to the database file. Connections are opened the first time they
+ * are needed, get the PRAGMAs of the pool applied once, and are then handed out again and again
+ * instead of opening the SQLite file on every request. The connections handed out are wrappers,
+ * so calling close on them gives the connection back to the pool instead of closing it. If every
+ * connection is in use, callers wait until one is given back or the timeout runs out.
+ *
+ * <p>Every connection also keeps its most recently used prepared statements open, so preparing the
+ * same SQL Code again on that connection hands back the statement that was already compiled.
+ * Closing such a statement, or giving its connection back, only clears its parameters, so the next
+ * caller never runs it with values bound by the previous one.
+ *
+ * <p>The pool expects the database file to stay where it is while it is open. To delete or replace
+ * the file, close the pool first (InitialiseDB.closePools does it for the pools of the program),
+ * so SQLite can checkpoint and remove the -wal and -shm files with the last connection.
+ *
+ * @author 230018374
+ */
+public class ConnectionPool {
+  /** Maximum amount of connections, can be changed with the moviesdb.pool.size property. */
+  public static final int DEFAULT_SIZE = Integer.getInteger("moviesdb.pool.size", 4);
+
+  /** Milliseconds a caller waits for a free connection, set with moviesdb.pool.timeout. */
+  public static final long DEFAULT_TIMEOUT =
+      Long.getLong("moviesdb.pool.timeout", 10_000L);
+
+  /** PRAGMAs applied to every connection when it is opened. */
+  public static final List<String> DEFAULT_PRAGMAS =
+      List.of("PRAGMA busy_timeout = 5000", "PRAGMA temp_store = MEMORY", "PRAGMA cache_size = -8000");
+
+  /** PRAGMA that turns on WAL mode, so that readers do not block each other or the writer. */
+  public static final String WAL_PRAGMA = "PRAGMA journal_mode = WAL";
+
+  /** PRAGMA that stops a connection from changing the database. */
+  public static final String READ_ONLY_PRAGMA = "PRAGMA query_only = ON";
+
+  /** Prepared statements kept open per connection, set with moviesdb.pool.statements. */
+  public static final int DEFAULT_STATEMENT_CACHE_SIZE =
+      Integer.getInteger("moviesdb.pool.statements", 32);
+
+  private final String url;
+  private final int maxSize;
+  private final long timeout;
+  private final List<String> pragmas;
+  private final int statementCacheSize;
+  private final Deque<PooledConnection> idle = new ArrayDeque<>();
+  private final Map<Connection, Lease> leases = new IdentityHashMap<>();
+  private final long createdAt = System.nanoTime();
+  private int openConnections;
+  private int peakInUse;
+  private long acquisitions;
+  private long timeouts;
+  private long totalWait;
+  private long maxWait;
+  private long busyTime;
+  private boolean closed;
+
+  /**
+   * Creates an empty pool. No connection is opened until one is requested.
+   *
+   * @param databaseFile the SQLite database file the connections are opened on
+   * @param maxSize the maximum amount of connections that can be open at the same time
+   * @param timeout the milliseconds a caller waits for a free connection before giving up
+   * @param pragmas the statements run on every connection when it is opened
+   */
+  public ConnectionPool(File databaseFile, int maxSize, long timeout, List<String> pragmas) {
+    this(databaseFile, maxSize, timeout, pragmas, DEFAULT_STATEMENT_CACHE_SIZE);
+  }
+
+  /**
+   * Creates an empty pool that keeps up to the passed amount of prepared statements open on each
+   * connection. No connection is opened until one is requested.
+   *
+   * @param databaseFile the SQLite database file the connections are opened on
+   * @param maxSize the maximum amount of connections that can be open at the same time
+   * @param timeout the milliseconds a caller waits for a free connection before giving up
+   * @param pragmas the statements run on every connection when it is opened
+   * @param statementCacheSize the amount of prepared statements kept open per connection, 0 turns
+   *     the cache off
+   */
+  public ConnectionPool(
+      File databaseFile, int maxSize, long timeout, List<String> pragmas, int statementCacheSize) {
+    if (maxSize < 1) {
+      throw new IllegalArgumentException("The pool needs to hold at least one connection");
+    }
+
+    this.url = "jdbc:sqlite:" + databaseFile.getPath();
+    this.maxSize = maxSize;
+    this.timeout = timeout;
+    this.pragmas = List.copyOf(pragmas);
+    this.statementCacheSize = statementCacheSize;
+  }
+
+  /**
+   * Hands out a connection from the pool, opening a new one if there are no idle connections and
+   * the pool is not full. Closing the returned connection gives it back to the pool.
+   *
+   * @return a connection to the database file
+   * @throws SQLException if a connection cannot be opened or none is given back before the timeout
+   */
+  public Connection getConnection() throws SQLException {
+    long start = System.nanoTime();
+    long deadline = start + timeout * 1_000_000L;
+    PooledConnection connection = null;
+
+    synchronized (this) {
+      while (connection == null) {
+        if (closed) {
+          throw new SQLException("The connection pool has been closed");
+        }
+
+        if (!idle.isEmpty()) {
+          connection = idle.pop();
+
+          if (isClosed(connection)) {
+            discard(connection);
+            connection = null;
+          }
+        } else if (openConnections < maxSize) {
+          openConnections++;
+          break;
+        } else {
+          long remaining = deadline - System.nanoTime();
+
+          if (remaining <= 0) {
+            timeouts++;
+            throw new SQLException(
+                "Timed out after " + timeout + " ms waiting for a connection from the pool");
+          }
+
+          try {
+            wait(remaining / 1_000_000L + 1);
+          } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while waiting for a connection from the pool");
+          }
+        }
+      }
+    }
+
+    if (connection == null) {
+      try {
+        connection = open();
+      } catch (SQLException e) {
+        synchronized (this) {
+          openConnections--;
+          notifyAll();
+        }
+        throw e;
+      }
+    }
+
+    return checkOut(connection, start);
+  }
+
+  /**
+   * Gives a connection back to the pool. It accepts both the wrapper handed out by getConnection
+   * and the connection underneath it, which is what Statement.getConnection returns.
+   *
+   * @param connection the connection that is not needed anymore
+   */
+  public void release(Connection connection) {
+    Lease lease;
+
+    synchronized (this) {
+      lease = leases.get(connection);
+    }
+
+    if (lease == null && Proxy.isProxyClass(connection.getClass())
+        && Proxy.getInvocationHandler(connection) instanceof Lease) {
+      lease = (Lease) Proxy.getInvocationHandler(connection);
+    }
+
+    if (lease != null) {
+      lease.giveBack();
+    }
+  }
+
+  /**
+   * Closes every idle connection and stops handing out new ones. Connections that are in use are
+   * closed when they are given back.
+   */
+  public synchronized void close() {
+    closed = true;
+
+    while (!idle.isEmpty()) {
+      discard(idle.pop());
+    }
+    notifyAll();
+  }
+
+  /**
+   * Gives a summary of how the pool has been used since it was created. The utilization is the
+   * share of time the connections of the pool have spent handed out.
+   *
+   * @return a string with the size, usage, wait times and utilization of the pool
+   */
+  public synchronized String getMetrics() {
+    long lifetime = Math.max(1, System.nanoTime() - createdAt);
+    return String.format(
+        "size=%d open=%d inUse=%d peakInUse=%d acquisitions=%d timeouts=%d "
+            + "avgWait=%.3f ms maxWait=%.3f ms utilization=%.1f%%",
+        maxSize,
+        openConnections,
+        leases.size(),
+        peakInUse,
+        acquisitions,
+        timeouts,
+        acquisitions == 0 ? 0 : totalWait / 1_000_000.0 / acquisitions,
+        maxWait / 1_000_000.0,
+        100.0 * (busyTime + currentBusyTime()) / ((double) lifetime * maxSize));
+  }
+
+  /**
+   * Standard getter for the amount of connections that are handed out right now
+   *
+   * @return the amount of connections in use
+   */
+  public synchronized int getInUse() {
+    return leases.size();
+  }
+
+  /**
+   * Standard getter for the maximum size of the pool
+   *
+   * @return the maximum amount of connections
+   */
+  public int getMaxSize() {
+    return maxSize;
+  }
+
+  private Connection checkOut(PooledConnection connection, long start) {
+    Lease lease = new Lease(connection);
+    Connection proxy =
+        (Connection)
+            Proxy.newProxyInstance(
+                Connection.class.getClassLoader(), new Class<?>[] {Connection.class}, lease);
+    long waited = System.nanoTime() - start;
+
+    synchronized (this) {
+      leases.put(connection.raw, lease);
+      peakInUse = Math.max(peakInUse, leases.size());
+      acquisitions++;
+      totalWait += waited;
+      maxWait = Math.max(maxWait, waited);
+    }
+
+    return proxy;
+  }
+
+  private PooledConnection open() throws SQLException {
+    Connection raw = DriverManager.getConnection(url);
+
+    try (Statement statement = raw.createStatement()) {
+      for (String pragma : pragmas) {
+        statement.execute(pragma);
+      }
+    } catch (SQLException e) {
+      raw.close();
+      throw e;
+    }
+
+    return new PooledConnection(raw, statementCacheSize);
+  }
+
+  private boolean isClosed(PooledConnection connection) {
+    try {
+      return connection.raw.isClosed();
+    } catch (SQLException e) {
+      return true;
+    }
+  }
+
+  private void discard(PooledConnection connection) {
+    openConnections--;
+
+    try {
+      connection.closeStatements();
+      connection.raw.close();
+    } catch (SQLException ignored) {
+      // The connection is being thrown away, there is nothing else to do with it
+    }
+  }
+
+  private long currentBusyTime() {
+    long now = System.nanoTime();
+    long total = 0;
+
+    for (Lease lease : leases.values()) {
+      total += now - lease.checkedOutAt;
+    }
+    return total;
+  }
+
+  /**
+   * A physical connection to the database file and the prepared statements that are kept open on
+   * it.
+   */
+  private static class PooledConnection {
+    private final Connection raw;
+    private final Map<String, CachedStatement> statements;
+    private final int statementCacheSize;
+
+    private PooledConnection(Connection raw, int statementCacheSize) {
+      this.raw = raw;
+      this.statementCacheSize = statementCacheSize;
+      this.statements =
+          new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, CachedStatement> eldest) {
+              if (size() > statementCacheSize && !eldest.getValue().inUse) {
+                eldest.getValue().closeQuietly();
+                return true;
+              }
+              return false;
+            }
+          };
+    }
+
+    /**
+     * Hands out the statement already compiled for the SQL Code, preparing it the first time. If
+     * the statement is already being used by this checkout, a separate statement is prepared. The
+     * wrapper of a kept statement gives the passed connection from getConnection.
+     */
+    private PreparedStatement prepare(String sql, Connection owner) throws SQLException {
+      if (statementCacheSize == 0) {
+        return raw.prepareStatement(sql);
+      }
+
+      CachedStatement cached = statements.get(sql);
+
+      if (cached == null) {
+        cached = new CachedStatement(raw.prepareStatement(sql));
+        PreparedStatement statement = cached.checkOut(owner);
+        statements.put(sql, cached);
+        return statement;
+      } else if (cached.inUse) {
+        return raw.prepareStatement(sql);
+      }
+
+      return cached.checkOut(owner);
+    }
+
+    private void closeStatements() {
+      for (CachedStatement statement : statements.values()) {
+        statement.closeQuietly();
+      }
+      statements.clear();
+    }
+  }
+
+  /**
+   * A prepared statement kept open on a pooled connection. The wrapper handed out for it clears
+   * the parameters when it is closed instead of closing the statement, and gives the wrapper of
+   * the connection from getConnection, so the statement cannot be used to get around the lease.
+   */
+  private static class CachedStatement implements InvocationHandler {
+    private final PreparedStatement raw;
+    private Connection owner;
+    private boolean inUse;
+
+    private CachedStatement(PreparedStatement raw) {
+      this.raw = raw;
+    }
+
+    private PreparedStatement checkOut(Connection owner) {
+      this.owner = owner;
+      inUse = true;
+      return (PreparedStatement)
+          Proxy.newProxyInstance(
+              PreparedStatement.class.getClassLoader(),
+              new Class<?>[] {PreparedStatement.class},
+              this);
+    }
+
+    @Override
+    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+      switch (method.getName()) {
+        case "close":
+          reset();
+          return null;
+        case "isClosed":
+          return !inUse || raw.isClosed();
+        case "getConnection":
+          return owner;
+        case "equals":
+          return proxy == args[0];
+        case "hashCode":
+          return System.identityHashCode(proxy);
+        default:
+          break;
+      }
+
+      try {
+        return method.invoke(raw, args);
+      } catch (InvocationTargetException e) {
+        throw e.getCause();
+      }
+    }
+
+    /** Makes the statement free again, clearing what the caller left bound on it. */
+    private void reset() throws SQLException {
+      if (inUse) {
+        inUse = false;
+        owner = null;
+        raw.clearParameters();
+        raw.clearBatch();
+      }
+    }
+
+    private void closeQuietly() {
+      try {
+        raw.close();
+      } catch (SQLException ignored) {
+        // The statement is being thrown away, there is nothing else to do with it
+      }
+    }
+  }
+
+  /**
+   * One checkout of a pooled connection. It backs the wrapper handed out by the pool, so closing
+   * the wrapper gives the connection back instead of closing it.
+   */
+  private class Lease implements InvocationHandler {
+    private final PooledConnection connection;
+    private final long checkedOutAt = System.nanoTime();
+    private boolean returned;
+
+    private Lease(PooledConnection connection) {
+      this.connection = connection;
+    }
+
+    @Override
+    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+      switch (method.getName()) {
+        case "close":
+          giveBack();
+          return null;
+        case "isClosed":
+          return returned || connection.raw.isClosed();
+        case "equals":
+          return proxy == args[0];
+        case "hashCode":
+          return System.identityHashCode(proxy);
+        case "toString":
+          return "Pooled " + connection.raw;
+        default:
+          break;
+      }
+
+      if (returned) {
+        throw new SQLException("The connection has already been given back to the pool");
+      }
+
+      if (method.getName().equals("prepareStatement") && args.length == 1) {
+        return connection.prepare((String) args[0], (Connection) proxy);
+      }
+
+      try {
+        return method.invoke(connection.raw, args);
+      } catch (InvocationTargetException e) {
+        throw e.getCause();
+      }
+    }
+
+    private void giveBack() {
+      synchronized (ConnectionPool.this) {
+        if (returned) {
+          return;
+        }
+        returned = true;
+        leases.remove(connection.raw);
+        busyTime += System.nanoTime() - checkedOutAt;
+      }
+
+      boolean reusable;
+
+      // Statements that were not closed by the caller still hold its parameters
+      connection.statements.values().removeIf(
+          statement -> {
+            try {
+              statement.reset();
+              return false;
+            } catch (SQLException e) {
+              statement.closeQuietly();
+              return true;
+            }
+          });
+
+      try {
+        if (!connection.raw.getAutoCommit()) {
+          connection.raw.rollback();
+          connection.raw.setAutoCommit(true);
+        }
+        reusable = !connection.raw.isClosed();
+      } catch (SQLException e) {
+        reusable = false;
+      }
+
+      synchronized (ConnectionPool.this) {
+        if (reusable && !closed) {
+          idle.push(connection);
+        } else {
+          discard(connection);
+        }
+        ConnectionPool.this.notifyAll();
+      }
+    }
+  }
+}
@@ -49,6 +49,56 @@ public class DDLTester {
     return validSQL;
   }
 
+  /**
+   * <p>
+   * Possesses the secondary indexes of the database. They are created by the population once all
+   * the tables have been filled out, so that the rows do not have to be indexed one at a time.
+   * The indexes on the intermediate tables hold both of their columns, so the joins can be
+   * answered from the index alone. The indexes on the names turn the lookups of the queries into
+   * index searches, and the one on the ratings keeps the ratings of every critic source in order.
+   * </p>
+   *
+   * @return the valid statements that create the indexes of the database in the form of a list of
+   *     strings
+   */
+  public static List<String> indexTester() {
+    List<String> validSQL = new ArrayList<>();
+    validSQL.add(
+        "CREATE INDEX IF NOT EXISTS idx_actors_name ON Actors(name)");
+    validSQL.add(
+        "CREATE INDEX IF NOT EXISTS idx_director_name ON Director(name)");
+    validSQL.add(
+        "CREATE INDEX IF NOT EXISTS idx_movies_name ON Movies(name)");
+    validSQL.add(
+        "CREATE INDEX IF NOT EXISTS idx_movies_director ON Movies(directorID)");
+    validSQL.add(
+        "CREATE INDEX IF NOT EXISTS idx_genres_name ON Genres(GenreName)");
+    validSQL.add(
+        "CREATE INDEX IF NOT EXISTS idx_cast_movie_actor ON Cast(movieID, actorID)");
+    validSQL.add(
+        "CREATE INDEX IF NOT EXISTS idx_cast_actor_movie ON Cast(actorID, movieID)");
+    validSQL.add(
+        "CREATE INDEX IF NOT EXISTS idx_awardWinningActor_actor_award ON awardWinningActor(actorID, awardID)");
+    validSQL.add(
+        "CREATE INDEX IF NOT EXISTS idx_awardWinningActor_award_actor ON awardWinningActor(awardID, actorID)");
+    validSQL.add(
+        "CREATE INDEX IF NOT EXISTS idx_awardWinningMovie_movie_award ON awardWinningMovie(movieID, awardID)");
+    validSQL.add(
+        "CREATE INDEX IF NOT EXISTS idx_awardWinningDirector_director_award ON awardWinningDirector(directorID, awardID)");
+    validSQL.add(
+        "CREATE INDEX IF NOT EXISTS idx_moviesWithRatings_movie_critic ON MoviesWithRatings(movieID, criticID)");
+    validSQL.add(
+        "CREATE INDEX IF NOT EXISTS idx_moviesWithRatings_critic_movie ON MoviesWithRatings(criticID, movieID)");
+    validSQL.add(
+        "CREATE INDEX IF NOT EXISTS idx_moviesWithGenres_movie_genre ON MoviesWithGenres(movieID, genreID)");
+    validSQL.add(
+        "CREATE INDEX IF NOT EXISTS idx_moviesWithGenres_genre_movie ON MoviesWithGenres(genreID, movieID)");
+    validSQL.add(
+        "CREATE INDEX IF NOT EXISTS idx_ratings_source_rating ON Ratings(criticSource, ratingNumber)");
+
+    return validSQL;
+  }
+
   /**
    * <p>
    *     Contains a script that deletes all of the tables of the database without deleting
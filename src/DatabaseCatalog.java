@@ -0,0 +1,227 @@
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Keeps track of the state of the database through a small Catalog table, which is written at the
+ * end of every population with the schema version and the amount of rows of every table. The
+ * catalog is read once and kept in memory, so checking if the database is ready to be queried does
+ * not need a connection at all.
+ *
+ * <p>The copy in memory is thrown away whenever this program changes the tables, and it is also
+ * read again if the database file is deleted, replaced or modified by another program. Since the
+ * database is in WAL mode, the changes of another program go to the -wal file next to it and only
+ * reach the database file at the next checkpoint, so both files are looked at. If the
+ * database was populated before the catalog existed, the state is worked out once from the tables
+ * themselves.
+ *
+ * @author 230018374
+ */
+public class DatabaseCatalog {
+  /** Version of the schema given by the DDLTester. It has to be increased when the schema changes. */
+  public static final int SCHEMA_VERSION = 1;
+
+  private static final String CATALOG_TABLE =
+      "CREATE TABLE IF NOT EXISTS Catalog(    tableName VARCHAR(40) PRIMARY KEY,    rowCount INTEGER NOT NULL,    schemaVersion INTEGER NOT NULL)";
+  private static final String CATALOG_DELETION = "DROP TABLE IF EXISTS Catalog";
+
+  private static Snapshot snapshot;
+
+  /**
+   * State of the database at the moment the catalog was read, together with the file it was read
+   * from
+   */
+  private record Snapshot(
+      boolean created, boolean populated, Map<String, Long> rowCounts, FileStamp stamp) {}
+
+  /**
+   * Identity and last modification of the database file, and size and last modification of its
+   * -wal file (-1 if there is none), used to notice outside changes
+   */
+  private record FileStamp(Object fileKey, long lastModified, long walSize, long walModified) {}
+
+  /**
+   * Checks if the tables of the database have been created. Only the first call (or the first call
+   * after a change to the database) reads the database.
+   *
+   * @return true if the tables exist and false if the database is empty or missing
+   * @throws ClassNotFoundException if the drivers have not been loaded
+   * @throws SQLException if the catalog cannot be read
+   */
+  public static boolean isCreated() throws ClassNotFoundException, SQLException {
+    return current().created();
+  }
+
+  /**
+   * Checks if the database is ready to be queried, meaning that the tables exist and have been
+   * populated. Only the first call (or the first call after a change to the database) reads the
+   * database.
+   *
+   * @return true if the database can be queried and false if it cannot
+   * @throws ClassNotFoundException if the drivers have not been loaded
+   * @throws SQLException if the catalog cannot be read
+   */
+  public static boolean isPopulated() throws ClassNotFoundException, SQLException {
+    return current().populated();
+  }
+
+  /**
+   * Gives the amount of rows of every table, as recorded at the end of the last population
+   *
+   * @return the amount of rows by table name. It is empty if the catalog has not been written
+   * @throws ClassNotFoundException if the drivers have not been loaded
+   * @throws SQLException if the catalog cannot be read
+   */
+  public static Map<String, Long> getRowCounts() throws ClassNotFoundException, SQLException {
+    return current().rowCounts();
+  }
+
+  /**
+   * Counts the rows of every table of the DDLTester and writes them to the Catalog table, replacing
+   * what was there. It is run once the population has finished.
+   *
+   * @param conn an open connection to the database
+   * @throws SQLException if the catalog cannot be written
+   */
+  public static void record(Connection conn) throws SQLException {
+    boolean previousAutoCommit = conn.getAutoCommit();
+    conn.setAutoCommit(false);
+
+    try (Statement statement = conn.createStatement()) {
+      // The table has to exist before the insert can be prepared on it
+      statement.executeUpdate(CATALOG_TABLE);
+      statement.executeUpdate("DELETE FROM Catalog");
+      insertRowCounts(conn, statement);
+      conn.commit();
+    } catch (SQLException e) {
+      conn.rollback();
+      throw e;
+    } finally {
+      conn.setAutoCommit(previousAutoCommit);
+      invalidate();
+    }
+  }
+
+  private static void insertRowCounts(Connection conn, Statement statement) throws SQLException {
+    try (PreparedStatement insert =
+        conn.prepareStatement(
+            "INSERT INTO Catalog (tableName, rowCount, schemaVersion) VALUES (?, ?, ?)")) {
+      for (String table : tableNames()) {
+        try (ResultSet count = statement.executeQuery("SELECT COUNT(*) FROM " + table)) {
+          count.next();
+          insert.setString(1, table);
+          insert.setLong(2, count.getLong(1));
+          insert.setInt(3, SCHEMA_VERSION);
+          insert.addBatch();
+        }
+      }
+
+      insert.executeBatch();
+    }
+  }
+
+  /**
+   * Drops the Catalog table. It is run together with the SQL Deletion Script, so that a cleared
+   * database is empty again.
+   *
+   * @param conn an open connection to the database
+   * @throws SQLException if the table cannot be dropped
+   */
+  public static void drop(Connection conn) throws SQLException {
+    try (Statement statement = conn.createStatement()) {
+      statement.executeUpdate(CATALOG_DELETION);
+    } finally {
+      invalidate();
+    }
+  }
+
+  /**
+   * Throws away the copy of the catalog kept in memory. It is called whenever the tables change.
+   */
+  public static synchronized void invalidate() {
+    snapshot = null;
+  }
+
+  /**
+   * Gives the names of the tables created by the DDLTester, in the same order
+   *
+   * @return the names of the tables of the database
+   */
+  public static List<String> tableNames() {
+    return DDLTester.tester().stream()
+        .map(command -> command.substring("CREATE TABLE IF NOT EXISTS ".length()))
+        .map(command -> command.substring(0, command.indexOf('(')).trim())
+        .toList();
+  }
+
+  private static synchronized Snapshot current() throws ClassNotFoundException, SQLException {
+    FileStamp stamp = stamp();
+
+    if (snapshot == null || !Objects.equals(snapshot.stamp(), stamp)) {
+      snapshot = stamp == null ? new Snapshot(false, false, Map.of(), null) : load(stamp);
+    }
+    return snapshot;
+  }
+
+  private static Snapshot load(FileStamp stamp) throws ClassNotFoundException, SQLException {
+    try (Connection conn = InitialiseDB.preparation()) {
+      Map<String, Long> rowCounts = new LinkedHashMap<>();
+      boolean current = false;
+
+      try (Statement statement = conn.createStatement();
+          ResultSet exists =
+              statement.executeQuery(
+                  "SELECT 1 FROM sqlite_master WHERE type = 'table' AND name = 'Catalog'")) {
+        if (exists.next()) {
+          try (Statement read = conn.createStatement();
+              ResultSet set =
+                  read.executeQuery("SELECT tableName, rowCount, schemaVersion FROM Catalog")) {
+            current = true;
+
+            while (set.next()) {
+              rowCounts.put(set.getString(1), set.getLong(2));
+              current &= set.getInt(3) == SCHEMA_VERSION;
+            }
+          }
+        }
+      }
+
+      if (current && rowCounts.keySet().containsAll(tableNames())) {
+        return new Snapshot(
+            true, rowCounts.get("Actors") > 0, Collections.unmodifiableMap(rowCounts), stamp);
+      }
+
+      boolean created = !InitialiseDB.emptyDBChecker(conn);
+      boolean populated = created && QueryDB.populatedTableChecker(conn);
+      return new Snapshot(created, populated, Map.of(), stamp);
+    }
+  }
+
+  private static FileStamp stamp() {
+    File file = new File(InitialiseDB.getDatabaseFile());
+    File wal = new File(file.getPath() + "-wal");
+
+    try {
+      BasicFileAttributes attributes =
+          Files.readAttributes(file.toPath(), BasicFileAttributes.class);
+      return new FileStamp(
+          attributes.fileKey(),
+          attributes.lastModifiedTime().toMillis(),
+          wal.exists() ? wal.length() : -1,
+          wal.exists() ? wal.lastModified() : -1);
+    } catch (IOException e) {
+      return null;
+    }
+  }
+}
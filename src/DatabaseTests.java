@@ -1,11 +1,25 @@
+import java.io.BufferedReader;
 import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
 import java.io.PrintStream;
+import java.io.StringReader;
+import java.io.StringWriter;
 import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import javax.sql.rowset.CachedRowSet;
 import org.junit.*;
+import org.junit.runners.MethodSorters;
 
 /**
  * DatabaseTests contains the JUnit Tests that are testing multiple failure and exception cases that
@@ -13,9 +27,12 @@ import org.junit.*;
  * The testing of methods who print to the console as their final output was possible because of the
  * tutorial sourced by: <a href="https://www.baeldung.com/java-testing-system-out-println">...</a>
  *
+ * <p>The tests share the database file and the caches of QueryDB, so they are always run in the
+ * order of their names to get the same result on every run.
+ *
  * @author 230018374
  */
-
+@FixMethodOrder(MethodSorters.NAME_ASCENDING)
 public class DatabaseTests {
   private final PrintStream standardOut = System.out;
   private final ByteArrayOutputStream outputStreamCaptor = new ByteArrayOutputStream();
@@ -51,6 +68,7 @@ public class DatabaseTests {
    */
   @Test
   public void test1() {
+    InitialiseDB.closePools();
     new File(InitialiseDB.getDatabaseFile()).delete();
     Assert.assertEquals("OK", InitialiseDB.initialiseDB(InitialiseDB.getSqlScript()));
     Assert.assertTrue(new File(InitialiseDB.getDatabaseFile()).exists());
@@ -845,5 +863,1066 @@ public class DatabaseTests {
 
   }
 
+  /**
+   * Makes sure that the queries give their connections back to the pool once their cursor has been
+   * printed, so that running many queries does not leak connections
+   */
+  @Test
+  public void test31() {
+
+    InitialiseDB.initialiseDB(InitialiseDB.getSqlScript());
+
+    try {
+      PopulateDB.population(
+              populateDB,
+              PopulateDB.getActorsFile(),
+              PopulateDB.getAwardsFile(),
+              PopulateDB.getMoviesFile(),
+              PopulateDB.getDirectorsFile(),
+              PopulateDB.getRatingsFile(),
+              PopulateDB.getGenresFile());
+
+      for (int i = 0; i < InitialiseDB.getReadPool().getMaxSize() * 3; i++) {
+        QueryDB.printer(QueryDB.executeQuery2("The Dark Knight"));
+      }
+
+      QueryCursor cursor = QueryDB.executeQuery1();
+      Assert.assertTrue(cursor.forEachRow(row -> Assert.assertNotNull(row.getString(1))) > 0);
+      Assert.assertTrue(cursor.isClosed());
+      Assert.assertEquals(0, InitialiseDB.getReadPool().getInUse());
+    } catch (JSONSchemaException e) {
+      Assert.fail();
+    } catch (ClassNotFoundException e) {
+      Assert.fail();
+    } catch (SQLException e) {
+      Assert.fail();
+    }
+  }
+
+  /**
+   * Makes sure that the population creates every index declared in the DDLTester
+   */
+  @Test
+  public void test32() {
+
+    InitialiseDB.initialiseDB(InitialiseDB.getSqlScript());
+
+    try {
+      PopulateDB.population(
+              populateDB,
+              PopulateDB.getActorsFile(),
+              PopulateDB.getAwardsFile(),
+              PopulateDB.getMoviesFile(),
+              PopulateDB.getDirectorsFile(),
+              PopulateDB.getRatingsFile(),
+              PopulateDB.getGenresFile());
+    } catch (JSONSchemaException e) {
+      Assert.fail();
+    }
+
+    try (Connection conn = InitialiseDB.preparation()) {
+      Assert.assertEquals(0, InitialiseDB.missingIndexes(conn).size());
+    } catch (ClassNotFoundException e) {
+      Assert.fail();
+    } catch (SQLException e) {
+      Assert.fail();
+    }
+  }
+
+  /**
+   * Makes sure that listing every movie only reads the index on the movie names, not the table
+   */
+  @Test
+  public void test33() {
+    assertQueryPlan(1, List.of("m"));
+  }
+
+  /**
+   * Makes sure that the cast of a movie is found through index searches only
+   */
+  @Test
+  public void test34() {
+    assertQueryPlan(2, List.of(), "The Dark Knight");
+  }
+
+  /**
+   * Makes sure that the plots for an actor and a director are found through index searches only
+   */
+  @Test
+  public void test35() {
+    assertQueryPlan(3, List.of(), "Cillian Murphy", "Christopher Nolan");
+  }
+
+  /**
+   * Makes sure that the directors of an actor are found through index searches only
+   */
+  @Test
+  public void test36() {
+    assertQueryPlan(4, List.of(), "Cillian Murphy");
+  }
+
+  /**
+   * Makes sure that the movies of a genre and critic source are found through index searches only
+   */
+  @Test
+  public void test37() {
+    assertQueryPlan(5, List.of(), "Action", "Rotten Tomatoes");
+  }
+
+  /**
+   * Makes sure that the award report only reads the award_age_summary table, which has one row per
+   * institution, and nothing else
+   */
+  @Test
+  public void test38() {
+    assertQueryPlan(6, List.of("s"));
+  }
+
+  /**
+   * Checks that repeated queries are answered by the cache, and that a new population of the
+   * database throws the kept results away
+   */
+  @Test
+  public void test39() {
+
+    InitialiseDB.initialiseDB(InitialiseDB.getSqlScript());
+
+    try {
+      PopulateDB.population(
+              populateDB,
+              PopulateDB.getActorsFile(),
+              PopulateDB.getAwardsFile(),
+              PopulateDB.getMoviesFile(),
+              PopulateDB.getDirectorsFile(),
+              PopulateDB.getRatingsFile(),
+              PopulateDB.getGenresFile());
+
+      QueryCache cache = QueryDB.getQueryCache();
+      long hits = cache.getHits();
+      long first = QueryDB.executeQuery2("The Dark Knight").forEachRow(row -> row.getString(1));
+      long second = QueryDB.executeQuery2("The Dark Knight").forEachRow(row -> row.getString(1));
+      Assert.assertEquals(first, second);
+      Assert.assertEquals(hits + 1, cache.getHits());
+      Assert.assertEquals(0, InitialiseDB.getReadPool().getInUse());
+
+      InitialiseDB.initialiseDB(InitialiseDB.getSqlScript());
+      long misses = cache.getMisses();
+      QueryDB.executeQuery2("The Dark Knight").close();
+      Assert.assertEquals(misses + 1, cache.getMisses());
+    } catch (JSONSchemaException e) {
+      Assert.fail();
+    } catch (ClassNotFoundException e) {
+      Assert.fail();
+    } catch (SQLException e) {
+      Assert.fail();
+    }
+  }
+
+  /**
+   * Makes sure that the population writes the DatabaseCatalog, and that clearing the database
+   * leaves it in a state that cannot be queried
+   */
+  @Test
+  public void test40() {
+
+    InitialiseDB.initialiseDB(InitialiseDB.getSqlScript());
+
+    try {
+      Assert.assertTrue(DatabaseCatalog.isCreated());
+      Assert.assertFalse(DatabaseCatalog.isPopulated());
+
+      PopulateDB.population(
+              populateDB,
+              PopulateDB.getActorsFile(),
+              PopulateDB.getAwardsFile(),
+              PopulateDB.getMoviesFile(),
+              PopulateDB.getDirectorsFile(),
+              PopulateDB.getRatingsFile(),
+              PopulateDB.getGenresFile());
+
+      Assert.assertTrue(DatabaseCatalog.isPopulated());
+      Assert.assertTrue(DatabaseCatalog.getRowCounts().keySet().containsAll(DatabaseCatalog.tableNames()));
+      Assert.assertTrue(DatabaseCatalog.getRowCounts().get("Actors") > 0);
+
+      InitialiseDB.deleteDB(DDLTester.deletionTester(), new File(InitialiseDB.getSqlDeletionScript()));
+      Assert.assertTrue(InitialiseDB.emptyDBChecker());
+      Assert.assertFalse(DatabaseCatalog.isCreated());
+      Assert.assertFalse(DatabaseCatalog.isPopulated());
+    } catch (JSONSchemaException e) {
+      Assert.fail();
+    } catch (ClassNotFoundException e) {
+      Assert.fail();
+    } catch (SQLException e) {
+      Assert.fail();
+    } catch (IOException e) {
+      Assert.fail();
+    }
+  }
+
+  /**
+   * Checks that the full-text search finds movies by prefix and by phrase, and that the search
+   * cannot break the syntax of the FTS5 query
+   */
+  @Test
+  public void test41() {
+
+    InitialiseDB.initialiseDB(InitialiseDB.getSqlScript());
+
+    try {
+      PopulateDB.population(
+              populateDB,
+              PopulateDB.getActorsFile(),
+              PopulateDB.getAwardsFile(),
+              PopulateDB.getMoviesFile(),
+              PopulateDB.getDirectorsFile(),
+              PopulateDB.getRatingsFile(),
+              PopulateDB.getGenresFile());
+
+      Assert.assertEquals("\"The\" \"Matrix(1999)\"", FullTextSearch.expression("The Matrix(1999)"));
+
+      List<String> names = new ArrayList<>();
+      QueryDB.executeQuery7("director:\"Christopher Nolan\" dark kni*").forEachRow(row -> names.add(row.getString("Name")));
+      Assert.assertEquals(List.of("The Dark Knight"), names);
+
+      QueryCursor cursor = QueryDB.executeQuery7("The Matrix(1999)");
+      Assert.assertTrue(cursor.forEachRow(row -> Assert.assertNotNull(row.getString("Match"))) > 0);
+    } catch (JSONSchemaException e) {
+      Assert.fail();
+    } catch (ClassNotFoundException e) {
+      Assert.fail();
+    } catch (SQLException e) {
+      Assert.fail();
+    }
+  }
+
+  /**
+   * Makes sure that the paged version of query 1 reads the same movies as the whole query, one
+   * page at a time, and that a new paged query can carry on from the last key
+   */
+  @Test
+  public void test42() {
+
+    InitialiseDB.initialiseDB(InitialiseDB.getSqlScript());
+
+    try {
+      PopulateDB.population(
+              populateDB,
+              PopulateDB.getActorsFile(),
+              PopulateDB.getAwardsFile(),
+              PopulateDB.getMoviesFile(),
+              PopulateDB.getDirectorsFile(),
+              PopulateDB.getRatingsFile(),
+              PopulateDB.getGenresFile());
+
+      long movies = QueryDB.executeQuery1().forEachRow(row -> row.getString(1));
+
+      PagedQuery pages = QueryDB.pageQuery1(3, 0);
+      Assert.assertEquals(3, pages.nextPage(row -> row.getString("Name")));
+      Assert.assertTrue(pages.hasNext());
+      Assert.assertEquals(0, InitialiseDB.getReadPool().getInUse());
+
+      long rest = QueryDB.pageQuery1(3, pages.getLastKey()).forEachRow(row -> row.getString("Name"));
+      Assert.assertEquals(movies, 3 + rest);
+      Assert.assertEquals(movies, QueryDB.pageQuery1(1, 0).forEachRow(row -> row.getString(1)));
+    } catch (JSONSchemaException e) {
+      Assert.fail();
+    } catch (ClassNotFoundException e) {
+      Assert.fail();
+    } catch (SQLException e) {
+      Assert.fail();
+    }
+  }
+
+  /**
+   * Checks that the ResultRenderer writes a header and one line per row in CSV, and one JSON
+   * object per row in NDJSON
+   */
+  @Test
+  public void test43() {
+
+    InitialiseDB.initialiseDB(InitialiseDB.getSqlScript());
+
+    try {
+      PopulateDB.population(
+              populateDB,
+              PopulateDB.getActorsFile(),
+              PopulateDB.getAwardsFile(),
+              PopulateDB.getMoviesFile(),
+              PopulateDB.getDirectorsFile(),
+              PopulateDB.getRatingsFile(),
+              PopulateDB.getGenresFile());
+
+      StringWriter csv = new StringWriter();
+      long rows;
+
+      try (QueryCursor cursor = QueryDB.executeQuery2("The Dark Knight")) {
+        rows = new ResultRenderer(ResultRenderer.Format.CSV, csv).render(cursor.getResultSet());
+      }
+      String[] lines = csv.toString().split(System.lineSeparator());
+      Assert.assertTrue(rows > 0);
+      Assert.assertEquals("Actor Name", lines[0]);
+      Assert.assertEquals(rows + 1, lines.length);
+
+      StringWriter ndjson = new StringWriter();
+
+      try (QueryCursor cursor = QueryDB.executeQuery2("The Dark Knight")) {
+        new ResultRenderer(ResultRenderer.Format.NDJSON, ndjson).render(cursor.getResultSet());
+      }
+      for (String line : ndjson.toString().split(System.lineSeparator())) {
+        Assert.assertTrue(line.startsWith("{\"Actor Name\":\"") && line.endsWith("\"}"));
+      }
+    } catch (JSONSchemaException e) {
+      Assert.fail();
+    } catch (ClassNotFoundException e) {
+      Assert.fail();
+    } catch (SQLException e) {
+      Assert.fail();
+    } catch (IOException e) {
+      Assert.fail();
+    }
+  }
+
+  /**
+   * Runs several commands through the batch mode and checks that all of them are answered in
+   * order, skipping comments and empty lines
+   */
+  @Test
+  public void test44() {
+
+    InitialiseDB.initialiseDB(InitialiseDB.getSqlScript());
+
+    try {
+      PopulateDB.population(
+              populateDB,
+              PopulateDB.getActorsFile(),
+              PopulateDB.getAwardsFile(),
+              PopulateDB.getMoviesFile(),
+              PopulateDB.getDirectorsFile(),
+              PopulateDB.getRatingsFile(),
+              PopulateDB.getGenresFile());
+
+      String commands = "# nightly job\n\n2 \"The Dark Knight\"\n99\n6\n";
+      Assert.assertEquals(3, QueryBatch.run(new BufferedReader(new StringReader(commands))));
+
+      String output = outputStreamCaptor.toString();
+      Assert.assertTrue(output.indexOf("> 2 \"The Dark Knight\"") < output.indexOf("> 99"));
+      Assert.assertTrue(output.indexOf("> 99") < output.indexOf("> 6"));
+      Assert.assertTrue(output.contains("The value is not recognised. Please try with a number between 1-11"));
+      Assert.assertEquals(0, InitialiseDB.getReadPool().getInUse());
+    } catch (JSONSchemaException e) {
+      Assert.fail();
+    } catch (ClassNotFoundException e) {
+      Assert.fail();
+    } catch (IOException e) {
+      Assert.fail();
+    }
+  }
+
+  /**
+   * Runs the same commands through the QueryExecutor at the same time and one after the other,
+   * and checks that the results match. It also checks that the database is in WAL mode and that
+   * the readers cannot change it.
+   */
+  @Test
+  public void test45() {
+
+    InitialiseDB.initialiseDB(InitialiseDB.getSqlScript());
+
+    try {
+      PopulateDB.population(
+              populateDB,
+              PopulateDB.getActorsFile(),
+              PopulateDB.getAwardsFile(),
+              PopulateDB.getMoviesFile(),
+              PopulateDB.getDirectorsFile(),
+              PopulateDB.getRatingsFile(),
+              PopulateDB.getGenresFile());
+
+      List<String[]> commands = new ArrayList<>();
+
+      for (int i = 0; i < 50; i++) {
+        commands.add(new String[]{"2", "The Dark Knight"});
+        commands.add(new String[]{"4", "Cillian Murphy"});
+        commands.add(new String[]{"6"});
+      }
+
+      try (QueryExecutor executor = new QueryExecutor()) {
+        List<CachedRowSet> results = executor.runAll(commands);
+        Assert.assertEquals(commands.size(), results.size());
+
+        for (int i = 0; i < commands.size(); i++) {
+          String[] command = commands.get(i);
+          long expected = QueryDB.execute(Integer.parseInt(command[0]),
+                  Arrays.copyOfRange(command, 1, command.length)).forEachRow(row -> row.getString(1));
+          Assert.assertEquals(expected, results.get(i).size());
+        }
+      }
+      Assert.assertEquals(0, InitialiseDB.getReadPool().getInUse());
+
+      try (Connection conn = InitialiseDB.readPreparation();
+           Statement statement = conn.createStatement()) {
+        try (ResultSet mode = statement.executeQuery("PRAGMA journal_mode")) {
+          mode.next();
+          Assert.assertEquals("wal", mode.getString(1));
+        }
+        statement.executeUpdate("DELETE FROM Actors");
+        Assert.fail();
+      } catch (SQLException e) {
+        Assert.assertTrue(DatabaseCatalog.isPopulated());
+      }
+    } catch (JSONSchemaException e) {
+      Assert.fail();
+    } catch (ClassNotFoundException e) {
+      Assert.fail();
+    } catch (SQLException e) {
+      Assert.fail();
+    }
+  }
+
+  /**
+   * Checks that the movie summary holds the director, cast and ratings of a movie, and that the
+   * triggers refresh it when the cast changes after the population
+   */
+  @Test
+  public void test46() {
+
+    InitialiseDB.initialiseDB(InitialiseDB.getSqlScript());
+
+    try {
+      PopulateDB.population(
+              populateDB,
+              PopulateDB.getActorsFile(),
+              PopulateDB.getAwardsFile(),
+              PopulateDB.getMoviesFile(),
+              PopulateDB.getDirectorsFile(),
+              PopulateDB.getRatingsFile(),
+              PopulateDB.getGenresFile());
+
+      try (QueryCursor cursor = QueryDB.executeQuery8("The Dark Knight")) {
+        Assert.assertTrue(cursor.next());
+        Assert.assertEquals("Christopher Nolan", cursor.getResultSet().getString("Director"));
+        Assert.assertTrue(cursor.getResultSet().getString("Cast").contains("Cillian Murphy"));
+        Assert.assertTrue(cursor.getResultSet().getString("Ratings").contains("Rotten Tomatoes"));
+        Assert.assertFalse(cursor.next());
+      }
+
+      try (Connection conn = InitialiseDB.preparation();
+           Statement statement = conn.createStatement()) {
+        statement.executeUpdate("DELETE FROM Cast WHERE movieID = 3 AND actorID IN "
+                + "(SELECT actorID FROM Actors WHERE name = 'Cillian Murphy')");
+      }
+
+      try (QueryCursor cursor = QueryDB.executeMovieSummary(3)) {
+        Assert.assertTrue(cursor.next());
+        Assert.assertEquals("The Dark Knight", cursor.getResultSet().getString("Name"));
+        Assert.assertFalse(cursor.getResultSet().getString("Cast").contains("Cillian Murphy"));
+      }
+    } catch (JSONSchemaException e) {
+      Assert.fail();
+    } catch (ClassNotFoundException e) {
+      Assert.fail();
+    } catch (SQLException e) {
+      Assert.fail();
+    }
+  }
+
+  /**
+   * Checks that the summary of a movie is read through an index
+   */
+  @Test
+  public void test47() {
+    assertQueryPlan(8, List.of(), "The Dark Knight");
+  }
+
+  /**
+   * Checks that the totals behind the award report follow the awards won by the actors and their
+   * ages once the database has been populated
+   */
+  @Test
+  public void test48() {
+    InitialiseDB.initialiseDB(InitialiseDB.getSqlScript());
+
+    try {
+      PopulateDB.population(
+              populateDB,
+              PopulateDB.getActorsFile(),
+              PopulateDB.getAwardsFile(),
+              PopulateDB.getMoviesFile(),
+              PopulateDB.getDirectorsFile(),
+              PopulateDB.getRatingsFile(),
+              PopulateDB.getGenresFile());
+
+      try (QueryCursor cursor = QueryDB.executeQuery6()) {
+        List<String> institutions = new ArrayList<>();
+
+        while (cursor.next()) {
+          institutions.add(cursor.getResultSet().getString("Award Institution"));
+        }
+        Assert.assertEquals(List.of("BAFTA", "Emmys", "Golden Globe Awards", "Oscars"), institutions);
+      }
+
+      try (Connection conn = InitialiseDB.preparation();
+           Statement statement = conn.createStatement()) {
+        statement.executeUpdate("DELETE FROM awardWinningActor WHERE awardID IN "
+                + "(SELECT awardID FROM Awards WHERE awardInstitution = 'Emmys')");
+        statement.executeUpdate("INSERT INTO awardWinningActor (actorID, awardID) VALUES (1, 6)");
+        statement.executeUpdate("UPDATE Actors SET age = 30 WHERE actorID = 1");
+
+        try (ResultSet rs = statement.executeQuery(
+                "SELECT actorCount, ageSum FROM award_age_summary WHERE awardInstitution = 'Emmys'")) {
+          Assert.assertTrue(rs.next());
+          Assert.assertEquals(1, rs.getInt("actorCount"));
+          Assert.assertEquals(30, rs.getInt("ageSum"));
+        }
+      }
+    } catch (JSONSchemaException e) {
+      Assert.fail();
+    } catch (ClassNotFoundException e) {
+      Assert.fail();
+    } catch (SQLException e) {
+      Assert.fail();
+    }
+  }
+
+  /**
+   * Checks the chains of movies between actors and the actors found within a number of movies,
+   * both worked out from the co-star graph
+   */
+  @Test
+  public void test49() {
+    InitialiseDB.initialiseDB(InitialiseDB.getSqlScript());
+
+    try {
+      PopulateDB.population(
+              populateDB,
+              PopulateDB.getActorsFile(),
+              PopulateDB.getAwardsFile(),
+              PopulateDB.getMoviesFile(),
+              PopulateDB.getDirectorsFile(),
+              PopulateDB.getRatingsFile(),
+              PopulateDB.getGenresFile());
+
+      try (QueryCursor cursor = QueryDB.executeQuery9("Cillian Murphy", "Denzel Hayes Washington Jr.")) {
+        List<String> movies = new ArrayList<>();
+
+        while (cursor.next()) {
+          movies.add(cursor.getResultSet().getString("Movie"));
+        }
+        Assert.assertEquals(Arrays.asList(null, "The Dark Knight", "Glory"), movies);
+      }
+
+      try (QueryCursor cursor = QueryDB.executeQuery9("Cillian Murphy", "Keanu Charles Reeves")) {
+        Assert.assertFalse(cursor.next());
+      }
+
+      try (QueryCursor cursor = QueryDB.executeQuery10("Cillian Murphy", 2)) {
+        Assert.assertTrue(cursor.next());
+        Assert.assertEquals("Morgan Porterfield Freeman Jr.", cursor.getResultSet().getString("Actor"));
+        Assert.assertEquals(1, cursor.getResultSet().getInt("Distance"));
+        Assert.assertTrue(cursor.next());
+        Assert.assertEquals("Denzel Hayes Washington Jr.", cursor.getResultSet().getString("Actor"));
+        Assert.assertEquals(2, cursor.getResultSet().getInt("Distance"));
+        Assert.assertFalse(cursor.next());
+      }
+    } catch (JSONSchemaException e) {
+      Assert.fail();
+    } catch (ClassNotFoundException e) {
+      Assert.fail();
+    } catch (SQLException e) {
+      Assert.fail();
+    }
+  }
+
+  /**
+   * Checks that the name filters let every name in the database through, and that a name that is
+   * not there is answered without reaching the cache or the database
+   */
+  @Test
+  public void test50() {
+    InitialiseDB.initialiseDB(InitialiseDB.getSqlScript());
+
+    try {
+      PopulateDB.population(
+              populateDB,
+              PopulateDB.getActorsFile(),
+              PopulateDB.getAwardsFile(),
+              PopulateDB.getMoviesFile(),
+              PopulateDB.getDirectorsFile(),
+              PopulateDB.getRatingsFile(),
+              PopulateDB.getGenresFile());
+
+      NameFilters filters = NameFilters.current();
+
+      try (Connection conn = InitialiseDB.preparation();
+           Statement statement = conn.createStatement();
+           ResultSet rs = statement.executeQuery("SELECT name FROM Actors")) {
+        while (rs.next()) {
+          Assert.assertTrue(filters.getActors().mightContain(rs.getString(1)));
+        }
+      }
+
+      long rejections = filters.getActors().getRejections();
+      long misses = QueryDB.getQueryCache().getMisses();
+
+      try (QueryCursor cursor = QueryDB.executeQuery4("Nobody At All")) {
+        Assert.assertFalse(cursor.next());
+        Assert.assertEquals(2, cursor.getResultSet().getMetaData().getColumnCount());
+      }
+      Assert.assertEquals(rejections + 1, filters.getActors().getRejections());
+      Assert.assertEquals(misses, QueryDB.getQueryCache().getMisses());
+      Assert.assertTrue(NameFilters.getCurrentMetrics().contains("expectedFpp=0.0100"));
+    } catch (JSONSchemaException e) {
+      Assert.fail();
+    } catch (ClassNotFoundException e) {
+      Assert.fail();
+    } catch (SQLException e) {
+      Assert.fail();
+    }
+  }
+
+  /**
+   * Checks that the names starting with a prefix are found in any case and given by popularity
+   */
+  @Test
+  public void test51() {
+    InitialiseDB.initialiseDB(InitialiseDB.getSqlScript());
+
+    try {
+      PopulateDB.population(
+              populateDB,
+              PopulateDB.getActorsFile(),
+              PopulateDB.getAwardsFile(),
+              PopulateDB.getMoviesFile(),
+              PopulateDB.getDirectorsFile(),
+              PopulateDB.getRatingsFile(),
+              PopulateDB.getGenresFile());
+
+      // Christopher Nolan directed 2 movies and won 4 awards, Cillian Murphy is in 2 movies and
+      // won 3 awards
+      try (QueryCursor cursor = QueryDB.executeQuery11("c")) {
+        Assert.assertTrue(cursor.next());
+        Assert.assertEquals("Christopher Nolan", cursor.getResultSet().getString("Name"));
+        Assert.assertEquals("Director", cursor.getResultSet().getString("Type"));
+        Assert.assertEquals(6, cursor.getResultSet().getInt("Score"));
+        Assert.assertTrue(cursor.next());
+        Assert.assertEquals("Cillian Murphy", cursor.getResultSet().getString("Name"));
+        Assert.assertEquals("Actor", cursor.getResultSet().getString("Type"));
+        Assert.assertEquals(5, cursor.getResultSet().getInt("Score"));
+        Assert.assertFalse(cursor.next());
+      }
+
+      try (QueryCursor cursor = QueryDB.executeQuery11("THE DARK")) {
+        Assert.assertTrue(cursor.next());
+        Assert.assertEquals("The Dark Knight", cursor.getResultSet().getString("Name"));
+        Assert.assertFalse(cursor.next());
+      }
+    } catch (JSONSchemaException e) {
+      Assert.fail();
+    } catch (ClassNotFoundException e) {
+      Assert.fail();
+    } catch (SQLException e) {
+      Assert.fail();
+    }
+  }
+
+  /**
+   * Checks that misspelled names are replaced by the closest ones in the database, and that names
+   * with nothing close to them still give no results
+   */
+  @Test
+  public void test52() {
+    InitialiseDB.initialiseDB(InitialiseDB.getSqlScript());
+
+    try {
+      PopulateDB.population(
+              populateDB,
+              PopulateDB.getActorsFile(),
+              PopulateDB.getAwardsFile(),
+              PopulateDB.getMoviesFile(),
+              PopulateDB.getDirectorsFile(),
+              PopulateDB.getRatingsFile(),
+              PopulateDB.getGenresFile());
+
+      try (QueryCursor cursor = QueryDB.executeQuery4("cilian murphy")) {
+        Assert.assertEquals("Cillian Murphy", cursor.getCorrections().get("cilian murphy"));
+        Assert.assertTrue(cursor.next());
+        Assert.assertEquals("Christopher Nolan", cursor.getResultSet().getString("Director"));
+      }
+
+      try (QueryCursor cursor = QueryDB.executeQuery3("Cillian Murphy", "Christopher Nolen")) {
+        Assert.assertEquals(Map.of("Christopher Nolen", "Christopher Nolan"), cursor.getCorrections());
+        Assert.assertTrue(cursor.next());
+      }
+
+      QueryDB.printer(QueryDB.executeQuery2("the dark night"));
+      Assert.assertTrue(outputStreamCaptor.toString().startsWith(
+              "No exact match for \"the dark night\". Showing results for \"The Dark Knight\""));
+
+      try (QueryCursor cursor = QueryDB.executeQuery2("Tom Hanks")) {
+        Assert.assertTrue(cursor.getCorrections().isEmpty());
+        Assert.assertFalse(cursor.next());
+      }
+    } catch (JSONSchemaException e) {
+      Assert.fail();
+    } catch (ClassNotFoundException e) {
+      Assert.fail();
+    } catch (SQLException e) {
+      Assert.fail();
+    }
+  }
+
+  /**
+   * Tests that MovieQuery only joins the tables of the filters it has, keeps the filters on the
+   * critic and the rating on the same rating, and writes the SQL Code once per shape
+   */
+  @Test
+  public void test53() {
+    InitialiseDB.initialiseDB(InitialiseDB.getSqlScript());
+
+    try {
+      PopulateDB.population(
+              populateDB,
+              PopulateDB.getActorsFile(),
+              PopulateDB.getAwardsFile(),
+              PopulateDB.getMoviesFile(),
+              PopulateDB.getDirectorsFile(),
+              PopulateDB.getRatingsFile(),
+              PopulateDB.getGenresFile());
+
+      Assert.assertFalse(QueryDB.querySQL(5).contains("Director"));
+
+      MovieQuery query = new MovieQuery()
+              .genre("Action")
+              .criticSource("Rotten Tomatoes")
+              .minRating(4.0)
+              .releasedFrom(1990)
+              .releasedTo(2010);
+      Assert.assertArrayEquals(
+              new Object[] {"Action", "Rotten Tomatoes", 4.0, 1990, 2010}, query.parameters());
+      Assert.assertSame(
+              query.sql(),
+              new MovieQuery().releasedTo(1).releasedFrom(1).minRating(1).criticSource("").genre("").sql());
+
+      try (QueryCursor cursor = query.cursor()) {
+        Assert.assertTrue(cursor.next());
+        Assert.assertEquals("Star Wars: Episode III Revenge of the Sith", cursor.getResultSet().getString("Name"));
+        Assert.assertTrue(cursor.next());
+        Assert.assertEquals("The Matrix (1999)", cursor.getResultSet().getString("Name"));
+        Assert.assertFalse(cursor.next());
+      }
+
+      MovieQuery nolan =
+              new MovieQuery().director("Christopher Nolan").criticSource("IMDb").maxRating(4.0);
+
+      try (QueryCursor cursor = nolan.cursor()) {
+        Assert.assertTrue(cursor.next());
+        Assert.assertEquals("The Dark Knight", cursor.getResultSet().getString("Name"));
+        Assert.assertFalse(cursor.next());
+      }
+    } catch (JSONSchemaException e) {
+      Assert.fail();
+    } catch (ClassNotFoundException e) {
+      Assert.fail();
+    } catch (SQLException e) {
+      Assert.fail();
+    }
+  }
+
+  /**
+   * Tests that query 5 takes any critic source, and that the best and worst rated movies of a
+   * critic source are given in order and cut to the limit
+   */
+  @Test
+  public void test54() {
+    InitialiseDB.initialiseDB(InitialiseDB.getSqlScript());
+
+    try {
+      PopulateDB.population(
+              populateDB,
+              PopulateDB.getActorsFile(),
+              PopulateDB.getAwardsFile(),
+              PopulateDB.getMoviesFile(),
+              PopulateDB.getDirectorsFile(),
+              PopulateDB.getRatingsFile(),
+              PopulateDB.getGenresFile());
+
+      try (QueryCursor cursor = QueryDB.executeQuery5("Drama", "IMDb")) {
+        Assert.assertTrue(cursor.next());
+        Assert.assertEquals("Going My Way", cursor.getResultSet().getString("Name"));
+        Assert.assertTrue(cursor.next());
+        Assert.assertEquals("Raging Bull", cursor.getResultSet().getString("Name"));
+        Assert.assertFalse(cursor.next());
+      }
+
+      try (QueryCursor cursor = QueryDB.execute(5, "Drama", "IMDb")) {
+        Assert.assertTrue(cursor.next());
+        Assert.assertEquals("Going My Way", cursor.getResultSet().getString("Name"));
+      }
+
+      try (QueryCursor cursor = QueryDB.executeTopRated("Action", "IMDb", 3)) {
+        Assert.assertTrue(cursor.next());
+        Assert.assertEquals("The Matrix (1999)", cursor.getResultSet().getString("Name"));
+        Assert.assertEquals(4.5, cursor.getResultSet().getDouble("Rating"), 0.001);
+        Assert.assertTrue(cursor.next());
+        Assert.assertEquals(
+                "Star Wars: Episode III Revenge of the Sith", cursor.getResultSet().getString("Name"));
+        Assert.assertTrue(cursor.next());
+        Assert.assertEquals("The Dark Knight", cursor.getResultSet().getString("Name"));
+        Assert.assertFalse(cursor.next());
+      }
+
+      MovieQuery worst =
+              new MovieQuery().criticSource("IMDb").orderBy(MovieQuery.Order.WORST_RATED).limit(1);
+
+      try (QueryCursor cursor = worst.cursor()) {
+        Assert.assertTrue(cursor.next());
+        Assert.assertEquals("Justice League (2017)", cursor.getResultSet().getString("Name"));
+        Assert.assertEquals("IMDb", cursor.getResultSet().getString("Critic"));
+        Assert.assertFalse(cursor.next());
+      }
+    } catch (JSONSchemaException e) {
+      Assert.fail();
+    } catch (ClassNotFoundException e) {
+      Assert.fail();
+    } catch (SQLException e) {
+      Assert.fail();
+    }
+  }
+
+  /**
+   * Tests that every call to a query gives the times of the phases it went through to
+   * QueryMetrics, that the pages of query 1 are kept apart from its calls, and that the
+   * percentiles of the histograms stay close to the real ones
+   */
+  @Test
+  public void test55() {
+    InitialiseDB.initialiseDB(InitialiseDB.getSqlScript());
+
+    try {
+      PopulateDB.population(
+              populateDB,
+              PopulateDB.getActorsFile(),
+              PopulateDB.getAwardsFile(),
+              PopulateDB.getMoviesFile(),
+              PopulateDB.getDirectorsFile(),
+              PopulateDB.getRatingsFile(),
+              PopulateDB.getGenresFile());
+
+      long connects = QueryMetrics.getHistogram(2, QueryMetrics.Phase.CONNECT).getCount();
+      long executions = QueryMetrics.getHistogram(2, QueryMetrics.Phase.EXECUTE).getCount();
+      long fetches = QueryMetrics.getHistogram(2, QueryMetrics.Phase.FETCH).getCount();
+      long renders = QueryMetrics.getHistogram(2, QueryMetrics.Phase.RENDER).getCount();
+
+      QueryDB.printer(QueryDB.executeQuery2("The Dark Knight"));
+      QueryDB.printer(QueryDB.executeQuery2("The Dark Knight"));
+
+      Assert.assertEquals(
+              connects + 1, QueryMetrics.getHistogram(2, QueryMetrics.Phase.CONNECT).getCount());
+      Assert.assertEquals(
+              executions + 1, QueryMetrics.getHistogram(2, QueryMetrics.Phase.EXECUTE).getCount());
+      Assert.assertEquals(
+              fetches + 2, QueryMetrics.getHistogram(2, QueryMetrics.Phase.FETCH).getCount());
+      Assert.assertEquals(
+              renders + 2, QueryMetrics.getHistogram(2, QueryMetrics.Phase.RENDER).getCount());
+      Assert.assertTrue(QueryMetrics.getMetrics().contains("query2.execute: count="));
+
+      long computed = QueryMetrics.getHistogram(11, QueryMetrics.Phase.EXECUTE).getCount();
+      QueryDB.executeQuery11("c").close();
+      Assert.assertEquals(
+              computed + 1, QueryMetrics.getHistogram(11, QueryMetrics.Phase.EXECUTE).getCount());
+
+      long calls = QueryMetrics.getHistogram(1, QueryMetrics.Phase.EXECUTE).getCount();
+      long pages = QueryMetrics.getPageHistogram(1, QueryMetrics.Phase.EXECUTE).getCount();
+      QueryDB.pageQuery1(3, 0).forEachRow(row -> row.getString("Name"));
+      Assert.assertEquals(calls, QueryMetrics.getHistogram(1, QueryMetrics.Phase.EXECUTE).getCount());
+      Assert.assertEquals(
+              pages + 3, QueryMetrics.getPageHistogram(1, QueryMetrics.Phase.EXECUTE).getCount());
+      Assert.assertTrue(QueryMetrics.getMetrics().contains("query1.page.execute: count="));
+
+      LatencyHistogram histogram = new LatencyHistogram();
+
+      for (long micros = 1; micros <= 10000; micros++) {
+        histogram.record(micros * 1000);
+      }
+      Assert.assertEquals(5000, histogram.percentile(0.5), 5000 * 0.125);
+      Assert.assertEquals(9900, histogram.percentile(0.99), 9900 * 0.125);
+      Assert.assertEquals(10000, histogram.getMax());
+    } catch (JSONSchemaException e) {
+      Assert.fail();
+    } catch (ClassNotFoundException e) {
+      Assert.fail();
+    } catch (SQLException e) {
+      Assert.fail();
+    }
+  }
+
+  /**
+   * Tests that the population gives an IngestionReport with every JSON File, every table and
+   * every step after the tables, and that the report is a single JSON object
+   */
+  @Test
+  public void test56() {
+    InitialiseDB.initialiseDB(InitialiseDB.getSqlScript());
+
+    try {
+      PopulateDB.population(
+              populateDB,
+              PopulateDB.getActorsFile(),
+              PopulateDB.getAwardsFile(),
+              PopulateDB.getMoviesFile(),
+              PopulateDB.getDirectorsFile(),
+              PopulateDB.getRatingsFile(),
+              PopulateDB.getGenresFile());
+
+      IngestionReport report = populateDB.getIngestionReport();
+      String json = report.toJSON();
+
+      Assert.assertEquals(6, report.getFileCount());
+      Assert.assertEquals(12, report.getTableCount());
+      Assert.assertEquals(6, report.getStepCount());
+      Assert.assertTrue(json.startsWith("{\"files\":[{\"file\":\"Awards.json\",\"chars\":"));
+      Assert.assertTrue(json.contains("{\"table\":\"Actors\",\"rows\":"));
+      Assert.assertTrue(json.contains("{\"step\":\"Indexes\",\"items\":"));
+      Assert.assertTrue(json.endsWith("}"));
+    } catch (JSONSchemaException e) {
+      Assert.fail();
+    }
+  }
+
+  /**
+   * Makes sure that the DatabaseCatalog notices a change made by another program through the -wal
+   * file, before it has been checkpointed into the database file
+   */
+  @Test
+  public void test57() {
+    InitialiseDB.initialiseDB(InitialiseDB.getSqlScript());
+
+    try {
+      PopulateDB.population(
+              populateDB,
+              PopulateDB.getActorsFile(),
+              PopulateDB.getAwardsFile(),
+              PopulateDB.getMoviesFile(),
+              PopulateDB.getDirectorsFile(),
+              PopulateDB.getRatingsFile(),
+              PopulateDB.getGenresFile());
+
+      Assert.assertTrue(DatabaseCatalog.isPopulated());
+      File db = new File(InitialiseDB.getDatabaseFile());
+      long lastModified = db.lastModified();
+
+      try (Connection other = DriverManager.getConnection("jdbc:sqlite:" + db.getPath());
+          Statement statement = other.createStatement()) {
+        statement.execute("PRAGMA wal_autocheckpoint = 0");
+        statement.executeUpdate("UPDATE Catalog SET rowCount = 0 WHERE tableName = 'Actors'");
+
+        Assert.assertEquals(lastModified, db.lastModified());
+        Assert.assertFalse(DatabaseCatalog.isPopulated());
+        Assert.assertEquals(0L, (long) DatabaseCatalog.getRowCounts().get("Actors"));
+      }
+    } catch (JSONSchemaException e) {
+      Assert.fail();
+    } catch (ClassNotFoundException e) {
+      Assert.fail();
+    } catch (SQLException e) {
+      Assert.fail();
+    }
+  }
+
+  /**
+   * Makes sure that a batch size smaller than 1 is rejected with a message instead of an exception
+   */
+  @Test
+  public void test58() {
+    PopulateDB.main(new String[] {"0"});
+    Assert.assertEquals(
+            "The batch size has to be at least 1. Please try again", outputStreamCaptor.toString().trim());
+
+    try {
+      new PopulateDB(-5);
+      Assert.fail();
+    } catch (IllegalArgumentException e) {
+      Assert.assertEquals("The batch size has to be at least 1", e.getMessage());
+    }
+  }
+
+  /**
+   * Makes sure that a prepared statement kept by the pool gives the wrapper of its connection, and
+   * that the values bound by a caller who did not close it are cleared when the connection is given
+   * back
+   */
+  @Test
+  public void test59() {
+    InitialiseDB.initialiseDB(InitialiseDB.getSqlScript());
+
+    try {
+      try (Connection conn = InitialiseDB.readPreparation()) {
+        PreparedStatement statement = conn.prepareStatement("SELECT ?");
+        statement.setString(1, "left behind");
+        Assert.assertSame(conn, statement.getConnection());
+      }
+
+      try (Connection conn = InitialiseDB.readPreparation();
+          PreparedStatement statement = conn.prepareStatement("SELECT ?")) {
+        try (ResultSet set = statement.executeQuery()) {
+          Assert.assertTrue(set.next());
+          Assert.assertNull(set.getString(1));
+        } catch (SQLException e) {
+          // The driver refuses to run a statement without values, which means none were left bound
+        }
+      }
+    } catch (ClassNotFoundException e) {
+      Assert.fail();
+    } catch (SQLException e) {
+      Assert.fail();
+    }
+  }
+
+  /**
+   * Populates the database and checks the plan that SQLite gives for one of the queries. The plan
+   * has regressed if it reads a whole table (SCAN) that is not in the allowed list, or if SQLite
+   * has to build a temporary index because a declared one is missing.
+   *
+   * @param queryID the number of the query
+   * @param allowedScans the aliases of the tables that the query is allowed to read completely
+   * @param parameters the values of the parameters of the query
+   */
+  private void assertQueryPlan(int queryID, List<String> allowedScans, Object... parameters) {
+    InitialiseDB.initialiseDB(InitialiseDB.getSqlScript());
+
+    try {
+      PopulateDB.population(
+              populateDB,
+              PopulateDB.getActorsFile(),
+              PopulateDB.getAwardsFile(),
+              PopulateDB.getMoviesFile(),
+              PopulateDB.getDirectorsFile(),
+              PopulateDB.getRatingsFile(),
+              PopulateDB.getGenresFile());
+
+      List<String> plan = QueryDB.explainQueryPlan(queryID, parameters);
+      Pattern scan = Pattern.compile("^SCAN (?:TABLE )?(\\S+)(?: AS (\\S+))?");
+
+      for (String step : plan) {
+        Matcher matcher = scan.matcher(step);
+
+        if (matcher.find()) {
+          String alias = matcher.group(2) != null ? matcher.group(2) : matcher.group(1);
+          Assert.assertTrue(
+                  "Query " + queryID + " scans " + alias + ": " + plan, allowedScans.contains(alias));
+        }
+
+        Assert.assertFalse(
+                "Query " + queryID + " needs an automatic index: " + plan,
+                step.contains("AUTOMATIC"));
+      }
+    } catch (JSONSchemaException e) {
+      Assert.fail();
+    } catch (ClassNotFoundException e) {
+      Assert.fail();
+    } catch (SQLException e) {
+      Assert.fail();
+    }
+  }
 
 }
@@ -11,7 +11,6 @@ import java.util.List;
  * @author 230018374
  */
 public class Director {
-  private static int count = 1;
   private final String name;
   private final int movieCount;
   private final int ID;
@@ -22,15 +21,15 @@ public class Director {
    * in the tables Also initialises the awardIDs arrayList, which is going to be used to store the
    * values for its intermediate table AwardWinningDirector
    *
+   * @param id the director's ID, which is its position in the Directors file starting from 1
    * @param name the name of the director
    * @param movieCount the amount of movies the director has worked in
    */
-  public Director(String name, int movieCount) {
+  public Director(int id, String name, int movieCount) {
     this.name = name;
     this.movieCount = movieCount;
-    this.ID = count;
+    this.ID = id;
     this.awardIDs = new ArrayList<>();
-    count++;
   }
 
   /**
@@ -0,0 +1,149 @@
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Full-text index of the movies, built with the FTS5 extension of SQLite. Every movie is one
+ * document with four columns: its title, its plot, the names of its cast and the name of its
+ * director. The index is rebuilt from the tables at the end of every population, so it always
+ * matches them, and it is dropped together with the tables.
+ *
+ * <p>Searches are written as plain words, which all have to appear in the movie. Words between
+ * double quotes have to appear together as a phrase, a word ending in * matches every word that
+ * starts with it, and a word or phrase can be limited to one column by writing the column first,
+ * as in plot:thief or director:"Christopher Nolan".
+ *
+ * @author 230018374
+ */
+public class FullTextSearch {
+  /** Columns of the index, in the same order as they are declared. */
+  public static final List<String> COLUMNS = List.of("title", "plot", "actors", "director");
+
+  /** Maximum amount of movies returned by a search, set with moviesdb.search.limit. */
+  public static final int SEARCH_LIMIT = Integer.getInteger("moviesdb.search.limit", 20);
+
+  private static final String SEARCH_TABLE =
+      "CREATE VIRTUAL TABLE IF NOT EXISTS MovieSearch USING fts5(title, plot, actors, director, prefix='2 3')";
+  private static final String SEARCH_DELETION = "DROP TABLE IF EXISTS MovieSearch";
+  private static final String SEARCH_CONTENT =
+      "INSERT INTO MovieSearch (rowid, title, plot, actors, director) "
+          + "SELECT m.movieID, m.name, m.plot, "
+          + "(SELECT group_concat(a.name, ', ') FROM Cast c INNER JOIN Actors a ON a.actorID = c.actorID WHERE c.movieID = m.movieID), "
+          + "d.name FROM Movies m INNER JOIN Director d ON d.directorID = m.directorID";
+
+  /**
+   * Creates the index if it does not exist and fills it out again from the tables, all in one
+   * transaction
+   *
+   * @param conn an open connection to the database
+   * @return the amount of movies in the index
+   * @throws SQLException if the index cannot be built, for example if FTS5 is not available
+   */
+  public static int rebuild(Connection conn) throws SQLException {
+    boolean previousAutoCommit = conn.getAutoCommit();
+    conn.setAutoCommit(false);
+
+    try (Statement statement = conn.createStatement()) {
+      statement.executeUpdate(SEARCH_TABLE);
+      statement.executeUpdate("DELETE FROM MovieSearch");
+      int movies = statement.executeUpdate(SEARCH_CONTENT);
+      statement.executeUpdate("INSERT INTO MovieSearch (MovieSearch) VALUES ('optimize')");
+      conn.commit();
+      QueryDB.getQueryCache().invalidate();
+      return movies;
+    } catch (SQLException e) {
+      conn.rollback();
+      throw e;
+    } finally {
+      conn.setAutoCommit(previousAutoCommit);
+    }
+  }
+
+  /**
+   * Drops the index. It is run together with the SQL Deletion Script, so that a cleared database
+   * is empty again.
+   *
+   * @param conn an open connection to the database
+   * @throws SQLException if the index cannot be dropped
+   */
+  public static void drop(Connection conn) throws SQLException {
+    try (Statement statement = conn.createStatement()) {
+      statement.executeUpdate(SEARCH_DELETION);
+    }
+  }
+
+  /**
+   * Turns a search written by the user into an FTS5 query. Every word and phrase is quoted, so
+   * characters such as brackets or dashes in the search cannot break the syntax of the query.
+   *
+   * @param search the search, following the rules given in the description of the class
+   * @return the FTS5 query that matches the search
+   * @throws IllegalArgumentException if the search has no words or a quote is not closed
+   */
+  public static String expression(String search) {
+    List<String> terms = new ArrayList<>();
+    Set<String> columns = Set.copyOf(COLUMNS);
+    int i = 0;
+
+    while (i < search.length()) {
+      if (Character.isWhitespace(search.charAt(i))) {
+        i++;
+        continue;
+      }
+
+      String column = null;
+      int colon = search.indexOf(':', i);
+
+      if (colon > i && columns.contains(search.substring(i, colon).toLowerCase())) {
+        column = search.substring(i, colon).toLowerCase();
+        i = colon + 1;
+      }
+
+      String text;
+      boolean prefix = false;
+
+      if (i < search.length() && search.charAt(i) == '"') {
+        int end = search.indexOf('"', i + 1);
+
+        if (end < 0) {
+          throw new IllegalArgumentException("The search has a quote that is not closed");
+        }
+        text = search.substring(i + 1, end);
+        i = end + 1;
+
+        if (i < search.length() && search.charAt(i) == '*') {
+          prefix = true;
+          i++;
+        }
+      } else {
+        int end = i;
+
+        while (end < search.length() && !Character.isWhitespace(search.charAt(end))) {
+          end++;
+        }
+        text = search.substring(i, end);
+        i = end;
+
+        if (text.endsWith("*")) {
+          text = text.substring(0, text.length() - 1);
+          prefix = true;
+        }
+      }
+
+      if (!text.isBlank()) {
+        terms.add(
+            (column == null ? "" : column + " : ")
+                + '"' + text.replace("\"", "\"\"") + '"'
+                + (prefix ? "*" : ""));
+      }
+    }
+
+    if (terms.isEmpty()) {
+      throw new IllegalArgumentException("The search has no words. Please try again");
+    }
+    return String.join(" ", terms);
+  }
+}
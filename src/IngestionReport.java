@@ -0,0 +1,149 @@
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Timings and counters of a population run, kept per stage so it can be seen which one slows
+ * down as the files grow. There are three kinds of stages:
+ *
+ * <ul>
+ *   <li>files: the characters and entries read from every JSON File by its JSONStreamReader, the
+ *       time spent checking it against the schema in JSONTester and the time spent parsing it in
+ *       Parsers
+ *   <li>tables: the rows inserted into every table, the rows per second, the amount of batches
+ *       and their latencies, and the time taken by the commit, as measured by BulkInserter
+ *   <li>steps: everything that is built once the tables have been filled out, such as the indexes
+ *       and the summary tables, with the amount of items built and the time taken
+ * </ul>
+ *
+ * <p>The report is given as a single JSON object by toJSON, with the times in milliseconds. The
+ * numbers are always written with a dot, whatever the locale, so the report can be read back.
+ *
+ * @author 230018374
+ */
+public class IngestionReport {
+  private final List<String> files = new ArrayList<>();
+  private final List<String> tables = new ArrayList<>();
+  private final List<String> steps = new ArrayList<>();
+  private final long startTime = System.nanoTime();
+  private long parseNanos;
+  private long insertNanos;
+  private long stepNanos;
+
+  /**
+   * Records how a JSON File has been read
+   *
+   * @param file the file that has been read
+   * @param chars the amount of characters read from it
+   * @param records the amount of entries read from it
+   * @param schemaCheckNanos the time spent checking it against the schema, in nanoseconds
+   * @param parseNanos the time spent parsing it, in nanoseconds
+   */
+  public void addFile(
+      File file, long chars, int records, long schemaCheckNanos, long parseNanos) {
+    this.parseNanos += schemaCheckNanos + parseNanos;
+    files.add(
+        String.format(
+            Locale.ROOT,
+            "{\"file\":%s,\"chars\":%d,\"records\":%d,\"schemaCheckMs\":%.3f,\"parseMs\":%.3f,"
+                + "\"charsPerSec\":%.0f}",
+            QueryServer.jsonString(file.getName()),
+            chars,
+            records,
+            schemaCheckNanos / 1_000_000.0,
+            parseNanos / 1_000_000.0,
+            perSecond(chars, parseNanos)));
+  }
+
+  /**
+   * Records how a table has been filled out. It should be called once the inserter has finished.
+   *
+   * @param inserter the inserter that filled out the table
+   */
+  public void addTable(BulkInserter inserter) {
+    LatencyHistogram batches = inserter.getBatchLatencies();
+    this.insertNanos += inserter.getElapsedNanos();
+    tables.add(
+        String.format(
+            Locale.ROOT,
+            "{\"table\":%s,\"rows\":%d,\"ms\":%.3f,\"rowsPerSec\":%.0f,\"batches\":%d,"
+                + "\"batchP50Ms\":%.3f,\"batchP99Ms\":%.3f,\"batchMaxMs\":%.3f,\"commitMs\":%.3f}",
+            QueryServer.jsonString(inserter.getTable()),
+            inserter.getRowCount(),
+            inserter.getElapsedNanos() / 1_000_000.0,
+            inserter.getRowsPerSecond(),
+            batches.getCount(),
+            batches.percentile(0.50) / 1000.0,
+            batches.percentile(0.99) / 1000.0,
+            batches.getMax() / 1000.0,
+            inserter.getCommitNanos() / 1_000_000.0));
+  }
+
+  /**
+   * Records one of the steps run after the tables have been filled out
+   *
+   * @param step the name of the step
+   * @param items the amount of things built by the step, such as indexes or movies
+   * @param nanos the time taken, in nanoseconds
+   */
+  public void addStep(String step, long items, long nanos) {
+    this.stepNanos += nanos;
+    steps.add(
+        String.format(
+            Locale.ROOT,
+            "{\"step\":%s,\"items\":%d,\"ms\":%.3f}",
+            QueryServer.jsonString(step), items, nanos / 1_000_000.0));
+  }
+
+  /**
+   * Standard getter for the amount of files recorded
+   *
+   * @return the amount of files
+   */
+  public int getFileCount() {
+    return files.size();
+  }
+
+  /**
+   * Standard getter for the amount of tables recorded
+   *
+   * @return the amount of tables
+   */
+  public int getTableCount() {
+    return tables.size();
+  }
+
+  /**
+   * Standard getter for the amount of steps recorded
+   *
+   * @return the amount of steps
+   */
+  public int getStepCount() {
+    return steps.size();
+  }
+
+  /**
+   * Gives the whole report as a single JSON object, with the files, tables and steps in the order
+   * they were recorded, and the time spent in each kind of stage
+   *
+   * @return the report as JSON
+   */
+  public String toJSON() {
+    return String.format(
+        Locale.ROOT,
+        "{\"files\":[%s],\"tables\":[%s],\"steps\":[%s],\"parseMs\":%.3f,\"insertMs\":%.3f,"
+            + "\"stepMs\":%.3f,\"totalMs\":%.3f}",
+        String.join(",", files),
+        String.join(",", tables),
+        String.join(",", steps),
+        parseNanos / 1_000_000.0,
+        insertNanos / 1_000_000.0,
+        stepNanos / 1_000_000.0,
+        (System.nanoTime() - startTime) / 1_000_000.0);
+  }
+
+  private static double perSecond(long amount, long nanos) {
+    return nanos == 0 ? 0 : amount * 1_000_000_000.0 / nanos;
+  }
+}
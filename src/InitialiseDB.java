@@ -5,7 +5,9 @@ import java.io.IOException;
 import java.sql.*;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 /**
  * Used to create the database file and give it its correct constraints, as specified by the
@@ -19,6 +21,15 @@ public class InitialiseDB {
 
     private static final String SQL_DELETION_SCRIPT = "TableClearDDL.sql";
 
+    private static final boolean WAL = Boolean.parseBoolean(System.getProperty("moviesdb.wal", "true"));
+
+    /** Connections used to run the queries, set with moviesdb.pool.readers. */
+    private static final int READ_POOL_SIZE =
+            Integer.getInteger("moviesdb.pool.readers", Runtime.getRuntime().availableProcessors());
+
+    private static ConnectionPool connectionPool;
+    private static ConnectionPool readPool;
+
     /**
      * Checks the database file and revises if there are tables inside. This is used to determine if
      * the database has its tables either created or cleared.
@@ -27,9 +38,7 @@ public class InitialiseDB {
      */
     public static boolean emptyDBChecker() {
         try (Connection conn = InitialiseDB.preparation()) {
-            DatabaseMetaData dbMeta = conn.getMetaData();
-            ResultSet set = dbMeta.getTables(null, null, null, new String[]{"TABLE"});
-            return !QueryDB.resultSetChecker(set);
+            return emptyDBChecker(conn);
         } catch (SQLException e) {
             System.out.println("There has been a problem with the SQL Code. Please try again");
         } catch (ClassNotFoundException e) {
@@ -38,6 +47,21 @@ public class InitialiseDB {
         return true;
     }
 
+    /**
+     * Checks if there are tables inside the database using a connection that is already open.
+     *
+     * @param conn an open connection to the database
+     * @return true if the database is empty and false if it is not
+     * @throws SQLException if there is a problem reading the metadata of the database
+     */
+    public static boolean emptyDBChecker(Connection conn) throws SQLException {
+        DatabaseMetaData dbMeta = conn.getMetaData();
+
+        try (ResultSet set = dbMeta.getTables(null, null, null, new String[]{"TABLE"})) {
+            return !QueryDB.resultSetChecker(set);
+        }
+    }
+
     /**
      * Standard getter for the SQL Script that clears the database file
      *
@@ -102,17 +126,14 @@ public class InitialiseDB {
 
             if (commands.equals(DDLTester.tester())) {
 
-                try {
-                    driverLoad();
-
-                    Connection conn = DriverManager.getConnection("jdbc:sqlite:" + getDatabaseFile());
-                    Statement lecture = conn.createStatement();
+                try (Connection conn = preparation();
+                     Statement lecture = conn.createStatement()) {
 
                     for (String command : commands) {
                         lecture.executeUpdate(command);
                     }
-                    lecture.close();
-                    conn.close();
+                    QueryDB.getQueryCache().invalidate();
+                    DatabaseCatalog.invalidate();
                     return ("OK");
                 } catch (ClassNotFoundException e) {
                     return ("The drivers for SQLite could not be loaded");
@@ -134,20 +155,148 @@ public class InitialiseDB {
     }
 
     /**
-     * Initialises the SQLite drivers and also provides a connection to the database.
+     * Provides a connection to the database from the connection pool. Closing the connection gives
+     * it back to the pool instead of closing the database file.
      *
      * @return a Connection object that is connected to the database.
      * @throws ClassNotFoundException if the drivers could not be loaded.
      * @throws SQLException           if there is an issue with the Database.
      */
     public static Connection preparation() throws ClassNotFoundException, SQLException {
-        InitialiseDB.driverLoad();
-        Connection connection = DriverManager.getConnection("jdbc:sqlite:" + getDatabaseFile());
-        return connection;
+        return getConnectionPool().getConnection();
+    }
+
+    /**
+     * Provides a read-only connection from the pool of readers, which is where the queries run.
+     * Closing the connection gives it back to the pool.
+     *
+     * @return a Connection object that can only read the database
+     * @throws ClassNotFoundException if the drivers could not be loaded.
+     * @throws SQLException           if there is an issue with the Database.
+     */
+    public static Connection readPreparation() throws ClassNotFoundException, SQLException {
+        return getReadPool().getConnection();
+    }
+
+    /**
+     * Returns the connection pool of the database file, creating it the first time it is needed.
+     * The SQLite drivers are only loaded at that moment, not on every connection. The size and
+     * timeout of the pool can be changed through the moviesdb.pool.size and moviesdb.pool.timeout
+     * system properties. Unless the moviesdb.wal property is false, its connections put the
+     * database in WAL mode, so that the readers are not blocked while it writes.
+     *
+     * @return the connection pool used by every class to reach the database
+     * @throws ClassNotFoundException if the drivers could not be loaded
+     */
+    public static synchronized ConnectionPool getConnectionPool() throws ClassNotFoundException {
+        if (connectionPool == null) {
+            driverLoad();
+            List<String> pragmas = new ArrayList<>(ConnectionPool.DEFAULT_PRAGMAS);
+
+            if (WAL) {
+                pragmas.add(ConnectionPool.WAL_PRAGMA);
+            }
+            connectionPool =
+                    new ConnectionPool(
+                            new File(getDatabaseFile()),
+                            ConnectionPool.DEFAULT_SIZE,
+                            ConnectionPool.DEFAULT_TIMEOUT,
+                            pragmas);
+        }
+        return connectionPool;
+    }
+
+    /**
+     * Returns the pool of read-only connections used by the queries, creating it the first time it
+     * is needed. It holds one connection per core unless the moviesdb.pool.readers property says
+     * otherwise.
+     *
+     * @return the connection pool of the readers
+     * @throws ClassNotFoundException if the drivers could not be loaded
+     */
+    public static synchronized ConnectionPool getReadPool() throws ClassNotFoundException {
+        if (readPool == null) {
+            List<String> pragmas = new ArrayList<>(ConnectionPool.DEFAULT_PRAGMAS);
+            pragmas.add(ConnectionPool.READ_ONLY_PRAGMA);
+            readPool =
+                    new ConnectionPool(
+                            new File(getDatabaseFile()),
+                            Math.max(1, READ_POOL_SIZE),
+                            ConnectionPool.DEFAULT_TIMEOUT,
+                            pragmas);
+        }
+        return readPool;
+    }
+
+    /**
+     * Closes the connection pools and forgets them, so the next connection is opened by new pools.
+     * Connections that are in use are closed when they are given back. Once the last connection to
+     * the file is closed, SQLite checkpoints and removes its -wal and -shm files, so this has to be
+     * called before the database file is deleted or replaced.
+     */
+    public static synchronized void closePools() {
+        if (readPool != null) {
+            readPool.close();
+            readPool = null;
+        }
+
+        if (connectionPool != null) {
+            connectionPool.close();
+            connectionPool = null;
+        }
+    }
+
+    /**
+     * Creates the secondary indexes given by the DDLTester and updates the statistics that SQLite
+     * uses to choose them. This is done once the tables have been filled out.
+     *
+     * @param conn an open connection to the database
+     * @throws SQLException if any of the indexes cannot be created
+     */
+    public static void createIndexes(Connection conn) throws SQLException {
+        try (Statement statement = conn.createStatement()) {
+            for (String index : DDLTester.indexTester()) {
+                statement.executeUpdate(index);
+            }
+            statement.executeUpdate("ANALYZE");
+        }
+    }
+
+    /**
+     * Compares the indexes inside the database with the ones given by the DDLTester.
+     *
+     * @param conn an open connection to the database
+     * @return the statements of the indexes that are not in the database or that are defined
+     * differently. It is empty if every index is in place
+     * @throws SQLException if the schema of the database cannot be read
+     */
+    public static List<String> missingIndexes(Connection conn) throws SQLException {
+        Map<String, String> present = new HashMap<>();
+
+        try (Statement statement = conn.createStatement();
+             ResultSet set = statement.executeQuery("SELECT name, sql FROM sqlite_master WHERE type = 'index'")) {
+            while (set.next()) {
+                present.put(set.getString(1), set.getString(2));
+            }
+        }
+
+        List<String> missing = new ArrayList<>();
+
+        for (String index : DDLTester.indexTester()) {
+            String definition = index.replace("IF NOT EXISTS ", "");
+            String name = definition.split(" ")[2];
+
+            if (!definition.equals(present.get(name))) {
+                missing.add(index);
+            }
+        }
+        return missing;
     }
 
     /**
-     * Clears the database from its expected tables and relations.
+     * Clears the database from its expected tables and relations, including the search index, the
+     * movie summaries and the Catalog table written by the population. The connection pools are
+     * closed afterwards, so no connection keeps statements prepared on the dropped tables.
      *
      * @param perfectCommands provided by the DDLTester, these are the valid commands to clear the
      *                        database file.
@@ -171,6 +320,11 @@ public class InitialiseDB {
 
                     stmnt.executeUpdate(command);
                 }
+                FullTextSearch.drop(conn);
+                MovieSummary.drop(conn);
+                AwardAgeSummary.drop(conn);
+                DatabaseCatalog.drop(conn);
+                QueryDB.getQueryCache().invalidate();
 
             } else {
 
@@ -183,6 +337,7 @@ public class InitialiseDB {
         } catch (SQLException e) {
             throw new SQLException();
         }
+        closePools();
     }
 
     /**
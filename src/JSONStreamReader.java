@@ -0,0 +1,257 @@
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Single-pass streaming tokenizer for the custom JSON Files. The files are made of an outer object
+ * which holds one object per entry of the table, so the reader walks the file once and hands back
+ * every innermost object (the ones that only contain key-value pairs) as soon as it is closed. The
+ * Parsers class uses these records to build the Actors, Movies, Director etc. objects without
+ * having to read the file once per key. Every chunk is given to a JSONTester as it is read, so the
+ * file is checked against its schema in the same pass.
+ *
+ * @author 230018374
+ */
+public class JSONStreamReader implements AutoCloseable {
+  private static final int BUFFER_SIZE = 1 << 16;
+  private final Reader reader;
+  private final char[] buffer = new char[BUFFER_SIZE];
+  private final StringBuilder token = new StringBuilder();
+  private final File file;
+  private final JSONTester tester;
+  private int position;
+  private int limit;
+  private long charsRead;
+
+  /**
+   * Opens the passed file for reading. Nothing is read until the first record is requested.
+   *
+   * @param file the JSON File that is going to be read
+   * @param schemaFile the referenced file the JSON File is checked against by the JSONTester
+   * @throws IOException if the file or the referenced file cannot be opened
+   */
+  public JSONStreamReader(File file, File schemaFile) throws IOException {
+    this.file = file;
+    this.tester = new JSONTester(file, schemaFile);
+
+    try {
+      this.reader = new BufferedReader(new FileReader(file), BUFFER_SIZE);
+    } catch (IOException e) {
+      tester.close();
+      throw e;
+    }
+  }
+
+  /**
+   * Reads forward until the next innermost object is closed and returns its key-value pairs. The
+   * values are always returned as strings (with the quotes removed if they had any), the Parsers
+   * class is in charge of turning them into numbers when needed.
+   *
+   * @return the key-value pairs of the next entry in the order they appear in the file, or null if
+   *     the end of the file has been reached
+   * @throws IOException if the file cannot be read
+   * @throws JSONSchemaException if the file is not well-formed JSON or does not meet the schema
+   */
+  public Map<String, String> nextRecord() throws IOException, JSONSchemaException {
+    Map<String, String> record = null;
+    String key = null;
+    int c;
+
+    while ((c = nextNonWhitespace()) != -1) {
+      switch (c) {
+        case '{':
+          record = new LinkedHashMap<>();
+          key = null;
+          break;
+        case '}':
+          if (record != null) {
+            return record;
+          }
+          break;
+        case '"':
+          String text = readString();
+
+          if (key == null) {
+            expect(':');
+            key = text;
+          } else {
+            putValue(record, key, text);
+            key = null;
+          }
+          break;
+        case ',':
+        case ':':
+        case '[':
+        case ']':
+          break;
+        default:
+          if (key == null) {
+            throw schemaError("Unexpected character '" + (char) c + "'");
+          }
+          putValue(record, key, readLiteral(c));
+          key = null;
+      }
+    }
+
+    if (record != null) {
+      throw schemaError("Unexpected end of file");
+    }
+    return null;
+  }
+
+  /**
+   * Returns how many characters have been read from the file so far. This is used to report how
+   * much of the file has been processed.
+   *
+   * @return the amount of characters read so far
+   */
+  public long getCharsRead() {
+    return charsRead;
+  }
+
+  /**
+   * Standard getter for the time spent checking the file against its schema so far
+   *
+   * @return the time spent by the JSONTester in nanoseconds
+   */
+  public long getSchemaCheckNanos() {
+    return tester.getCheckNanos();
+  }
+
+  /**
+   * Standard getter for the file being read
+   *
+   * @return the JSON File
+   */
+  public File getFile() {
+    return file;
+  }
+
+  /**
+   * Closes the underlying reader and the referenced file of the JSONTester.
+   *
+   * @throws IOException if the readers cannot be closed
+   */
+  @Override
+  public void close() throws IOException {
+    try (tester) {
+      reader.close();
+    }
+  }
+
+  private void putValue(Map<String, String> record, String key, String value)
+      throws JSONSchemaException {
+    if (record == null) {
+      throw schemaError("Value for key \"" + key + "\" outside of an object");
+    }
+    record.put(key, value);
+  }
+
+  private void expect(char expected) throws IOException, JSONSchemaException {
+    int c = nextNonWhitespace();
+
+    if (c != expected) {
+      throw schemaError("Expected '" + expected + "'");
+    }
+  }
+
+  private String readString() throws IOException, JSONSchemaException {
+    token.setLength(0);
+    int c;
+
+    while ((c = read()) != '"') {
+      if (c == -1) {
+        throw schemaError("Unterminated string");
+      }
+
+      if (c == '\\') {
+        c = read();
+
+        switch (c) {
+          case 'n' -> token.append('\n');
+          case 't' -> token.append('\t');
+          case 'r' -> token.append('\r');
+          case 'b' -> token.append('\b');
+          case 'f' -> token.append('\f');
+          case 'u' -> {
+            char[] hex = new char[4];
+
+            for (int i = 0; i < hex.length; i++) {
+              int h = read();
+
+              if (h == -1) {
+                throw schemaError("Unterminated escape sequence");
+              }
+              hex[i] = (char) h;
+            }
+            token.append((char) Integer.parseInt(new String(hex), 16));
+          }
+          case -1 -> throw schemaError("Unterminated string");
+          default -> token.append((char) c);
+        }
+      } else {
+        token.append((char) c);
+      }
+    }
+
+    return token.toString();
+  }
+
+  private String readLiteral(int first) throws IOException, JSONSchemaException {
+    token.setLength(0);
+    token.append((char) first);
+
+    while (position < limit || fill()) {
+      char c = buffer[position];
+
+      if (c == ',' || c == '}' || c == ']' || Character.isWhitespace(c)) {
+        break;
+      }
+      token.append(c);
+      position++;
+    }
+
+    return token.toString();
+  }
+
+  private int nextNonWhitespace() throws IOException, JSONSchemaException {
+    int c;
+
+    do {
+      c = read();
+    } while (c != -1 && Character.isWhitespace(c));
+
+    return c;
+  }
+
+  private int read() throws IOException, JSONSchemaException {
+    if (position >= limit && !fill()) {
+      return -1;
+    }
+    return buffer[position++];
+  }
+
+  private boolean fill() throws IOException, JSONSchemaException {
+    limit = reader.read(buffer, 0, buffer.length);
+    position = 0;
+
+    if (limit <= 0) {
+      limit = 0;
+      tester.finish();
+      return false;
+    }
+
+    tester.check(buffer, limit);
+    charsRead += limit;
+    return true;
+  }
+
+  private JSONSchemaException schemaError(String reason) {
+    return new JSONSchemaException(
+        "The file " + file.getName() + " is not valid JSON: " + reason);
+  }
+}
@@ -1,150 +1,118 @@
-import java.io.*;
-
-import java.util.stream.Collectors;
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.file.Files;
+import java.util.Arrays;
 
 /**
  * Used to test the integrity of files used in the parsing process. To do this, it compares them
  * with the referenced files in the Assignment2 JSON Files folder
  *
+ * <p>The comparison is done while the file is being parsed: the JSONStreamReader gives every chunk
+ * it reads to check, which reads the same amount of characters from the referenced file and
+ * compares them, so the compared file is only read once. If the compared file is the referenced
+ * file itself, which is what PopulateDB does, there is nothing to compare and the referenced file
+ * is not read at all.
+ *
  * @author 230018374
  */
-public class JSONTester {
+public class JSONTester implements AutoCloseable {
+  private final File comparedFile;
+  private final Reader schema;
+  private char[] expected = new char[0];
+  private long checkTime;
 
   /**
-   * Compares a file with the Actors JSON to see if they are the same
+   * Creates a tester for a file. Nothing is compared until the first chunk is checked.
    *
-   * @return true if this is the case, false if it is not
+   * @param comparedFile the file that is going to be parsed
+   * @param schemaFile the referenced file it has to be the same as
+   * @throws IOException if the referenced file cannot be opened
    */
-  public static boolean JSONActorsComparer(File comparedFile)
-      throws IOException, JSONSchemaException {
-    BufferedReader reader1 = new BufferedReader(new FileReader(PopulateDB.getActorsFile()));
-    BufferedReader reader2 = new BufferedReader(new FileReader(comparedFile));
-
-    if (reader1
-        .lines()
-        .toList()
-        .equals(reader2.lines().collect(Collectors.toList()))) {
-      reader1.close();
-      reader2.close();
-      return true;
-    } else {
-      throw new JSONSchemaException(
-          "The file " + comparedFile.getName() + "does not meet the schema requirements");
-    }
+  public JSONTester(File comparedFile, File schemaFile) throws IOException {
+    this.comparedFile = comparedFile;
+    this.schema =
+        Files.isSameFile(comparedFile.toPath(), schemaFile.toPath())
+            ? null
+            : new BufferedReader(new FileReader(schemaFile));
   }
 
   /**
-   * Compares a file with the Awards JSON to see if they are the same
+   * Compares the next chunk of the compared file with the same part of the referenced file
    *
-   * @return true if this is the case, false if it is not
+   * @param chunk the characters that have just been read from the compared file
+   * @param length the amount of characters of the chunk that have been read
+   * @throws IOException if the referenced file cannot be read
+   * @throws JSONSchemaException if the chunk is not the same as the referenced file
    */
-  public static boolean JSONAwardsComparer(File comparedFile)
-      throws IOException, JSONSchemaException {
-    BufferedReader reader1 = new BufferedReader(new FileReader(PopulateDB.getAwardsFile()));
-    BufferedReader reader2 = new BufferedReader(new FileReader(comparedFile));
-
-    if (reader1
-        .lines()
-        .toList()
-        .equals(reader2.lines().collect(Collectors.toList()))) {
-      reader1.close();
-      reader2.close();
-      return true;
-    } else {
-      throw new JSONSchemaException(
-          "The file " + comparedFile.getName() + "does not meet the schema requirements");
+  public void check(char[] chunk, int length) throws IOException, JSONSchemaException {
+    if (schema == null) {
+      return;
     }
-  }
 
-  /**
-   * Compares a file with the Directors JSON to see if they are the same
-   *
-   * @return true if this is the case, false if it is not
-   */
-  public static boolean JSONDirectorsComparer(File comparedFile)
-      throws IOException, JSONSchemaException {
-    BufferedReader reader1 = new BufferedReader(new FileReader(PopulateDB.getDirectorsFile()));
-    BufferedReader reader2 = new BufferedReader(new FileReader(comparedFile));
+    long start = System.nanoTime();
+
+    try {
+      if (expected.length < length) {
+        expected = new char[length];
+      }
 
-    if (reader1
-        .lines()
-        .toList()
-        .equals(reader2.lines().collect(Collectors.toList()))) {
-      reader1.close();
-      reader2.close();
-      return true;
-    } else {
-      throw new JSONSchemaException(
-          "The file " + comparedFile.getName() + "does not meet the schema requirements");
+      int read = 0;
+
+      while (read < length) {
+        int count = schema.read(expected, read, length - read);
+
+        if (count < 0) {
+          throw schemaError();
+        }
+        read += count;
+      }
+
+      if (!Arrays.equals(chunk, 0, length, expected, 0, length)) {
+        throw schemaError();
+      }
+    } finally {
+      checkTime += System.nanoTime() - start;
     }
   }
 
   /**
-   * Compares a file with the Genres JSON to see if they are the same
+   * Checks that the referenced file has no more characters once the compared file has ended
    *
-   * @return true if this is the case, false if it is not
+   * @throws IOException if the referenced file cannot be read
+   * @throws JSONSchemaException if the referenced file is longer than the compared file
    */
-  public static boolean JSONGenresComparer(File comparedFile)
-      throws IOException, JSONSchemaException {
-    BufferedReader reader1 = new BufferedReader(new FileReader(PopulateDB.getGenresFile()));
-    BufferedReader reader2 = new BufferedReader(new FileReader(comparedFile));
-
-    if (reader1
-        .lines()
-        .toList()
-        .equals(reader2.lines().collect(Collectors.toList()))) {
-      reader1.close();
-      reader2.close();
-      return true;
-    } else {
-      throw new JSONSchemaException(
-          "The file " + comparedFile.getName() + "does not meet the schema requirements");
+  public void finish() throws IOException, JSONSchemaException {
+    if (schema != null && schema.read() != -1) {
+      throw schemaError();
     }
   }
 
   /**
-   * Compares a file with the Movies JSON to see if they are the same
+   * Standard getter for the time spent comparing the file so far
    *
-   * @return true if this is the case, false if it is not
+   * @return the time spent comparing in nanoseconds
    */
-  public static boolean JSONMoviesComparer(File comparedFile)
-      throws IOException, JSONSchemaException {
-    BufferedReader reader1 = new BufferedReader(new FileReader(PopulateDB.getMoviesFile()));
-    BufferedReader reader2 = new BufferedReader(new FileReader(comparedFile));
-
-    if (reader1
-        .lines()
-        .toList()
-        .equals(reader2.lines().collect(Collectors.toList()))) {
-      reader1.close();
-      reader2.close();
-      return true;
-    } else {
-      throw new JSONSchemaException(
-          "The file " + comparedFile.getName() + "does not meet the schema requirements");
-    }
+  public long getCheckNanos() {
+    return checkTime;
   }
 
   /**
-   * Compares a file with the Ratings JSON to see if they are the same
+   * Closes the referenced file if it was opened
    *
-   * @return true if this is the case, false if it is not
+   * @throws IOException if the referenced file cannot be closed
    */
-  public static boolean JSONRatingsComparer(File comparedFile)
-      throws IOException, JSONSchemaException {
-    BufferedReader reader1 = new BufferedReader(new FileReader(PopulateDB.getRatingsFile()));
-    BufferedReader reader2 = new BufferedReader(new FileReader(comparedFile));
-
-    if (reader1
-        .lines()
-        .toList()
-        .equals(reader2.lines().collect(Collectors.toList()))) {
-      reader1.close();
-      reader2.close();
-      return true;
-    } else {
-      throw new JSONSchemaException(
-          "The file " + comparedFile.getName() + "does not meet the schema requirements");
+  @Override
+  public void close() throws IOException {
+    if (schema != null) {
+      schema.close();
     }
   }
+
+  private JSONSchemaException schemaError() {
+    return new JSONSchemaException(
+        "The file " + comparedFile.getName() + " does not meet the schema requirements");
+  }
 }
@@ -0,0 +1,115 @@
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Histogram of latencies in microseconds that can be recorded from several threads at once
+ * without locking. The latencies below 16 microseconds get a bucket each, and every power of two
+ * above that is split into eight buckets, so a percentile is never more than 12.5% away from the
+ * real value while the whole range up to days fits in a few hundred counters.
+ *
+ * @author 230018374
+ */
+public class LatencyHistogram {
+  private static final int LINEAR = 16;
+  private static final int SUB_BUCKETS = 8;
+  private static final int SUB_BITS = 3;
+  private static final int BUCKETS = LINEAR + (Long.SIZE - 4) * SUB_BUCKETS;
+
+  private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+  private final AtomicLong count = new AtomicLong();
+  private final AtomicLong max = new AtomicLong();
+
+  /**
+   * Records one latency
+   *
+   * @param nanos the latency in nanoseconds. Negative values are taken as 0
+   */
+  public void record(long nanos) {
+    long micros = Math.max(0, nanos / 1000);
+    counts.incrementAndGet(bucket(micros));
+    count.incrementAndGet();
+    max.accumulateAndGet(micros, Math::max);
+  }
+
+  /**
+   * Works out the latency below which a fraction of the recorded ones fall
+   *
+   * @param fraction the fraction, between 0 and 1. 0.95 gives the 95th percentile
+   * @return the percentile in microseconds, or 0 if nothing has been recorded
+   */
+  public long percentile(double fraction) {
+    long total = count.get();
+
+    if (total == 0) {
+      return 0;
+    }
+
+    long rank = Math.max(1, (long) Math.ceil(fraction * total));
+    long seen = 0;
+
+    for (int i = 0; i < BUCKETS; i++) {
+      seen += counts.get(i);
+
+      if (seen >= rank) {
+        return Math.min(upperBound(i), max.get());
+      }
+    }
+    return max.get();
+  }
+
+  /**
+   * Standard getter for the amount of latencies recorded
+   *
+   * @return the amount of latencies
+   */
+  public long getCount() {
+    return count.get();
+  }
+
+  /**
+   * Standard getter for the highest latency recorded
+   *
+   * @return the highest latency in microseconds
+   */
+  public long getMax() {
+    return max.get();
+  }
+
+  /**
+   * Gives a summary of the histogram
+   *
+   * @return a string with the amount of latencies and the 50th, 95th and 99th percentiles and the
+   *     highest latency in milliseconds
+   */
+  public String getMetrics() {
+    return String.format(
+        "count=%d p50=%.3fms p95=%.3fms p99=%.3fms max=%.3fms",
+        getCount(),
+        percentile(0.50) / 1000.0,
+        percentile(0.95) / 1000.0,
+        percentile(0.99) / 1000.0,
+        getMax() / 1000.0);
+  }
+
+  private static int bucket(long micros) {
+    if (micros < LINEAR) {
+      return (int) micros;
+    }
+
+    int exponent = Long.SIZE - 1 - Long.numberOfLeadingZeros(micros);
+    int sub = (int) (micros >>> (exponent - SUB_BITS)) & (SUB_BUCKETS - 1);
+    return LINEAR + (exponent - 4) * SUB_BUCKETS + sub;
+  }
+
+  // The highest latency that falls in a bucket
+  private static long upperBound(int bucket) {
+    if (bucket < LINEAR) {
+      return bucket;
+    }
+
+    int exponent = (bucket - LINEAR) / SUB_BUCKETS + 4;
+    int sub = (bucket - LINEAR) % SUB_BUCKETS;
+    long width = 1L << (exponent - SUB_BITS);
+    return (1L << exponent) + (sub + 1) * width - 1;
+  }
+}
@@ -0,0 +1,324 @@
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Builds a query for the names of the movies that pass any combination of filters, written as a
+ * single parameterised statement. Every filter only joins the tables it needs, so a query on the
+ * genre does not join the ratings or the director, and the database is free to start from the
+ * most selective of them:
+ *
+ * <pre>
+ *   new MovieQuery().genre("Action").criticSource("Rotten Tomatoes").minRating(4.0).cursor()
+ * </pre>
+ *
+ * <p>The filters on the critic source and the rating are applied to the same rating, so the query
+ * above gives the movies rated at least 4 by Rotten Tomatoes and not the ones rated at least 4 by
+ * anyone. Every movie is given once, even if several of its rows pass, and the names are given in
+ * alphabetical order.
+ *
+ * <p>The query can also be sorted by rating and cut to its first rows, which lists ratings instead
+ * of movies, with the critic and the rating of each one:
+ *
+ * <pre>
+ *   new MovieQuery().genre("Thriller").criticSource("IMDb").orderBy(Order.BEST_RATED).limit(10)
+ * </pre>
+ *
+ * <p>The index on Ratings(criticSource, ratingNumber) holds the ratings of every critic source in
+ * order, so the best or worst ratings of a source are read from one end of the index until there
+ * are enough rows, without sorting the rest. When another filter leaves fewer rows to go through,
+ * the database starts from it instead and only sorts the rows that pass it.
+ *
+ * <p>The SQL Code only depends on which filters are used, the order and whether there is a limit
+ * (the shape of the query) and not on their values. It is written once per shape and kept, and
+ * since the statement is always the same text the ConnectionPool reuses its prepared statement as
+ * well.
+ *
+ * @author 230018374
+ */
+public class MovieQuery {
+  /** Filters a query can have, in the order their parameters are given to the statement. */
+  public enum Filter {
+    DIRECTOR(Filter.DIRECTOR_JOIN, "d.name = ?"),
+    ACTOR(Filter.CAST_JOIN, "a.name = ?"),
+    GENRE(Filter.GENRE_JOIN, "g.GenreName = ?"),
+    CRITIC_SOURCE(Filter.RATING_JOIN, "r.criticSource = ?"),
+    MIN_RATING(Filter.RATING_JOIN, "r.ratingNumber >= ?"),
+    MAX_RATING(Filter.RATING_JOIN, "r.ratingNumber <= ?"),
+    RELEASED_FROM("", Filter.RELEASE_YEAR + " >= ?"),
+    RELEASED_TO("", Filter.RELEASE_YEAR + " <= ?");
+
+    private static final String DIRECTOR_JOIN =
+        " INNER JOIN Director d ON d.directorID = m.directorID";
+    private static final String CAST_JOIN =
+        " INNER JOIN Cast c ON c.movieID = m.movieID INNER JOIN Actors a ON a.actorID = c.actorID";
+    private static final String GENRE_JOIN =
+        " INNER JOIN MoviesWithGenres mg ON mg.movieID = m.movieID INNER JOIN Genres g ON g.genreID = mg.genreID";
+    private static final String RATING_JOIN =
+        " INNER JOIN MoviesWithRatings mr ON mr.movieID = m.movieID INNER JOIN Ratings r ON r.criticID = mr.criticID";
+    // The release dates are mostly D-MM-YYYY, but a few start with the year and the day and month
+    // are not always in the same order, so only the year is compared
+    private static final String RELEASE_YEAR =
+        "CAST(CASE WHEN m.releaseDate GLOB '[0-9][0-9][0-9][0-9]-*' THEN substr(m.releaseDate, 1, 4) "
+            + "ELSE substr(m.releaseDate, -4) END AS INTEGER)";
+
+    private final String join;
+    private final String condition;
+
+    Filter(String join, String condition) {
+      this.join = join;
+      this.condition = condition;
+    }
+  }
+
+  /** Orders the rows of a query can be given in. */
+  public enum Order {
+    /** One row per movie, in alphabetical order. */
+    NAME,
+    /** One row per rating, from the highest rating to the lowest. */
+    BEST_RATED,
+    /** One row per rating, from the lowest rating to the highest. */
+    WORST_RATED
+  }
+
+  private record Shape(Set<Filter> filters, Order order, boolean limited) {}
+
+  private static final String SELECTION = "SELECT m.name as 'Name' FROM Movies m";
+  private static final String RATED_SELECTION =
+      "SELECT m.name as 'Name', r.criticSource as 'Critic', r.ratingNumber as 'Rating' FROM Movies m";
+  private static final Map<Shape, String> SHAPES = new ConcurrentHashMap<>();
+
+  private final Map<Filter, Object> values = new EnumMap<>(Filter.class);
+  private Order order = Order.NAME;
+  private int limit;
+
+  /**
+   * Keeps the movies directed by a director
+   *
+   * @param name the name of the director
+   * @return this query
+   */
+  public MovieQuery director(String name) {
+    return filter(Filter.DIRECTOR, name);
+  }
+
+  /**
+   * Keeps the movies an actor has been in
+   *
+   * @param name the name of the actor
+   * @return this query
+   */
+  public MovieQuery actor(String name) {
+    return filter(Filter.ACTOR, name);
+  }
+
+  /**
+   * Keeps the movies of a genre
+   *
+   * @param name the name of the genre
+   * @return this query
+   */
+  public MovieQuery genre(String name) {
+    return filter(Filter.GENRE, name);
+  }
+
+  /**
+   * Keeps the movies rated by a critic source. The rating filters apply to the rating of that
+   * source.
+   *
+   * @param source the name of the critic source
+   * @return this query
+   */
+  public MovieQuery criticSource(String source) {
+    return filter(Filter.CRITIC_SOURCE, source);
+  }
+
+  /**
+   * Keeps the movies with a rating of at least the passed one
+   *
+   * @param rating the lowest rating, included
+   * @return this query
+   */
+  public MovieQuery minRating(double rating) {
+    return filter(Filter.MIN_RATING, rating);
+  }
+
+  /**
+   * Keeps the movies with a rating of at most the passed one
+   *
+   * @param rating the highest rating, included
+   * @return this query
+   */
+  public MovieQuery maxRating(double rating) {
+    return filter(Filter.MAX_RATING, rating);
+  }
+
+  /**
+   * Keeps the movies released in the passed year or later
+   *
+   * @param year the first year, included
+   * @return this query
+   */
+  public MovieQuery releasedFrom(int year) {
+    return filter(Filter.RELEASED_FROM, year);
+  }
+
+  /**
+   * Keeps the movies released in the passed year or before
+   *
+   * @param year the last year, included
+   * @return this query
+   */
+  public MovieQuery releasedTo(int year) {
+    return filter(Filter.RELEASED_TO, year);
+  }
+
+  /**
+   * Sets the order of the rows. Sorting by rating gives one row per rating that passes the
+   * filters, instead of one per movie.
+   *
+   * @param order the order of the rows
+   * @return this query
+   */
+  public MovieQuery orderBy(Order order) {
+    if (order == null) {
+      throw new IllegalArgumentException("The order of the query is missing");
+    }
+    this.order = order;
+    return this;
+  }
+
+  /**
+   * Only gives the first rows of the query, in its order
+   *
+   * @param count the maximum amount of rows
+   * @return this query
+   */
+  public MovieQuery limit(int count) {
+    if (count < 1) {
+      throw new IllegalArgumentException("The limit has to be a positive number");
+    }
+    this.limit = count;
+    return this;
+  }
+
+  /**
+   * Standard getter for the filters used by the query
+   *
+   * @return the shape of the query
+   */
+  public Set<Filter> getShape() {
+    return values.isEmpty()
+        ? Collections.emptySet()
+        : Collections.unmodifiableSet(EnumSet.copyOf(values.keySet()));
+  }
+
+  /**
+   * Gives the SQL Code of the query, which only depends on the filters used
+   *
+   * @return the SQL Code, with one placeholder per filter
+   */
+  public String sql() {
+    return sql(getShape(), order, limit > 0);
+  }
+
+  /**
+   * Gives the values of the filters, in the same order as the placeholders of the SQL Code
+   *
+   * @return the parameters of the query
+   */
+  public Object[] parameters() {
+    List<Object> parameters = new ArrayList<>(values.values());
+
+    if (limit > 0) {
+      parameters.add(limit);
+    }
+    return parameters.toArray();
+  }
+
+  /**
+   * Runs the query
+   *
+   * @return a cursor over the names of the movies that pass every filter
+   * @throws ClassNotFoundException if the drivers are not loaded
+   * @throws SQLException if there is a problem with the SQL Code
+   */
+  public QueryCursor cursor() throws ClassNotFoundException, SQLException {
+    return QueryCursor.open(sql(), parameters());
+  }
+
+  /**
+   * Gives the SQL Code of a query with the passed filters. It is written the first time each
+   * shape is asked for and kept afterwards.
+   *
+   * @param shape the filters used by the query
+   * @return the SQL Code, with one placeholder per filter in the order of Filter
+   */
+  public static String sql(Set<Filter> shape) {
+    return sql(shape, Order.NAME, false);
+  }
+
+  /**
+   * Gives the SQL Code of a query with the passed filters, order and limit. It is written the
+   * first time each shape is asked for and kept afterwards.
+   *
+   * @param filters the filters used by the query
+   * @param order the order of the rows
+   * @param limited whether the query has a limit
+   * @return the SQL Code, with one placeholder per filter in the order of Filter, followed by one
+   *     for the limit if there is one
+   */
+  public static String sql(Set<Filter> filters, Order order, boolean limited) {
+    Set<Filter> copy = filters.isEmpty() ? Collections.emptySet() : EnumSet.copyOf(filters);
+    return SHAPES.computeIfAbsent(new Shape(copy, order, limited), MovieQuery::write);
+  }
+
+  /**
+   * Standard getter for the amount of shapes whose SQL Code has been written
+   *
+   * @return the amount of shapes kept
+   */
+  public static int getShapeCount() {
+    return SHAPES.size();
+  }
+
+  private MovieQuery filter(Filter filter, Object value) {
+    if (value == null) {
+      throw new IllegalArgumentException("The value of the " + filter + " filter is missing");
+    }
+    values.put(filter, value);
+    return this;
+  }
+
+  // Filters on the same table share its join, so they are applied to the same row of it
+  private static String write(Shape shape) {
+    Set<String> joins = new LinkedHashSet<>();
+    List<String> conditions = new ArrayList<>();
+
+    for (Filter filter : shape.filters()) {
+      joins.add(filter.join);
+      conditions.add(filter.condition);
+    }
+
+    if (shape.order() != Order.NAME) {
+      joins.add(Filter.RATING_JOIN);
+    }
+
+    String from =
+        String.join("", joins)
+            + (conditions.isEmpty() ? "" : " WHERE " + String.join(" AND ", conditions));
+    String sorted = switch (shape.order()) {
+      case NAME -> SELECTION + from + " GROUP BY m.movieID ORDER BY m.name";
+      case BEST_RATED -> RATED_SELECTION + from + " ORDER BY r.ratingNumber DESC";
+      case WORST_RATED -> RATED_SELECTION + from + " ORDER BY r.ratingNumber";
+    };
+    return shape.limited() ? sorted + " LIMIT ?" : sorted;
+  }
+}
@@ -0,0 +1,113 @@
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Denormalised copy of everything shown about a movie, kept in the movie_summary table with one
+ * row per movie: its details, the name of its director, its genres, its cast and its ratings by
+ * critic source. Reading a summary is a single lookup on the primary key or on the index of the
+ * name, instead of joining the eight tables it is built from.
+ *
+ * <p>The table is rebuilt at the end of every population. Afterwards, triggers on the tables it is
+ * built from refresh the rows of the movies affected by any later insert, update or delete, so it
+ * does not go out of date. The triggers are only created once the table has been rebuilt, so the
+ * population itself does not fire them.
+ *
+ * @author 230018374
+ */
+public class MovieSummary {
+  private static final String SUMMARY_TABLE =
+      "CREATE TABLE IF NOT EXISTS movie_summary(    movieID INTEGER PRIMARY KEY,    name VARCHAR(200) NOT NULL,    releaseDate DATE,    runningTime VARCHAR(8),    plot VARCHAR(500),    director VARCHAR(100),    genres TEXT,    actors TEXT,    ratings TEXT)";
+  private static final String SUMMARY_INDEX =
+      "CREATE INDEX IF NOT EXISTS idx_movie_summary_name ON movie_summary(name)";
+  private static final String SUMMARY_DELETION = "DROP TABLE IF EXISTS movie_summary";
+  private static final String SUMMARY_CONTENT =
+      "INSERT INTO movie_summary "
+          + "SELECT m.movieID, m.name, m.releaseDate, m.runningTime, m.plot, d.name, "
+          + "(SELECT group_concat(g.GenreName, ', ') FROM MoviesWithGenres mg INNER JOIN Genres g ON g.genreID = mg.genreID WHERE mg.movieID = m.movieID), "
+          + "(SELECT group_concat(a.name, ', ') FROM Cast c INNER JOIN Actors a ON a.actorID = c.actorID WHERE c.movieID = m.movieID), "
+          + "(SELECT group_concat(r.criticSource || ': ' || r.ratingNumber, '; ') FROM MoviesWithRatings mr INNER JOIN Ratings r ON r.criticID = mr.criticID WHERE mr.movieID = m.movieID) "
+          + "FROM Movies m LEFT JOIN Director d ON d.directorID = m.directorID";
+
+  /**
+   * Creates the table if it does not exist, fills it out again from the tables and creates the
+   * triggers that keep it up to date, all in one transaction
+   *
+   * @param conn an open connection to the database
+   * @return the amount of movies in the table
+   * @throws SQLException if the table cannot be built
+   */
+  public static int rebuild(Connection conn) throws SQLException {
+    boolean previousAutoCommit = conn.getAutoCommit();
+    conn.setAutoCommit(false);
+
+    try (Statement statement = conn.createStatement()) {
+      statement.executeUpdate(SUMMARY_TABLE);
+      statement.executeUpdate("DELETE FROM movie_summary");
+      int movies = statement.executeUpdate(SUMMARY_CONTENT);
+      statement.executeUpdate(SUMMARY_INDEX);
+
+      for (String trigger : triggers()) {
+        statement.executeUpdate(trigger);
+      }
+      conn.commit();
+      QueryDB.getQueryCache().invalidate();
+      return movies;
+    } catch (SQLException e) {
+      conn.rollback();
+      throw e;
+    } finally {
+      conn.setAutoCommit(previousAutoCommit);
+    }
+  }
+
+  /**
+   * Drops the table, together with its index. The triggers go away with the tables they are on.
+   * It is run together with the SQL Deletion Script, so that a cleared database is empty again.
+   *
+   * @param conn an open connection to the database
+   * @throws SQLException if the table cannot be dropped
+   */
+  public static void drop(Connection conn) throws SQLException {
+    try (Statement statement = conn.createStatement()) {
+      statement.executeUpdate(SUMMARY_DELETION);
+    }
+  }
+
+  /**
+   * Gives the statements that create the triggers keeping the table up to date. Each trigger
+   * replaces the rows of the movies touched by the change with freshly built ones.
+   *
+   * @return the statements that create the triggers
+   */
+  public static List<String> triggers() {
+    List<String> triggers = new ArrayList<>();
+
+    for (String table : List.of("Movies", "Cast", "MoviesWithGenres", "MoviesWithRatings")) {
+      triggers.add(trigger(table, "INSERT", "NEW.movieID"));
+      triggers.add(trigger(table, "UPDATE", "OLD.movieID, NEW.movieID"));
+      triggers.add(trigger(table, "DELETE", "OLD.movieID"));
+    }
+
+    triggers.add(
+        trigger("Director", "UPDATE", "SELECT movieID FROM Movies WHERE directorID = NEW.directorID"));
+    triggers.add(
+        trigger("Actors", "UPDATE", "SELECT movieID FROM Cast WHERE actorID = NEW.actorID"));
+    triggers.add(
+        trigger("Genres", "UPDATE", "SELECT movieID FROM MoviesWithGenres WHERE genreID = NEW.genreID"));
+    triggers.add(
+        trigger("Ratings", "UPDATE", "SELECT movieID FROM MoviesWithRatings WHERE criticID = NEW.criticID"));
+
+    return triggers;
+  }
+
+  private static String trigger(String table, String event, String movies) {
+    return "CREATE TRIGGER IF NOT EXISTS movie_summary_" + table + "_" + event.toLowerCase()
+        + " AFTER " + event + " ON " + table + " BEGIN "
+        + "DELETE FROM movie_summary WHERE movieID IN (" + movies + "); "
+        + SUMMARY_CONTENT + " WHERE m.movieID IN (" + movies + "); "
+        + "END";
+  }
+}
@@ -11,7 +11,6 @@ import java.util.List;
  * @author 230018374
  */
 public class Movies {
-  private static int count = 1;
   private final String title;
   private final List<Integer> awardIDs;
   private final List<Integer> ratingsIDs;
@@ -27,6 +26,7 @@ public class Movies {
    * into the table as an entry. Also initialises the lists containing information for the
    * intermediate tables
    *
+   * @param id the movie's ID, which is its position in the Movies file starting from 1
    * @param title the movie title
    * @param releaseDate the movie's release date
    * @param runningTime the running time of the movie
@@ -34,7 +34,12 @@ public class Movies {
    * @param director the director of the movie
    */
   public Movies(
-      String title, String releaseDate, String runningTime, String plotSummary, int director) {
+      int id,
+      String title,
+      String releaseDate,
+      String runningTime,
+      String plotSummary,
+      int director) {
     this.title = title;
     this.awardIDs = new ArrayList<>();
     this.ratingsIDs = new ArrayList<>();
@@ -43,8 +48,7 @@ public class Movies {
     this.genres = new ArrayList<>();
     this.plotSummary = plotSummary;
     this.director = director;
-    this.ID = count;
-    count++;
+    this.ID = id;
   }
 
   /**
@@ -0,0 +1,210 @@
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Bloom filters over the names of the movies, the actors and the directors. The queries that look
+ * things up by name check them first, and a name that is definitely not in the database gets an
+ * empty result straight away, without borrowing a connection or running the joins.
+ *
+ * <p>Every filter comes with a TrigramIndex of the same names. When a name is rejected by the
+ * filter, or accepted by it as a false positive without being in the index, the queries look for
+ * the closest name in the index and use it instead, so a misspelled name still gets results.
+ *
+ * <p>The filters are built by PopulateDB once the tables have been filled out. If they are not
+ * there, or the QueryCache has been invalidated since they were built, they are built again from
+ * the tables the next time they are needed, so a new JVM gets them on its first lookup. Names
+ * added to the tables without a population are not seen until then, in the same way as the
+ * results kept by the cache.
+ *
+ * @author 230018374
+ */
+public class NameFilters {
+  /** False positive rate of every filter, set with the moviesdb.filter.fpp property. */
+  public static final double FALSE_POSITIVE_RATE =
+      Double.parseDouble(System.getProperty("moviesdb.filter.fpp", "0.01"));
+
+  private static NameFilters current;
+  private static long currentGeneration;
+
+  private final BloomFilter movies;
+  private final BloomFilter actors;
+  private final BloomFilter directors;
+  private final TrigramIndex movieTrigrams;
+  private final TrigramIndex actorTrigrams;
+  private final TrigramIndex directorTrigrams;
+
+  private NameFilters(List<String> movies, List<String> actors, List<String> directors) {
+    this.movies = filter(movies);
+    this.actors = filter(actors);
+    this.directors = filter(directors);
+    this.movieTrigrams = new TrigramIndex(movies);
+    this.actorTrigrams = new TrigramIndex(actors);
+    this.directorTrigrams = new TrigramIndex(directors);
+  }
+
+  /**
+   * Reads the names of the movies, actors and directors and builds a filter and a trigram index
+   * for each of them
+   *
+   * @param conn an open connection to the database
+   * @return the filters of the names
+   * @throws SQLException if the tables cannot be read
+   */
+  public static NameFilters build(Connection conn) throws SQLException {
+    try (Statement statement = conn.createStatement()) {
+      return new NameFilters(
+          names(statement, "Movies"), names(statement, "Actors"), names(statement, "Director"));
+    }
+  }
+
+  /**
+   * Gives the filters of the current contents of the database, building them if they have not
+   * been built since the last time the QueryCache was invalidated
+   *
+   * @return the filters of the names
+   * @throws ClassNotFoundException if the drivers are not loaded
+   * @throws SQLException if the tables cannot be read
+   */
+  public static synchronized NameFilters current() throws ClassNotFoundException, SQLException {
+    long generation = QueryDB.getQueryCache().getGeneration();
+
+    if (current == null || currentGeneration != generation) {
+      try (Connection conn = InitialiseDB.readPreparation()) {
+        current = build(conn);
+        currentGeneration = generation;
+      }
+    }
+    return current;
+  }
+
+  /**
+   * Makes the passed filters the current ones. They are only used while the QueryCache stays in
+   * the generation they were built in.
+   *
+   * @param filters the filters that have just been built
+   * @param generation the generation of the QueryCache read before the filters were built
+   */
+  public static synchronized void install(NameFilters filters, long generation) {
+    current = filters;
+    currentGeneration = generation;
+  }
+
+  /**
+   * Gives a summary of the current filters, without building them if they are not there
+   *
+   * @return a string with the metrics of every filter, or "none" if they have not been built
+   */
+  public static synchronized String getCurrentMetrics() {
+    if (current == null) {
+      return "none";
+    }
+    return "movies: " + current.movies.getMetrics()
+        + "; actors: " + current.actors.getMetrics()
+        + "; directors: " + current.directors.getMetrics();
+  }
+
+  /**
+   * Standard getter for the filter of the names of the movies
+   *
+   * @return the filter of the movies
+   */
+  public BloomFilter getMovies() {
+    return movies;
+  }
+
+  /**
+   * Standard getter for the filter of the names of the actors
+   *
+   * @return the filter of the actors
+   */
+  public BloomFilter getActors() {
+    return actors;
+  }
+
+  /**
+   * Standard getter for the filter of the names of the directors
+   *
+   * @return the filter of the directors
+   */
+  public BloomFilter getDirectors() {
+    return directors;
+  }
+
+  /**
+   * Standard getter for the trigram index of the names of the movies
+   *
+   * @return the trigram index of the movies
+   */
+  public TrigramIndex getMovieTrigrams() {
+    return movieTrigrams;
+  }
+
+  /**
+   * Standard getter for the trigram index of the names of the actors
+   *
+   * @return the trigram index of the actors
+   */
+  public TrigramIndex getActorTrigrams() {
+    return actorTrigrams;
+  }
+
+  /**
+   * Standard getter for the trigram index of the names of the directors
+   *
+   * @return the trigram index of the directors
+   */
+  public TrigramIndex getDirectorTrigrams() {
+    return directorTrigrams;
+  }
+
+  /**
+   * Looks a name up in a filter and then in the trigram index that goes with it. A name the
+   * filter accepts is only taken as it is if the index holds it exactly, since the filter can give
+   * false positives, and any other name is replaced by the closest one in the index
+   *
+   * @param filter the filter of the names
+   * @param trigrams the trigram index of the same names
+   * @param name the name that is looked up
+   * @return the name itself if it is in the database, the closest name if it is not, or null if no
+   *     name is close enough
+   */
+  public static String resolve(BloomFilter filter, TrigramIndex trigrams, String name) {
+    if (filter.mightContain(name) && trigrams.contains(name)) {
+      return name;
+    }
+    return trigrams.bestMatch(name, TrigramIndex.DEFAULT_THRESHOLD);
+  }
+
+  /**
+   * Standard getter for the amount of names in the three filters
+   *
+   * @return the amount of names
+   */
+  public int getSize() {
+    return movies.getSize() + actors.getSize() + directors.getSize();
+  }
+
+  private static List<String> names(Statement statement, String table) throws SQLException {
+    List<String> names = new ArrayList<>();
+
+    try (ResultSet rs = statement.executeQuery("SELECT name FROM " + table)) {
+      while (rs.next()) {
+        names.add(rs.getString(1));
+      }
+    }
+    return names;
+  }
+
+  private static BloomFilter filter(List<String> names) {
+    BloomFilter filter = new BloomFilter(names.size(), FALSE_POSITIVE_RATE);
+
+    for (String name : names) {
+      filter.add(name);
+    }
+    return filter;
+  }
+}
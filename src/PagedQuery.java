@@ -0,0 +1,144 @@
+import java.sql.SQLException;
+
+/**
+ * Reads the results of a query one page at a time using keyset pagination. Instead of skipping
+ * rows with OFFSET, every page asks for the rows whose key is greater than the last key of the
+ * previous page, so SQLite jumps straight to them through the primary key and every page costs
+ * the same no matter how far into the results it is. Each page uses its own short-lived cursor, so
+ * only one page is ever held at a time and the connection goes back to the pool between pages.
+ *
+ * <p>The query has to take two parameters, the last key read and the size of the page, in that
+ * order, and it has to return the key as its last column, sorted in ascending order:
+ *
+ * <pre>
+ *   SELECT m.name as 'Name', m.movieID FROM Movies m WHERE m.movieID &gt; ? ORDER BY m.movieID LIMIT ?
+ * </pre>
+ *
+ * @author 230018374
+ */
+public class PagedQuery {
+  /** Rows read in each page if no other size is specified, set with moviesdb.page.size. */
+  public static final int DEFAULT_PAGE_SIZE = Integer.getInteger("moviesdb.page.size", 100);
+
+  private final int queryID;
+  private final String sql;
+  private final int pageSize;
+  private long lastKey;
+  private boolean finished;
+
+  /**
+   * Prepares the pagination of a query. Nothing is read until the first page is requested.
+   *
+   * @param sql the query, following the rules given in the description of the class
+   * @param pageSize the amount of rows in every page
+   * @param startAfter the key the first page starts after. 0 starts from the beginning
+   */
+  public PagedQuery(String sql, int pageSize, long startAfter) {
+    this(0, sql, pageSize, startAfter);
+  }
+
+  /**
+   * Prepares the pagination of one of the queries of QueryDB. Every page is given to QueryMetrics
+   * as a page of the query, so the pages do not count as calls to it.
+   *
+   * @param queryID the number of the query
+   * @param sql the query, following the rules given in the description of the class
+   * @param pageSize the amount of rows in every page
+   * @param startAfter the key the first page starts after. 0 starts from the beginning
+   */
+  public PagedQuery(int queryID, String sql, int pageSize, long startAfter) {
+    if (pageSize < 1) {
+      throw new IllegalArgumentException("The page size has to be at least 1");
+    }
+
+    this.queryID = queryID;
+    this.sql = sql;
+    this.pageSize = pageSize;
+    this.lastKey = startAfter;
+  }
+
+  /**
+   * Reads the next page and runs the consumer on each of its rows. The key column is still part of
+   * the row given to the consumer.
+   *
+   * @param consumer the action carried out for every row of the page
+   * @return the amount of rows in the page. It is 0 once every row has been read
+   * @throws ClassNotFoundException if the drivers are not loaded
+   * @throws SQLException if there is a problem with the SQL Code
+   */
+  public int nextPage(QueryCursor.RowConsumer consumer)
+      throws ClassNotFoundException, SQLException {
+    if (finished) {
+      return 0;
+    }
+
+    int rows;
+    QueryCursor page = QueryCursor.open(pageSize, sql, lastKey, pageSize).measuredPage(queryID);
+
+    try (page) {
+      rows = page.render(set -> {
+        int keyColumn = set.getMetaData().getColumnCount();
+        int read = 0;
+
+        while (set.next()) {
+          consumer.accept(set);
+          lastKey = set.getLong(keyColumn);
+          read++;
+        }
+        return read;
+      });
+    }
+
+    finished = rows < pageSize;
+    return rows;
+  }
+
+  /**
+   * Reads every remaining page, running the consumer on each row
+   *
+   * @param consumer the action carried out for every row
+   * @return the amount of rows that were read
+   * @throws ClassNotFoundException if the drivers are not loaded
+   * @throws SQLException if there is a problem with the SQL Code
+   */
+  public long forEachRow(QueryCursor.RowConsumer consumer)
+      throws ClassNotFoundException, SQLException {
+    long rows = 0;
+    int page;
+
+    do {
+      page = nextPage(consumer);
+      rows += page;
+    } while (page > 0);
+
+    return rows;
+  }
+
+  /**
+   * Checks if there might be more rows after the last page
+   *
+   * @return false once a page shorter than the page size has been read
+   */
+  public boolean hasNext() {
+    return !finished;
+  }
+
+  /**
+   * Standard getter for the key of the last row read, which can be used to carry on from the same
+   * place later on with a new PagedQuery
+   *
+   * @return the key of the last row read, or the starting key if nothing has been read yet
+   */
+  public long getLastKey() {
+    return lastKey;
+  }
+
+  /**
+   * Standard getter for the size of the pages
+   *
+   * @return the amount of rows in every page
+   */
+  public int getPageSize() {
+    return pageSize;
+  }
+}
@@ -1,20 +1,46 @@
-import java.io.BufferedReader;
 import java.io.File;
-import java.io.FileReader;
 import java.io.IOException;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 
 /**
  * Custom JSON Parsers that read through my created JSON Files to extract the data from
- * them and turn them into their correspondent objects. This is done through a series of streams,
- * which ultimately turn into lists of values for each column of the table (or it can also include
- * values for intermediate tables)
+ * them and turn them into their correspondent objects. Each file is walked once by a
+ * JSONStreamReader, which hands back every entry as a set of key-value pairs that is turned
+ * straight into its object (including the values for the intermediate tables)
+ *
+ * <p>The time spent checking every file against its schema and the time spent parsing it are
+ * added to an IngestionReport, together with the characters read and the amount of entries.
  *
  * @author 230018374
  */
 public class Parsers {
+  private final IngestionReport report;
+
+  /** Creates the parsers with a report of their own, for when the timings are not needed. */
+  public Parsers() {
+    this(new IngestionReport());
+  }
+
+  /**
+   * Creates the parsers
+   *
+   * @param report the report the timings of every file are added to
+   */
+  public Parsers(IngestionReport report) {
+    this.report = report;
+  }
+
+  /**
+   * Standard getter for the report the timings of every file are added to
+   *
+   * @return the report of the parsers
+   */
+  public IngestionReport getReport() {
+    return report;
+  }
 
   /**
    * This custom parser checks for a specific set of key-value pairs that match the different
@@ -27,61 +53,28 @@ public class Parsers {
    * @throws JSONSchemaException if the passed file does not meet the valid schema
    */
   public Actors[] actorParser(File actorFile) throws IOException, JSONSchemaException {
-    BufferedReader reader = new BufferedReader(new FileReader(actorFile));
-    ArrayList<String> nameList = new ArrayList<>(defaultStringParser(reader, "Full Name"));
-
-    reader = new BufferedReader(new FileReader(actorFile));
-
-    ArrayList<Integer> ageList = new ArrayList<>(defaultIntParser(reader, "Age"));
-
-    reader = new BufferedReader(new FileReader(actorFile));
-
-    ArrayList<String> birthdayList = new ArrayList<>(defaultStringParser(reader, "Birthday"));
-
-    reader = new BufferedReader(new FileReader(actorFile));
-
-    ArrayList<String> awardIDList = new ArrayList<>(defaultStringParser(reader, "Awards"));
-
-    reader = new BufferedReader(new FileReader(actorFile));
-
-    ArrayList<String> movieIDList = new ArrayList<>(defaultIDParser(reader, "Movies"));
-
-    if (JSONTester.JSONActorsComparer(actorFile)) {
-      Actors[] actors = new Actors[nameList.size()];
-
-      for (int i = 0; i < actors.length; i++) {
-        actors[i] = (new Actors(nameList.get(i), ageList.get(i), birthdayList.get(i)));
-
-        if (awardIDList.get(i).contains(";")) {
-          String[] array = awardIDList.get(i).split(";");
-
-          for (String x : array) {
-            actors[i].getAwardIDs().add(Integer.parseInt(x));
-          }
-        } else {
-          if (Integer.parseInt(awardIDList.get(i)) > 0) {
-            actors[i].getAwardIDs().add(Integer.parseInt(awardIDList.get(i)));
-          }
-        }
-
-        if (movieIDList.get(i).contains(",")) {
-          String[] array = movieIDList.get(i).split(",");
-
-          for (String x : array) {
-            actors[i].getMovieIDs().add(Integer.parseInt(x));
-          }
-        } else {
-          if (Integer.parseInt(movieIDList.get(i)) > 0) {
-            actors[i].getMovieIDs().add(Integer.parseInt(movieIDList.get(i)));
-          }
-        }
+    long start = System.nanoTime();
+    List<Actors> actors = new ArrayList<>();
+
+    try (JSONStreamReader reader = new JSONStreamReader(actorFile, PopulateDB.getActorsFile())) {
+      Map<String, String> entry;
+
+      while ((entry = reader.nextRecord()) != null) {
+        Actors actor =
+            new Actors(
+                actors.size() + 1,
+                entry.get("Full Name"),
+                Integer.parseInt(entry.get("Age")),
+                entry.get("Birthday"));
+        idSplitter(entry.get("Awards"), ";", actor.getAwardIDs());
+        idSplitter(entry.get("Movies"), ",", actor.getMovieIDs());
+        actors.add(actor);
       }
 
-      return actors;
-    } else {
-      throw new JSONSchemaException(
-          "There has been a problem with the Actors JSON. It does not meet the valid schema requirements");
+      record(reader, actors.size(), start);
     }
+
+    return actors.toArray(new Actors[0]);
   }
 
   /**
@@ -95,100 +88,20 @@ public class Parsers {
    * @throws JSONSchemaException if the passed file does not meet the valid schema
    */
   public Awards[] awardsParser(File awardsFile) throws IOException, JSONSchemaException {
-    BufferedReader reader = new BufferedReader(new FileReader(awardsFile));
-    ArrayList<String> InstitutionList =
-        new ArrayList<>(defaultStringParser(reader, "Award Institution"));
+    long start = System.nanoTime();
+    List<Awards> awards = new ArrayList<>();
 
-    reader = new BufferedReader(new FileReader(awardsFile));
+    try (JSONStreamReader reader = new JSONStreamReader(awardsFile, PopulateDB.getAwardsFile())) {
+      Map<String, String> entry;
 
-    ArrayList<String> motiveList = new ArrayList<>(defaultStringParser(reader, "Motive"));
-
-    if (JSONTester.JSONAwardsComparer(awardsFile)) {
-      Awards[] awards = new Awards[InstitutionList.size()];
-
-      for (int i = 0; i < awards.length; i++) {
-        awards[i] = new Awards(InstitutionList.get(i), motiveList.get(i));
+      while ((entry = reader.nextRecord()) != null) {
+        awards.add(new Awards(entry.get("Award Institution"), entry.get("Motive")));
       }
 
-      return awards;
-    } else {
-      throw new JSONSchemaException(
-          "There has been a problem with the Awards JSON. It does not meet the valid schema requirements");
+      record(reader, awards.size(), start);
     }
-  }
-
-  /**
-   * This custom parser checks for a specific set of key when the value is supposed to be a double
-   *
-   * @param key the specific key that the data is going to be parsed from
-   * @param reader the passed reader. It is assigned to the file contained in the JSON
-   *     Document Parser
-   * @return returns a List of doubles retrieved from a specific key
-   */
-  public List<Double> defaultDoubleParser(BufferedReader reader, String key) {
-    return new ArrayList<>(
-        reader
-            .lines()
-            .filter(line -> line.startsWith("      " + "\"" + key + "\": "))
-            .mapToDouble(
-                line -> Double.parseDouble(line.replaceAll("      " + "\"" + key + "\": ", "")))
-            .boxed()
-            .toList());
-  }
-
-  /**
-   * This custom parser checks for a specific set of key when the value is supposed to be an ID for
-   * an entry in the table
-   *
-   * @param key the specific key that the data is going to be parsed from
-   * @param reader the passed reader. It is assigned to the file contained in the JSON
-   *     Document Parser
-   * @return returns a List of strings which contain several IDs. This is later going to be split
-   *     depending on the separation character used in the JSON
-   */
-  public List<String> defaultIDParser(BufferedReader reader, String key) {
-    return reader
-        .lines()
-        .filter(line -> line.startsWith("      " + "\"" + key + "\": "))
-        .map(line -> line.replaceAll("      " + "\"" + key + "\": ", ""))
-        .map(line -> line.replaceAll("\"", ""))
-        .toList();
-  }
-
-  /**
-   * This custom parser checks for a specific set of key when the value is supposed to be an integer
-   *
-   * @param key the specific key that the data is going to be parsed from
-   * @param reader the passed reader. It is assigned to the file contained in the JSON
-   *     Document Parser
-   * @return returns a List of integers retrieved from the document
-   */
-  public List<Integer> defaultIntParser(BufferedReader reader, String key) {
-    return reader
-        .lines()
-        .filter(line -> line.startsWith("      " + "\"" + key + "\": "))
-        .map(line -> (line.replaceAll("      " + "\"" + key + "\": ", "")))
-        .map(line -> line.replaceAll(",", ""))
-        .mapToInt(x -> Integer.parseInt(x))
-        .boxed()
-        .toList();
-  }
 
-  /**
-   * This custom parser checks for a specific set of key when the value is supposed to be a string
-   *
-   * @param key the specific key that the data is going to be parsed from
-   * @param reader the passed reader. It is assigned to the file contained in the JSON
-   *     Document Parser
-   * @return returns a List of strings retrieved from a specific key
-   */
-  public List<String> defaultStringParser(BufferedReader reader, String key) {
-    return reader
-        .lines()
-        .filter(line -> line.startsWith("      " + "\"" + key + "\": "))
-        .map(line -> line.replaceAll("      " + "\"" + key + "\": ", ""))
-        .map(line -> line.replaceAll("[,\"]", ""))
-        .toList();
+    return awards.toArray(new Awards[0]);
   }
 
   /**
@@ -202,40 +115,27 @@ public class Parsers {
    * @throws JSONSchemaException if the passed file does not meet the valid schema
    */
   public Director[] directorsParser(File directorFile) throws IOException, JSONSchemaException {
-    BufferedReader reader = new BufferedReader(new FileReader(directorFile));
-    ArrayList<String> nameList = new ArrayList<>(defaultStringParser(reader, "Full Name"));
-
-    reader = new BufferedReader(new FileReader(directorFile));
-
-    ArrayList<Integer> movieCountList = new ArrayList<>(defaultIntParser(reader, "Movie Count"));
-
-    reader = new BufferedReader(new FileReader(directorFile));
-
-    ArrayList<String> awardIDList = new ArrayList<>(defaultIDParser(reader, "Awards"));
-    Director[] directors = new Director[nameList.size()];
-
-    if (JSONTester.JSONDirectorsComparer(directorFile)) {
-      for (int i = 0; i < nameList.size(); i++) {
-        directors[i] = new Director(nameList.get(i), movieCountList.get(i));
-
-        if (awardIDList.get(i).contains(",")) {
-          String[] array = awardIDList.get(i).split(",");
-
-          for (String x : array) {
-            directors[i].getAwardIDs().add(Integer.parseInt(x));
-          }
-        } else {
-          if (Integer.parseInt(awardIDList.get(i)) > 0) {
-            directors[i].getAwardIDs().add(Integer.parseInt(awardIDList.get(i)));
-          }
-        }
+    long start = System.nanoTime();
+    List<Director> directors = new ArrayList<>();
+
+    try (JSONStreamReader reader =
+        new JSONStreamReader(directorFile, PopulateDB.getDirectorsFile())) {
+      Map<String, String> entry;
+
+      while ((entry = reader.nextRecord()) != null) {
+        Director director =
+            new Director(
+                directors.size() + 1,
+                entry.get("Full Name"),
+                Integer.parseInt(entry.get("Movie Count")));
+        idSplitter(entry.get("Awards"), ",", director.getAwardIDs());
+        directors.add(director);
       }
 
-      return directors;
-    } else {
-      throw new JSONSchemaException(
-          "There has been a problem with the Directors JSON. It does not meet the valid schema requirements");
+      record(reader, directors.size(), start);
     }
+
+    return directors.toArray(new Director[0]);
   }
 
   /**
@@ -249,23 +149,20 @@ public class Parsers {
    * @throws JSONSchemaException if the passed file does not meet the valid schema
    */
   public Genre[] genreParser(File genreFile) throws IOException, JSONSchemaException {
-    BufferedReader reader = new BufferedReader(new FileReader(genreFile));
-    ArrayList<String> GenreNameList = new ArrayList<>(defaultStringParser(reader, "Genre"));
-
-    reader.close();
+    long start = System.nanoTime();
+    List<Genre> genres = new ArrayList<>();
 
-    if (JSONTester.JSONGenresComparer(genreFile)) {
-      Genre[] genres = new Genre[GenreNameList.size()];
+    try (JSONStreamReader reader = new JSONStreamReader(genreFile, PopulateDB.getGenresFile())) {
+      Map<String, String> entry;
 
-      for (int i = 0; i < genres.length; i++) {
-        genres[i] = new Genre(GenreNameList.get(i));
+      while ((entry = reader.nextRecord()) != null) {
+        genres.add(new Genre(entry.get("Genre")));
       }
 
-      return genres;
-    } else {
-      throw new JSONSchemaException(
-          "There has been a problem with the Genres JSON. It does not meet the valid schema requirements");
+      record(reader, genres.size(), start);
     }
+
+    return genres.toArray(new Genre[0]);
   }
 
   /**
@@ -279,91 +176,31 @@ public class Parsers {
    * @throws JSONSchemaException if the passed file does not meet the valid schema
    */
   public Movies[] moviesParser(File moviesFile) throws IOException, JSONSchemaException {
-    BufferedReader reader = new BufferedReader(new FileReader(moviesFile));
-    ArrayList<String> TitleList = new ArrayList<>(defaultStringParser(reader, "Title"));
-
-    reader = new BufferedReader(new FileReader(moviesFile));
-
-    ArrayList<String> RDateList = new ArrayList<>(defaultStringParser(reader, "Release Date"));
-
-    reader = new BufferedReader(new FileReader(moviesFile));
-
-    ArrayList<String> RTime = new ArrayList<>(defaultStringParser(reader, "Running Time"));
-
-    reader = new BufferedReader(new FileReader(moviesFile));
-
-    ArrayList<String> genreList = new ArrayList<>(defaultStringParser(reader, "Genre"));
+    long start = System.nanoTime();
+    List<Movies> movies = new ArrayList<>();
 
-    reader = new BufferedReader(new FileReader(moviesFile));
+    try (JSONStreamReader reader = new JSONStreamReader(moviesFile, PopulateDB.getMoviesFile())) {
+      Map<String, String> entry;
 
-    ArrayList<String> plotList = new ArrayList<>(defaultStringParser(reader, "Plot Summary"));
-
-    reader = new BufferedReader(new FileReader(moviesFile));
-
-    ArrayList<Integer> directorList = new ArrayList<>(defaultIntParser(reader, "Director"));
-
-    reader = new BufferedReader(new FileReader(moviesFile));
-
-    ArrayList<String> awardIDList = new ArrayList<>(defaultIDParser(reader, "Awards"));
-
-    reader = new BufferedReader(new FileReader(moviesFile));
-
-    ArrayList<String> ratingsIDList = new ArrayList<>(defaultStringParser(reader, "Ratings"));
-
-    if (JSONTester.JSONMoviesComparer(moviesFile)) {
-      Movies[] movies = new Movies[TitleList.size()];
-
-      for (int i = 0; i < movies.length; i++) {
-        movies[i] =
+      while ((entry = reader.nextRecord()) != null) {
+        Movies movie =
             new Movies(
-                TitleList.get(i),
-                RDateList.get(i),
-                RTime.get(i),
-                plotList.get(i),
-                directorList.get(i));
-
-        if (awardIDList.get(i).contains(",")) {
-          String[] array = awardIDList.get(i).split(",");
-
-          for (String x : array) {
-            movies[i].getAwardIDs().add(Integer.parseInt(x));
-          }
-        } else {
-          if (Integer.parseInt(awardIDList.get(i)) > 0) {
-            movies[i].getAwardIDs().add(Integer.parseInt(awardIDList.get(i)));
-          }
-        }
-
-        if (ratingsIDList.get(i).contains(";")) {
-          String[] array = ratingsIDList.get(i).split(";");
-
-          for (String x : array) {
-            movies[i].getRatingsIDs().add(Integer.parseInt(x));
-          }
-        } else {
-          if (Integer.parseInt(ratingsIDList.get(i)) > 0) {
-            movies[i].getRatingsIDs().add(Integer.parseInt(ratingsIDList.get(i)));
-          }
-        }
-
-        if (genreList.get(i).contains("-")) {
-          String[] array = genreList.get(i).split("-");
-
-          for (String x : array) {
-            movies[i].getGenreIDs().add(Integer.parseInt(x));
-          }
-        } else {
-          if (Integer.parseInt(genreList.get(i)) > 0) {
-            movies[i].getGenreIDs().add(Integer.parseInt(genreList.get(i)));
-          }
-        }
+                movies.size() + 1,
+                entry.get("Title"),
+                entry.get("Release Date"),
+                entry.get("Running Time"),
+                entry.get("Plot Summary"),
+                Integer.parseInt(entry.get("Director")));
+        idSplitter(entry.get("Awards"), ",", movie.getAwardIDs());
+        idSplitter(entry.get("Ratings"), ";", movie.getRatingsIDs());
+        idSplitter(entry.get("Genre"), "-", movie.getGenreIDs());
+        movies.add(movie);
       }
 
-      return movies;
-    } else {
-      throw new JSONSchemaException(
-          "There has been a problem with the Movies JSON. It does not meet the valid schema requirements");
+      record(reader, movies.size(), start);
     }
+
+    return movies.toArray(new Movies[0]);
   }
 
   /**
@@ -377,26 +214,58 @@ public class Parsers {
    * @throws JSONSchemaException if the passed file does not meet the valid schema
    */
   public Ratings[] ratingsParser(File ratingsFile) throws IOException, JSONSchemaException {
-    BufferedReader reader = new BufferedReader(new FileReader(ratingsFile));
-    ArrayList<String> CSourceList = new ArrayList<>(defaultStringParser(reader, "Critic Source"));
+    long start = System.nanoTime();
+    List<Ratings> ratings = new ArrayList<>();
 
-    reader = new BufferedReader(new FileReader(ratingsFile));
+    try (JSONStreamReader reader = new JSONStreamReader(ratingsFile, PopulateDB.getRatingsFile())) {
+      Map<String, String> entry;
 
-    ArrayList<Double> ratingsList = new ArrayList<>(defaultDoubleParser(reader, "Rating"));
+      while ((entry = reader.nextRecord()) != null) {
+        ratings.add(
+            new Ratings(entry.get("Critic Source"), Double.parseDouble(entry.get("Rating"))));
+      }
 
-    reader.close();
+      record(reader, ratings.size(), start);
+    }
 
-    if (JSONTester.JSONRatingsComparer(ratingsFile)) {
-      Ratings[] ratings = new Ratings[CSourceList.size()];
+    return ratings.toArray(new Ratings[0]);
+  }
 
-      for (int i = 0; i < ratings.length; i++) {
-        ratings[i] = new Ratings(CSourceList.get(i), ratingsList.get(i));
-      }
+  /**
+   * Adds the timings of a file that has been read to the IngestionReport
+   *
+   * @param reader the reader of the file, once every record has been read
+   * @param records the amount of entries read from the file
+   * @param start the value of System.nanoTime when the parser started
+   */
+  private void record(JSONStreamReader reader, int records, long start) {
+    long checkTime = reader.getSchemaCheckNanos();
+    report.addFile(
+        reader.getFile(),
+        reader.getCharsRead(),
+        records,
+        checkTime,
+        System.nanoTime() - start - checkTime);
+  }
 
-      return ratings;
+  /**
+   * Splits a value that contains several IDs for an intermediate table and adds them to the passed
+   * list. If the value only has one ID, it is only added if it is bigger than 0, as 0 is used in
+   * the JSON Files to indicate that there are no IDs.
+   *
+   * @param value the value retrieved from the JSON File
+   * @param separator the separation character used in the JSON for that key
+   * @param target the list of IDs that belongs to the object being built
+   */
+  private void idSplitter(String value, String separator, List<Integer> target) {
+    if (value.contains(separator)) {
+      for (String x : value.split(separator)) {
+        target.add(Integer.parseInt(x));
+      }
     } else {
-      throw new JSONSchemaException(
-          "There has been a problem with the Ratings JSON. It does not meet the valid schema requirements");
+      if (Integer.parseInt(value) > 0) {
+        target.add(Integer.parseInt(value));
+      }
     }
   }
 }
@@ -1,10 +1,15 @@
 import java.io.File;
 import java.io.IOException;
 
+import java.nio.file.Files;
+import java.nio.file.Path;
+
 import java.sql.Connection;
-import java.sql.PreparedStatement;
 import java.sql.SQLException;
 
+import java.util.ArrayList;
+import java.util.List;
+
 public class PopulateDB {
   private static final File ACTORS_FILE = new File("Assignment2 JSON Files/Actors.json");
   private static final File AWARDS_FILE = new File("Assignment2 JSON Files/Awards.json");
@@ -12,10 +17,45 @@ public class PopulateDB {
   private static final File DIRECTORS_FILE = new File("Assignment2 JSON Files/Directors.json");
   private static final File RATINGS_FILE = new File("Assignment2 JSON Files/Ratings.json");
   private static final File GENRES_FILE = new File("Assignment2 JSON Files/Genres.json");
-  private static final Parsers parserObj = new Parsers();
+  /** File the IngestionReport of main is written to, set with moviesdb.ingest.report. */
+  public static final String INGEST_REPORT_FILE = System.getProperty("moviesdb.ingest.report");
+  private final int batchSize;
+  private final List<String> insertReports = new ArrayList<>();
+  private final IngestionReport ingestionReport = new IngestionReport();
+  private final Parsers parserObj = new Parsers(ingestionReport);
+
+  /**
+   * Creates a populator that sends the rows to the database in batches of the default size
+   */
+  public PopulateDB() {
+    this(BulkInserter.DEFAULT_BATCH_SIZE);
+  }
+
+  /**
+   * Creates a populator that sends the rows to the database in batches of the passed size
+   *
+   * @param batchSize the amount of rows that are sent to the database at once
+   * @throws IllegalArgumentException if the batch size is smaller than 1
+   */
+  public PopulateDB(int batchSize) {
+    if (batchSize < 1) {
+      throw new IllegalArgumentException("The batch size has to be at least 1");
+    }
+    this.batchSize = batchSize;
+  }
 
   public static void main(String[] args) {
-    PopulateDB obj = new PopulateDB();
+    PopulateDB obj;
+
+    try {
+      obj = args.length > 0 ? new PopulateDB(Integer.parseInt(args[0])) : new PopulateDB();
+    } catch (NumberFormatException e) {
+      System.out.println("The batch size has to be a number. Please try again");
+      return;
+    } catch (IllegalArgumentException e) {
+      System.out.println("The batch size has to be at least 1. Please try again");
+      return;
+    }
 
     try {
       System.out.println(
@@ -27,8 +67,20 @@ public class PopulateDB {
               DIRECTORS_FILE,
               RATINGS_FILE,
               GENRES_FILE));
+
+      for (String report : obj.getInsertReports()) {
+        System.out.println(report);
+      }
+
+      if (INGEST_REPORT_FILE != null) {
+        Files.writeString(Path.of(INGEST_REPORT_FILE), obj.getIngestionReport().toJSON());
+      } else {
+        System.out.println(obj.getIngestionReport().toJSON());
+      }
     } catch (JSONSchemaException e) {
       System.out.println(e.getMessage());
+    } catch (IOException e) {
+      System.out.println("The ingestion report could not be written to " + INGEST_REPORT_FILE);
     }
   }
 
@@ -46,65 +98,66 @@ public class PopulateDB {
    */
   public void populateActors(File actorsFile)
       throws ClassNotFoundException, SQLException, IOException, JSONSchemaException {
-    Connection neuralink = InitialiseDB.preparation();
-    PreparedStatement statement =
-        neuralink.prepareStatement("INSERT INTO Actors (name, age, birthday) VALUES (?, ?,?)");
+    try (Connection neuralink = InitialiseDB.preparation()) {
+      populateActors(neuralink, actorsFile);
+    }
+  }
+
+  /**
+   * Fills out the actors table from values obtained from the parser. Also fill out the
+   * intermediate tables AwardWinningActor and Cast
+   *
+   * @param neuralink the connection shared by the whole population run
+   * @param actorsFile the file which is going to be read, Since this calls the actorParser it
+   *     handles if the file does not meet a valid schema
+   * @throws SQLException if there is a problem introducing values because of bad SQL Code
+   * @throws IOException if there is a problem reading the file. This is thrown from the
+   *     actorsParser method
+   * @throws JSONSchemaException if the passed file does not really meet
+   */
+  public void populateActors(Connection neuralink, File actorsFile)
+      throws SQLException, IOException, JSONSchemaException {
     Actors[] values = parserObj.actorParser(actorsFile);
 
-    for (Actors actor : values) {
-      statement.setString(1, actor.getName());
-      statement.setInt(2, actor.getAge());
-      statement.setString(3, actor.getBirthday());
-      statement.executeUpdate();
+    try (BulkInserter inserter =
+        new BulkInserter(
+            neuralink,
+            "Actors",
+            "INSERT INTO Actors (name, age, birthday) VALUES (?, ?,?)",
+            batchSize)) {
+      for (Actors actor : values) {
+        inserter.add(actor.getName(), actor.getAge(), actor.getBirthday());
+      }
+
+      finish(inserter);
     }
 
-    statement.close();
-    neuralink.close();
-    neuralink = InitialiseDB.preparation();
-    statement =
-        neuralink.prepareStatement(
-            "INSERT INTO  awardWinningActor (actorID, awardID) VALUES  (?,?)");
-
-    for (Actors actor : values) {
-      if (!actor.getAwardIDs().isEmpty()) {
-        if (actor.getAwardIDs().size() == 1) {
-          statement.setInt(1, actor.getId());
-          statement.setInt(2, actor.getAwardIDs().get(0));
-          statement.executeUpdate();
-        } else {
-          for (int i = 0; i < actor.getAwardIDs().size(); i++) {
-            statement.setInt(1, actor.getId());
-            statement.setInt(2, actor.getAwardIDs().get(i));
-            statement.executeUpdate();
-          }
+    try (BulkInserter inserter =
+        new BulkInserter(
+            neuralink,
+            "awardWinningActor",
+            "INSERT INTO  awardWinningActor (actorID, awardID) VALUES  (?,?)",
+            batchSize)) {
+      for (Actors actor : values) {
+        for (int awardID : actor.getAwardIDs()) {
+          inserter.add(actor.getId(), awardID);
         }
       }
+
+      finish(inserter);
     }
 
-    statement.close();
-    neuralink.close();
-    neuralink = InitialiseDB.preparation();
-    statement = neuralink.prepareStatement("INSERT INTO  Cast (actorID, movieID) VALUES  (?,?)");
-
-    for (Actors actor : values) {
-      if (!actor.getMovieIDs().isEmpty()) {
-        if (actor.getMovieIDs().size() == 1) {
-          statement.setInt(1, actor.getId());
-          statement.setInt(2, actor.getMovieIDs().get(0));
-          statement.executeUpdate();
-        } else {
-          for (int i = 0; i < actor.getMovieIDs().size(); i++) {
-            statement.setInt(1, actor.getId());
-            statement.setInt(2, actor.getMovieIDs().get(i));
-            statement.executeUpdate();
-          }
+    try (BulkInserter inserter =
+        new BulkInserter(
+            neuralink, "Cast", "INSERT INTO  Cast (actorID, movieID) VALUES  (?,?)", batchSize)) {
+      for (Actors actor : values) {
+        for (int movieID : actor.getMovieIDs()) {
+          inserter.add(actor.getId(), movieID);
         }
       }
-    }
-
-    neuralink.close();
-    statement.close();
 
+      finish(inserter);
+    }
   }
 
   /**
@@ -119,19 +172,37 @@ public class PopulateDB {
    */
   public void populateAwards(File awardsFile)
       throws ClassNotFoundException, SQLException, IOException, JSONSchemaException {
-    Connection neuralink = InitialiseDB.preparation();
-    PreparedStatement statement =
-        neuralink.prepareStatement("INSERT INTO Awards (awardInstitution, motive) VALUES (?, ?)");
+    try (Connection neuralink = InitialiseDB.preparation()) {
+      populateAwards(neuralink, awardsFile);
+    }
+  }
+
+  /**
+   * Fills out the awards table based on values obtained from the parser
+   *
+   * @param neuralink the connection shared by the whole population run
+   * @param awardsFile the file that is going to be read. Ideally it should be the corresponding
+   *     custom JSON but handles it if otherwise
+   * @throws JSONSchemaException if the file does not meet the valid schema
+   * @throws SQLException if the SQL Code has the wrong syntax
+   * @throws IOException if the file cannot be read or parsed
+   */
+  public void populateAwards(Connection neuralink, File awardsFile)
+      throws SQLException, IOException, JSONSchemaException {
     Awards[] values = parserObj.awardsParser(awardsFile);
 
-    for (Awards awards : values) {
-      statement.setString(1, awards.getAwardInstitution());
-      statement.setString(2, awards.getMotive());
-      statement.executeUpdate();
-    }
+    try (BulkInserter inserter =
+        new BulkInserter(
+            neuralink,
+            "Awards",
+            "INSERT INTO Awards (awardInstitution, motive) VALUES (?, ?)",
+            batchSize)) {
+      for (Awards awards : values) {
+        inserter.add(awards.getAwardInstitution(), awards.getMotive());
+      }
 
-    statement.close();
-    neuralink.close();
+      finish(inserter);
+    }
   }
 
   /**
@@ -147,42 +218,53 @@ public class PopulateDB {
    */
   public void populateDirectors(File directorsFile)
       throws SQLException, ClassNotFoundException, IOException, JSONSchemaException {
-    Connection neuralink = InitialiseDB.preparation();
-    PreparedStatement statement =
-        neuralink.prepareStatement("INSERT INTO Director (name, movieCount) VALUES (?, ?)");
+    try (Connection neuralink = InitialiseDB.preparation()) {
+      populateDirectors(neuralink, directorsFile);
+    }
+  }
+
+  /**
+   * Fills out the directors table based on values obtained from the parser In this case also fills
+   * out the intermediate table AwardWinningDirector
+   *
+   * @param neuralink the connection shared by the whole population run
+   * @param directorsFile the file that is going to be read. Ideally it should be the corresponding
+   *     custom JSON but handles it if otherwise
+   * @throws JSONSchemaException if the file does not meet the valid schema
+   * @throws SQLException if the SQL Code has the wrong syntax
+   * @throws IOException if the file cannot be read or parsed
+   */
+  public void populateDirectors(Connection neuralink, File directorsFile)
+      throws SQLException, IOException, JSONSchemaException {
     Director[] values = parserObj.directorsParser(directorsFile);
 
-    for (Director director : values) {
-      statement.setString(1, director.getName());
-      statement.setInt(2, director.getMovieCount());
-      statement.executeUpdate();
+    try (BulkInserter inserter =
+        new BulkInserter(
+            neuralink,
+            "Director",
+            "INSERT INTO Director (name, movieCount) VALUES (?, ?)",
+            batchSize)) {
+      for (Director director : values) {
+        inserter.add(director.getName(), director.getMovieCount());
+      }
+
+      finish(inserter);
     }
 
-    neuralink.close();
-
-    neuralink = InitialiseDB.preparation();
-    statement =
-        neuralink.prepareStatement(
-            "INSERT INTO  awardWinningDirector (directorID, awardID) VALUES  (?,?)");
-
-    for (Director director : values) {
-      if (!director.getAwardIDs().isEmpty()) {
-        if (director.getAwardIDs().size() == 1) {
-          statement.setInt(1, director.getID());
-          statement.setInt(2, director.getAwardIDs().get(0));
-          statement.executeUpdate();
-        } else {
-          for (int i = 0; i < director.getAwardIDs().size(); i++) {
-            statement.setInt(1, director.getID());
-            statement.setInt(2, director.getAwardIDs().get(i));
-            statement.executeUpdate();
-          }
+    try (BulkInserter inserter =
+        new BulkInserter(
+            neuralink,
+            "awardWinningDirector",
+            "INSERT INTO  awardWinningDirector (directorID, awardID) VALUES  (?,?)",
+            batchSize)) {
+      for (Director director : values) {
+        for (int awardID : director.getAwardIDs()) {
+          inserter.add(director.getID(), awardID);
         }
       }
-    }
 
-    statement.close();
-    neuralink.close();
+      finish(inserter);
+    }
   }
 
   /**
@@ -197,18 +279,34 @@ public class PopulateDB {
    */
   public void populateGenres(File genreFile)
       throws ClassNotFoundException, JSONSchemaException, SQLException, IOException {
-    Connection neuralink = InitialiseDB.preparation();
-    PreparedStatement statement =
-        neuralink.prepareStatement("INSERT INTO Genres (GenreName) VALUES (?)");
+    try (Connection neuralink = InitialiseDB.preparation()) {
+      populateGenres(neuralink, genreFile);
+    }
+  }
+
+  /**
+   * Fills out the genres table based on values obtained from the parser
+   *
+   * @param neuralink the connection shared by the whole population run
+   * @param genreFile the file that is going to be read. Ideally it should be the corresponding
+   *     custom JSON but handles it if otherwise
+   * @throws JSONSchemaException if the file does not meet the valid schema
+   * @throws SQLException if the SQL Code has the wrong syntax
+   * @throws IOException if the file cannot be read or parsed
+   */
+  public void populateGenres(Connection neuralink, File genreFile)
+      throws JSONSchemaException, SQLException, IOException {
     Genre[] values = parserObj.genreParser(genreFile);
 
-    for (Genre genres : values) {
-      statement.setString(1, genres.getGenreName());
-      statement.executeUpdate();
-    }
+    try (BulkInserter inserter =
+        new BulkInserter(
+            neuralink, "Genres", "INSERT INTO Genres (GenreName) VALUES (?)", batchSize)) {
+      for (Genre genres : values) {
+        inserter.add(genres.getGenreName());
+      }
 
-    statement.close();
-    neuralink.close();
+      finish(inserter);
+    }
   }
 
   /**
@@ -224,91 +322,88 @@ public class PopulateDB {
    */
   public void populateMovies(File movieFile)
       throws ClassNotFoundException, SQLException, IOException, JSONSchemaException {
-    Connection neuralink = InitialiseDB.preparation();
-    PreparedStatement statement =
-        neuralink.prepareStatement(
-            "INSERT INTO Movies (name, releaseDate, plot, runningTime, directorID) VALUES (?, ?, ?, ?, ?)");
+    try (Connection neuralink = InitialiseDB.preparation()) {
+      populateMovies(neuralink, movieFile);
+    }
+  }
+
+  /**
+   * Fills out the movies table based on values obtained from the parser Also fills out the
+   * intermediate tables AwardWinningMovie, MoviesWithRatings and MoviesWithGenres
+   *
+   * @param neuralink the connection shared by the whole population run
+   * @param movieFile the file that is going to be read. Ideally it should be the corresponding
+   *     custom JSON but handles it if otherwise
+   * @throws JSONSchemaException if the file does not meet the valid schema
+   * @throws SQLException if the SQL Code has the wrong syntax
+   * @throws IOException if the file cannot be read or parsed
+   */
+  public void populateMovies(Connection neuralink, File movieFile)
+      throws SQLException, IOException, JSONSchemaException {
     Movies[] values = parserObj.moviesParser(movieFile);
 
-    for (Movies movie : values) {
-      statement.setString(1, movie.getTitle());
-      statement.setString(2, movie.getReleaseDate());
-      statement.setString(3, movie.getPlotSummary());
-      statement.setString(4, movie.getRunningTime());
-      statement.setInt(5, movie.getDirectorID());
-      statement.executeUpdate();
+    try (BulkInserter inserter =
+        new BulkInserter(
+            neuralink,
+            "Movies",
+            "INSERT INTO Movies (name, releaseDate, plot, runningTime, directorID) VALUES (?, ?, ?, ?, ?)",
+            batchSize)) {
+      for (Movies movie : values) {
+        inserter.add(
+            movie.getTitle(),
+            movie.getReleaseDate(),
+            movie.getPlotSummary(),
+            movie.getRunningTime(),
+            movie.getDirectorID());
+      }
+
+      finish(inserter);
     }
 
-    statement.close();
-    neuralink.close();
-    neuralink = InitialiseDB.preparation();
-    statement =
-        neuralink.prepareStatement(
-            "INSERT INTO  awardWinningMovie (movieID, awardID) VALUES  (?,?)");
-
-    for (Movies movies : values) {
-      if (!movies.getAwardIDs().isEmpty()) {
-        if (movies.getAwardIDs().size() == 1 && movies.getAwardIDs().get(0) != 0) {
-          statement.setInt(1, movies.getID());
-          statement.setInt(2, movies.getAwardIDs().get(0));
-          statement.executeUpdate();
-        } else {
-          for (int i = 0; i < movies.getAwardIDs().size(); i++) {
-            statement.setInt(1, movies.getID());
-            statement.setInt(2, movies.getAwardIDs().get(i));
-            statement.executeUpdate();
-          }
+    try (BulkInserter inserter =
+        new BulkInserter(
+            neuralink,
+            "awardWinningMovie",
+            "INSERT INTO  awardWinningMovie (movieID, awardID) VALUES  (?,?)",
+            batchSize)) {
+      for (Movies movies : values) {
+        for (int awardID : movies.getAwardIDs()) {
+          inserter.add(movies.getID(), awardID);
         }
       }
+
+      finish(inserter);
     }
 
-    statement.close();
-    neuralink.close();
-    neuralink = InitialiseDB.preparation();
-    statement =
-        neuralink.prepareStatement(
-            "INSERT INTO  MoviesWithRatings (movieID, criticID) VALUES  (?,?)");
-
-    for (Movies movies : values) {
-      if (!movies.getRatingsIDs().isEmpty()) {
-        if (movies.getRatingsIDs().size() == 1) {
-          statement.setInt(1, movies.getID());
-          statement.setInt(2, movies.getRatingsIDs().get(0));
-          statement.executeUpdate();
-        } else {
-          for (int i = 0; i < movies.getRatingsIDs().size(); i++) {
-            statement.setInt(1, movies.getID());
-            statement.setInt(2, movies.getRatingsIDs().get(i));
-            statement.executeUpdate();
-          }
+    try (BulkInserter inserter =
+        new BulkInserter(
+            neuralink,
+            "MoviesWithRatings",
+            "INSERT INTO  MoviesWithRatings (movieID, criticID) VALUES  (?,?)",
+            batchSize)) {
+      for (Movies movies : values) {
+        for (int criticID : movies.getRatingsIDs()) {
+          inserter.add(movies.getID(), criticID);
         }
       }
+
+      finish(inserter);
     }
 
-    statement.close();
-    neuralink.close();
-    neuralink = InitialiseDB.preparation();
-    statement =
-        neuralink.prepareStatement(
-            "INSERT INTO  MoviesWithGenres (movieID, genreID) VALUES  (?,?)");
-
-    for (Movies movies : values) {
-      if (!movies.getGenreIDs().isEmpty()) {
-        if (movies.getGenreIDs().size() == 1) {
-          statement.setInt(1, movies.getID());
-          statement.setInt(2, movies.getGenreIDs().get(0));
-          statement.executeUpdate();
-        } else {
-          for (int i = 0; i < movies.getGenreIDs().size(); i++) {
-            statement.setInt(1, movies.getID());
-            statement.setInt(2, movies.getGenreIDs().get(i));
-            statement.executeUpdate();
-          }
+    try (BulkInserter inserter =
+        new BulkInserter(
+            neuralink,
+            "MoviesWithGenres",
+            "INSERT INTO  MoviesWithGenres (movieID, genreID) VALUES  (?,?)",
+            batchSize)) {
+      for (Movies movies : values) {
+        for (int genreID : movies.getGenreIDs()) {
+          inserter.add(movies.getID(), genreID);
         }
       }
+
+      finish(inserter);
     }
-    neuralink.close();
-    statement.close();
   }
 
   /**
@@ -323,25 +418,162 @@ public class PopulateDB {
    */
   public void populateRatings(File ratingsFile)
       throws ClassNotFoundException, SQLException, IOException, JSONSchemaException {
-    Connection neuralink = InitialiseDB.preparation();
-    PreparedStatement statement =
-        neuralink.prepareStatement(
-            "INSERT INTO Ratings (criticSource, ratingNumber) VALUES (?, ?)");
+    try (Connection neuralink = InitialiseDB.preparation()) {
+      populateRatings(neuralink, ratingsFile);
+    }
+  }
+
+  /**
+   * Fills out the ratings table based on values obtained from the parser
+   *
+   * @param neuralink the connection shared by the whole population run
+   * @param ratingsFile the file that is going to be read. Ideally it should be the corresponding
+   *     custom JSON but handles it if otherwise
+   * @throws JSONSchemaException if the file does not meet the valid schema
+   * @throws SQLException if the SQL Code has the wrong syntax
+   * @throws IOException if the file cannot be read or parsed
+   */
+  public void populateRatings(Connection neuralink, File ratingsFile)
+      throws SQLException, IOException, JSONSchemaException {
     Ratings[] values = parserObj.ratingsParser(ratingsFile);
 
-    for (Ratings rating : values) {
-      statement.setString(1, rating.getCriticSource());
-      statement.setDouble(2, rating.getRating());
-      statement.executeUpdate();
+    try (BulkInserter inserter =
+        new BulkInserter(
+            neuralink,
+            "Ratings",
+            "INSERT INTO Ratings (criticSource, ratingNumber) VALUES (?, ?)",
+            batchSize)) {
+      for (Ratings rating : values) {
+        inserter.add(rating.getCriticSource(), rating.getRating());
+      }
+
+      finish(inserter);
+    }
+  }
+
+  /**
+   * Creates the secondary indexes once the tables have been filled out and checks that all of them
+   * are in place
+   *
+   * @param neuralink the connection shared by the whole population run
+   * @throws SQLException if an index cannot be created or is missing afterwards
+   */
+  public void populateIndexes(Connection neuralink) throws SQLException {
+    long start = System.nanoTime();
+    InitialiseDB.createIndexes(neuralink);
+    List<String> missing = InitialiseDB.missingIndexes(neuralink);
+
+    if (!missing.isEmpty()) {
+      throw new SQLException("The following indexes could not be created: " + missing);
     }
-    neuralink.close();
-    statement.close();
 
+    step("Indexes", "Indexes: %d created in %.2f ms", DDLTester.indexTester().size(), start);
+  }
+
+  /**
+   * Builds the full-text search index from the tables that have just been filled out, so that it
+   * holds the same movies, cast and directors
+   *
+   * @param neuralink the connection used for the whole population
+   * @throws SQLException if the index cannot be built
+   */
+  public void populateSearch(Connection neuralink) throws SQLException {
+    long start = System.nanoTime();
+    int movies = FullTextSearch.rebuild(neuralink);
+
+    step("Search", "Search: %d movies indexed in %.2f ms", movies, start);
+  }
+
+  /**
+   * Rebuilds the movie_summary table from the tables that have just been filled out
+   *
+   * @param neuralink the connection used for the whole population
+   * @throws SQLException if the table cannot be built
+   */
+  public void populateSummary(Connection neuralink) throws SQLException {
+    long start = System.nanoTime();
+    int movies = MovieSummary.rebuild(neuralink);
+
+    step("Summary", "Summary: %d movies in %.2f ms", movies, start);
+  }
+
+  /**
+   * Rebuilds the award_age_summary table from the tables that have just been filled out
+   *
+   * @param neuralink the connection used for the whole population
+   * @throws SQLException if the table cannot be built
+   */
+  public void populateAwardAges(Connection neuralink) throws SQLException {
+    long start = System.nanoTime();
+    int institutions = AwardAgeSummary.rebuild(neuralink);
+
+    step("Award ages", "Award ages: %d institutions in %.2f ms", institutions, start);
+  }
+
+  /**
+   * Builds the NameFilters from the tables that have just been filled out and makes them the
+   * current ones, so the first lookups after the population do not have to build them
+   *
+   * @param neuralink the connection used for the whole population
+   * @throws SQLException if the names cannot be read
+   */
+  public void populateFilters(Connection neuralink) throws SQLException {
+    long start = System.nanoTime();
+    long generation = QueryDB.getQueryCache().getGeneration();
+    NameFilters filters = NameFilters.build(neuralink);
+    NameFilters.install(filters, generation);
+
+    step("Filters", "Filters: %d names in %.2f ms", filters.getSize(), start);
+  }
+
+  /**
+   * Builds the Autocomplete index from the tables that have just been filled out and makes it the
+   * current one
+   *
+   * @param neuralink the connection used for the whole population
+   * @throws SQLException if the names cannot be read
+   */
+  public void populateAutocomplete(Connection neuralink) throws SQLException {
+    long start = System.nanoTime();
+    long generation = QueryDB.getQueryCache().getGeneration();
+    Autocomplete index = Autocomplete.build(neuralink);
+    Autocomplete.install(index, generation);
+
+    step("Autocomplete", "Autocomplete: %d names in %.2f ms", index.getSize(), start);
+  }
+
+  /**
+   * Adds the report of a table that has been filled out to the insertion reports and to the
+   * IngestionReport
+   *
+   * @param inserter the inserter of the table, which is finished by this method
+   * @throws SQLException if the last rows or the commit cannot be sent
+   */
+  private void finish(BulkInserter inserter) throws SQLException {
+    insertReports.add(inserter.finish());
+    ingestionReport.addTable(inserter);
+  }
+
+  /**
+   * Adds the report of a step run after the tables have been filled out to the insertion reports
+   * and to the IngestionReport
+   *
+   * @param step the name of the step
+   * @param format the format of the insertion report, with the amount of items and the time taken
+   * @param items the amount of things built by the step
+   * @param start the value of System.nanoTime when the step started
+   */
+  private void step(String step, String format, long items, long start) {
+    long nanos = System.nanoTime() - start;
+    insertReports.add(String.format(format, items, nanos / 1_000_000.0));
+    ingestionReport.addStep(step, items, nanos);
   }
 
   /**
    * Fills out all the tables by calling the different populate methods in a bulk. This is done
-   * for better testing and commodity
+   * for better testing and commodity. The whole run goes through a single connection, which is
+   * also used to check that the tables exist and have not been populated yet. Once everything has
+   * been inserted, the amount of rows of every table is written to the DatabaseCatalog
    *
    * @param obj the object what allows calling the different populate methods
    * @param actorFile file that contains the values for the actors table and its intermediate tables
@@ -365,29 +597,40 @@ public class PopulateDB {
       throws JSONSchemaException {
     File db = new File(InitialiseDB.getDatabaseFile());
 
-    if (!(InitialiseDB.emptyDBChecker()) && db.exists()) {
-      try {
-        if (!QueryDB.populatedTableChecker()) {
-          obj.populateAwards(awardFile);
-          obj.populateDirectors(directorFile);
-          obj.populateGenres(genreFile);
-          obj.populateRatings(ratingsFile);
-          obj.populateMovies(movieFile);
-          obj.populateActors(actorFile);
-        } else {
-          return "The table was already populated. Nothing happened";
-        }
-      } catch (ClassNotFoundException e) {
-        return ("There is a problem with the drivers. Please check the SQLite Drivers");
-      } catch (SQLException e) {
-        return ("There is an error with the SQL Code of the Population. Please check the SQL Code");
-      } catch (IOException e) {
-        return ("There has been a problem parsing through the JSON Files. Please check the JSON Files location or integrity");
-      }
-      return ("The tables have been populated");
-    } else {
+    if (!db.exists()) {
       return ("The tables have not been created. Thus, it cannot be populated");
     }
+
+    try (Connection neuralink = InitialiseDB.preparation()) {
+      if (InitialiseDB.emptyDBChecker(neuralink)) {
+        return ("The tables have not been created. Thus, it cannot be populated");
+      }
+
+      if (!QueryDB.populatedTableChecker(neuralink)) {
+        obj.populateAwards(neuralink, awardFile);
+        obj.populateDirectors(neuralink, directorFile);
+        obj.populateGenres(neuralink, genreFile);
+        obj.populateRatings(neuralink, ratingsFile);
+        obj.populateMovies(neuralink, movieFile);
+        obj.populateActors(neuralink, actorFile);
+        obj.populateIndexes(neuralink);
+        obj.populateSearch(neuralink);
+        obj.populateSummary(neuralink);
+        obj.populateAwardAges(neuralink);
+        obj.populateFilters(neuralink);
+        obj.populateAutocomplete(neuralink);
+        DatabaseCatalog.record(neuralink);
+      } else {
+        return "The table was already populated. Nothing happened";
+      }
+    } catch (ClassNotFoundException e) {
+      return ("There is a problem with the drivers. Please check the SQLite Drivers");
+    } catch (SQLException e) {
+      return ("There is an error with the SQL Code of the Population. Please check the SQL Code");
+    } catch (IOException e) {
+      return ("There has been a problem parsing through the JSON Files. Please check the JSON Files location or integrity");
+    }
+    return ("The tables have been populated");
   }
 
   /**
@@ -441,4 +684,24 @@ public class PopulateDB {
   public static File getRatingsFile() {
     return RATINGS_FILE;
   }
+
+  /**
+   * Standard getter for the reports of the tables filled out by this object. There is one report
+   * per table, with the amount of rows inserted and the rows per second
+   *
+   * @return the insertion reports in the order the tables were filled out
+   */
+  public List<String> getInsertReports() {
+    return insertReports;
+  }
+
+  /**
+   * Standard getter for the IngestionReport of this object, with the timings of every file read
+   * and every table filled out by it
+   *
+   * @return the ingestion report
+   */
+  public IngestionReport getIngestionReport() {
+    return ingestionReport;
+  }
 }
@@ -0,0 +1,170 @@
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Runs many queries in a single session. The commands are read one per line from a file or from
+ * the standard input, in the same format as the arguments of QueryDB, and all of them share the
+ * drivers, the connection pool and the prepared statements kept by the pool. Parameters with
+ * spaces are written between double quotes:
+ *
+ * <pre>
+ *   # comments and empty lines are skipped
+ *   2 "The Dark Knight"
+ *   3 "Cillian Murphy" "Christopher Nolan"
+ *   6
+ * </pre>
+ *
+ * <p>The results of every command are written one after the other to a single output, each one
+ * after a line with the command itself that starts with "&gt; ".
+ *
+ * @author 230018374
+ */
+public class QueryBatch {
+
+  /**
+   * Runs the commands of a file, or of the standard input if no file is given, and writes the
+   * results to a second file, or to the standard output if no second file is given
+   *
+   * @param args the file with the commands and the file for the results, both optional
+   */
+  public static void main(String[] args) {
+    long start = System.nanoTime();
+    PrintStream console = System.out;
+    InputStream input = System.in;
+    OutputStream output = console;
+
+    try {
+      if (args.length > 0) {
+        input = new FileInputStream(args[0]);
+      }
+      if (args.length > 1) {
+        output = new FileOutputStream(args[1]);
+      }
+
+      PrintStream results =
+          new PrintStream(new BufferedOutputStream(output, ResultRenderer.BUFFER_SIZE), false);
+      System.setOut(results);
+      long commands;
+
+      try {
+        if (!DatabaseCatalog.isPopulated()) {
+          System.out.println("The table has not been populated. Please try again");
+          return;
+        }
+
+        commands =
+            run(new BufferedReader(new InputStreamReader(input, StandardCharsets.UTF_8)));
+      } finally {
+        results.flush();
+        System.setOut(console);
+      }
+
+      System.err.printf(
+          "%d commands in %.2f ms%n", commands, (System.nanoTime() - start) / 1_000_000.0);
+    } catch (IOException e) {
+      System.out.println("The commands or the results file cannot be opened. Please try again");
+    } catch (SQLException e) {
+      System.out.println("There has been a problem with the database during population validation. Please try again");
+    } catch (ClassNotFoundException e) {
+      System.out.println("The drivers have not been initialised");
+    } finally {
+      try {
+        if (input != System.in) {
+          input.close();
+        }
+        if (output != console) {
+          output.close();
+        }
+      } catch (IOException e) {
+        System.out.println("The results file could not be closed. Please check its contents");
+      }
+    }
+  }
+
+  /**
+   * Runs every command read from the reader through QueryDB.querying, writing the results to the
+   * standard output. A command that fails does not stop the ones after it.
+   *
+   * @param commands the reader with one command per line
+   * @return the amount of commands that were run
+   * @throws IOException if the commands cannot be read
+   */
+  public static long run(BufferedReader commands) throws IOException {
+    long count = 0;
+    String line;
+
+    while ((line = commands.readLine()) != null) {
+      List<String> arguments = arguments(line);
+
+      if (arguments.isEmpty() || arguments.get(0).startsWith("#")) {
+        continue;
+      }
+
+      System.out.println("> " + line.trim());
+      count++;
+
+      try {
+        QueryDB.querying(arguments.toArray(new String[0]));
+      } catch (NumberFormatException e) {
+        System.out.println(e.getMessage());
+      } catch (SQLException e) {
+        System.out.println("There has been a problem with the database during population validation. Please try again");
+      } catch (ClassNotFoundException e) {
+        System.out.println("The drivers have not been initialised");
+      }
+    }
+
+    return count;
+  }
+
+  /**
+   * Splits a command into its arguments. They are separated by spaces, and an argument between
+   * double quotes can have spaces inside it.
+   *
+   * @param line the command
+   * @return the arguments of the command, without the quotes
+   */
+  public static List<String> arguments(String line) {
+    List<String> arguments = new ArrayList<>();
+    StringBuilder current = null;
+    boolean quoted = false;
+
+    for (int i = 0; i < line.length(); i++) {
+      char c = line.charAt(i);
+
+      if (c == '"') {
+        quoted = !quoted;
+
+        if (current == null) {
+          current = new StringBuilder();
+        }
+      } else if (Character.isWhitespace(c) && !quoted) {
+        if (current != null) {
+          arguments.add(current.toString());
+          current = null;
+        }
+      } else {
+        if (current == null) {
+          current = new StringBuilder();
+        }
+        current.append(c);
+      }
+    }
+
+    if (current != null) {
+      arguments.add(current.toString());
+    }
+    return arguments;
+  }
+}
@@ -0,0 +1,162 @@
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import javax.sql.rowset.CachedRowSet;
+
+/**
+ * Bounded in-process cache for the results of the queries of QueryDB. Results are kept as
+ * disconnected row sets, keyed by the number of the query and its parameters, and the least
+ * recently used one is evicted once the cache is full. Results with too many rows are not kept, so
+ * that a few big results cannot push every lookup out of the cache.
+ *
+ * <p>Every time the tables change (a population run or a new initialisation of the database) the
+ * whole cache is invalidated. Results read from the database while an invalidation happens are not
+ * stored, since they might have been read before the change.
+ *
+ * @author 230018374
+ */
+public class QueryCache {
+  /** Maximum amount of results kept, can be changed with the moviesdb.cache.size property. */
+  public static final int DEFAULT_SIZE = Integer.getInteger("moviesdb.cache.size", 256);
+
+  /** Results with more rows than this are not kept, set with moviesdb.cache.rows. */
+  public static final int DEFAULT_MAX_ROWS = Integer.getInteger("moviesdb.cache.rows", 1000);
+
+  private final int maxSize;
+  private final int maxRows;
+  private final Map<List<Object>, CachedRowSet> entries;
+  private long generation;
+  private long hits;
+  private long misses;
+  private long evictions;
+  private long invalidations;
+
+  /**
+   * Creates an empty cache
+   *
+   * @param maxSize the maximum amount of results kept at the same time
+   * @param maxRows the maximum amount of rows a result can have to be kept
+   */
+  public QueryCache(int maxSize, int maxRows) {
+    this.maxSize = maxSize;
+    this.maxRows = maxRows;
+    this.entries =
+        new LinkedHashMap<>(16, 0.75f, true) {
+          @Override
+          protected boolean removeEldestEntry(Map.Entry<List<Object>, CachedRowSet> eldest) {
+            if (size() > QueryCache.this.maxSize) {
+              evictions++;
+              return true;
+            }
+            return false;
+          }
+        };
+  }
+
+  /**
+   * Looks for the result of a query. Every call gets its own cursor over the kept rows, so several
+   * callers can read the same result at the same time.
+   *
+   * @param queryID the number of the query
+   * @param parameters the parameters the query was run with
+   * @return a result set placed before the first row, or null if the result is not kept
+   * @throws SQLException if the kept rows cannot be shared
+   */
+  public synchronized ResultSet get(int queryID, Object... parameters) throws SQLException {
+    CachedRowSet rows = entries.get(key(queryID, parameters));
+
+    if (rows == null) {
+      misses++;
+      return null;
+    }
+
+    hits++;
+    return rows.createShared();
+  }
+
+  /**
+   * Standard getter for the generation of the cache, which changes every time it is invalidated.
+   * It has to be read before running the query whose result is going to be kept.
+   *
+   * @return the current generation of the cache
+   */
+  public synchronized long getGeneration() {
+    return generation;
+  }
+
+  /**
+   * Keeps the result of a query, unless the cache has been invalidated since the query was run or
+   * the result has too many rows
+   *
+   * @param generation the generation of the cache read before the query was run
+   * @param queryID the number of the query
+   * @param parameters the parameters the query was run with
+   * @param rows the complete result of the query. It should not be moved afterwards
+   * @return true if the result was kept and false if it was not
+   */
+  public synchronized boolean put(
+      long generation, int queryID, Object[] parameters, CachedRowSet rows) {
+    if (generation != this.generation || rows.size() > maxRows) {
+      return false;
+    }
+
+    entries.put(key(queryID, parameters), rows);
+    return true;
+  }
+
+  /**
+   * Removes every result from the cache. It is called whenever the tables change.
+   */
+  public synchronized void invalidate() {
+    generation++;
+    invalidations++;
+    entries.clear();
+  }
+
+  /**
+   * Gives a summary of how the cache has been used
+   *
+   * @return a string with the size, hits, misses, hit rate, evictions and invalidations
+   */
+  public synchronized String getMetrics() {
+    long lookups = hits + misses;
+    return String.format(
+        "entries=%d/%d hits=%d misses=%d hitRate=%.1f%% evictions=%d invalidations=%d",
+        entries.size(),
+        maxSize,
+        hits,
+        misses,
+        lookups == 0 ? 0 : 100.0 * hits / lookups,
+        evictions,
+        invalidations);
+  }
+
+  /**
+   * Standard getter for the amount of results found in the cache
+   *
+   * @return the amount of hits
+   */
+  public synchronized long getHits() {
+    return hits;
+  }
+
+  /**
+   * Standard getter for the amount of results not found in the cache
+   *
+   * @return the amount of misses
+   */
+  public synchronized long getMisses() {
+    return misses;
+  }
+
+  private static List<Object> key(int queryID, Object[] parameters) {
+    List<Object> key = new ArrayList<>(parameters.length + 1);
+    key.add(queryID);
+    key.addAll(Arrays.asList(parameters));
+    return key;
+  }
+}
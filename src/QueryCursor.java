@@ -0,0 +1,486 @@
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import javax.sql.rowset.CachedRowSet;
+import javax.sql.rowset.RowSetMetaDataImpl;
+import javax.sql.rowset.RowSetProvider;
+
+/**
+ * Result of one of the queries of QueryDB. The cursor owns the connection, the statement and the
+ * result set of the query, so closing it (or using it in a try-with-resources block) releases all
+ * three at once and gives the connection back to the pool of read-only connections. It can also be
+ * consumed in a streaming way through forEachRow, which closes the cursor as soon as the last row
+ * is read. Cursors over results kept by the QueryCache, or worked out in memory, do not hold a
+ * connection at all.
+ *
+ * <p>The cursor also times its call: borrowing the connection, running the statement, moving
+ * through the rows (the result set it gives is wrapped to time every call to next) and rendering
+ * them through render. If it has been marked with the number of its query, the times are given to
+ * QueryMetrics when it is closed.
+ *
+ * @author 230018374
+ */
+public class QueryCursor implements AutoCloseable {
+  private final Connection connection;
+  private final PreparedStatement statement;
+  private final ResultSet resultSet;
+  private final ResultSet timedRows;
+  private final Map<String, String> corrections = new LinkedHashMap<>();
+  private final long[] nanos = {-1, -1, 0, -1};
+  private int queryID;
+  private boolean page;
+  private String sql;
+  private Object[] parameters = new Object[0];
+  private boolean closed;
+
+  /**
+   * Action carried out for every row of the cursor when it is consumed through forEachRow
+   */
+  @FunctionalInterface
+  public interface RowConsumer {
+    /**
+     * Reads the current row of the result set. The consumer should not move the result set.
+     *
+     * @param row the result set, already placed on the row that is being read
+     * @throws SQLException if there is a problem reading the row
+     */
+    void accept(ResultSet row) throws SQLException;
+  }
+
+  /**
+   * Turns the rows of the cursor into something else, such as text, through render
+   *
+   * @param <T> what the rows are turned into
+   */
+  @FunctionalInterface
+  public interface Renderer<T> {
+    /**
+     * Reads every row of the result set
+     *
+     * @param rows the result set, placed before the first row
+     * @return what the rows have been turned into
+     * @throws SQLException if there is a problem reading the rows
+     */
+    T render(ResultSet rows) throws SQLException;
+  }
+
+  /**
+   * Works out the rows of a query in memory
+   */
+  @FunctionalInterface
+  public interface RowSource {
+    /**
+     * Gives the rows of the query
+     *
+     * @return the rows, placed before the first one
+     * @throws ClassNotFoundException if the drivers are not loaded
+     * @throws SQLException if there is a problem reading the database
+     */
+    ResultSet rows() throws ClassNotFoundException, SQLException;
+  }
+
+  private QueryCursor(Connection connection, PreparedStatement statement, ResultSet resultSet) {
+    this.connection = connection;
+    this.statement = statement;
+    this.resultSet = resultSet;
+    this.timedRows = timed(resultSet);
+  }
+
+  /**
+   * Borrows a read-only connection, prepares the query, fills out its parameters and runs it.
+   * If anything goes wrong, everything that has been opened so far is closed before throwing.
+   *
+   * @param sql the query, with one placeholder per parameter
+   * @param parameters the values of the placeholders, in order
+   * @return a cursor placed before the first row of the results
+   * @throws ClassNotFoundException if the drivers are not loaded
+   * @throws SQLException if there is a problem with the SQL Code
+   */
+  public static QueryCursor open(String sql, Object... parameters)
+      throws ClassNotFoundException, SQLException {
+    return open(0, sql, parameters);
+  }
+
+  /**
+   * Works in the same way as the other open method, but also tells the driver how many rows to
+   * fetch from the database at a time
+   *
+   * @param fetchSize the amount of rows fetched at a time. 0 leaves it up to the driver
+   * @param sql the query, with one placeholder per parameter
+   * @param parameters the values of the placeholders, in order
+   * @return a cursor placed before the first row of the results
+   * @throws ClassNotFoundException if the drivers are not loaded
+   * @throws SQLException if there is a problem with the SQL Code
+   */
+  public static QueryCursor open(int fetchSize, String sql, Object... parameters)
+      throws ClassNotFoundException, SQLException {
+    long start = System.nanoTime();
+    Connection connection = InitialiseDB.readPreparation();
+    long connected = System.nanoTime();
+    PreparedStatement statement = null;
+
+    try {
+      statement = connection.prepareStatement(sql);
+      statement.setFetchSize(fetchSize);
+
+      for (int i = 0; i < parameters.length; i++) {
+        statement.setObject(i + 1, parameters[i]);
+      }
+
+      QueryCursor cursor = new QueryCursor(connection, statement, statement.executeQuery());
+      cursor.nanos[QueryMetrics.Phase.CONNECT.ordinal()] = connected - start;
+      cursor.nanos[QueryMetrics.Phase.EXECUTE.ordinal()] = System.nanoTime() - connected;
+      cursor.sql = sql;
+      cursor.parameters = parameters;
+      return cursor;
+    } catch (SQLException | RuntimeException e) {
+      if (statement != null) {
+        statement.close();
+      }
+      connection.close();
+      throw e;
+    }
+  }
+
+  /**
+   * Wraps rows that have already been worked out in memory, such as the ones given by the
+   * CoStarGraph, so that they are read in the same way as the rows of a query
+   *
+   * @param rows the rows, placed before the first one
+   * @return a cursor over the rows, which does not hold a connection
+   */
+  public static QueryCursor over(ResultSet rows) {
+    return new QueryCursor(null, null, rows);
+  }
+
+  /**
+   * Works out the rows of a query in memory and wraps them, taking the time it takes as the time
+   * the query has been running for
+   *
+   * @param queryID the number of the query
+   * @param source what works out the rows
+   * @return a cursor over the rows, which does not hold a connection
+   * @throws ClassNotFoundException if the drivers are not loaded
+   * @throws SQLException if the rows cannot be worked out
+   */
+  public static QueryCursor computed(int queryID, RowSource source)
+      throws ClassNotFoundException, SQLException {
+    long start = System.nanoTime();
+    QueryCursor cursor = over(source.rows()).measured(queryID);
+    cursor.nanos[QueryMetrics.Phase.EXECUTE.ordinal()] = System.nanoTime() - start;
+    return cursor;
+  }
+
+  /**
+   * Gives a cursor without any rows, for queries that are known to have no results without running
+   * them
+   *
+   * @param labels the labels of the columns of the query
+   * @return a cursor with the columns of the query and no rows
+   * @throws SQLException if the rows cannot be created
+   */
+  public static QueryCursor empty(String... labels) throws SQLException {
+    List<Integer> types = new ArrayList<>(labels.length);
+
+    for (int i = 0; i < labels.length; i++) {
+      types.add(Types.VARCHAR);
+    }
+    return over(rows(List.of(labels), types));
+  }
+
+  /**
+   * Creates an empty set of rows in memory with the passed columns, where rows can be added with
+   * moveToInsertRow and insertRow
+   *
+   * @param labels the labels of the columns
+   * @param types the SQL types of the columns, as given in java.sql.Types
+   * @return the empty rows
+   * @throws SQLException if the rows cannot be created
+   */
+  public static CachedRowSet rows(List<String> labels, List<Integer> types) throws SQLException {
+    RowSetMetaDataImpl metaData = new RowSetMetaDataImpl();
+    metaData.setColumnCount(labels.size());
+
+    for (int i = 0; i < labels.size(); i++) {
+      metaData.setColumnName(i + 1, labels.get(i));
+      metaData.setColumnLabel(i + 1, labels.get(i));
+      metaData.setColumnType(i + 1, types.get(i));
+      metaData.setNullable(i + 1, ResultSetMetaData.columnNullable);
+    }
+
+    CachedRowSet rows = RowSetProvider.newFactory().createCachedRowSet();
+    rows.setMetaData(metaData);
+    return rows;
+  }
+
+  /**
+   * Looks for the result of the query in the cache of QueryDB, and only runs the query if it is not
+   * there. The rows read from the database are kept in the cache for the next time.
+   *
+   * @param queryID the number of the query, which is part of the key in the cache
+   * @param sql the query, with one placeholder per parameter
+   * @param parameters the values of the placeholders, in order
+   * @return a cursor placed before the first row of the results
+   * @throws ClassNotFoundException if the drivers are not loaded
+   * @throws SQLException if there is a problem with the SQL Code
+   */
+  public static QueryCursor cached(int queryID, String sql, Object... parameters)
+      throws ClassNotFoundException, SQLException {
+    QueryCursor kept = kept(queryID, sql, parameters);
+    return kept != null ? kept : fresh(queryID, sql, parameters);
+  }
+
+  /**
+   * Looks for the result of the query in the cache of QueryDB without running it
+   *
+   * @param queryID the number of the query, which is part of the key in the cache
+   * @param sql the query, with one placeholder per parameter
+   * @param parameters the values of the placeholders, in order
+   * @return a cursor placed before the first kept row, or null if the result is not kept
+   * @throws SQLException if the kept rows cannot be shared
+   */
+  public static QueryCursor kept(int queryID, String sql, Object... parameters)
+      throws SQLException {
+    ResultSet kept = QueryDB.getQueryCache().get(queryID, parameters);
+    if (kept == null) {
+      return null;
+    }
+    return new QueryCursor(null, null, kept).measured(queryID, sql, parameters);
+  }
+
+  /**
+   * Runs the query without looking for it in the cache of QueryDB, and keeps the rows read from the
+   * database in the cache for the next time. It is used once the cache has already been missed.
+   *
+   * @param queryID the number of the query, which is part of the key in the cache
+   * @param sql the query, with one placeholder per parameter
+   * @param parameters the values of the placeholders, in order
+   * @return a cursor placed before the first row of the results
+   * @throws ClassNotFoundException if the drivers are not loaded
+   * @throws SQLException if there is a problem with the SQL Code
+   */
+  public static QueryCursor fresh(int queryID, String sql, Object... parameters)
+      throws ClassNotFoundException, SQLException {
+    QueryCache cache = QueryDB.getQueryCache();
+    long generation = cache.getGeneration();
+    CachedRowSet rows = RowSetProvider.newFactory().createCachedRowSet();
+    long[] times;
+
+    try (QueryCursor cursor = open(sql, parameters)) {
+      rows.populate(cursor.getResultSet());
+      times = cursor.nanos;
+    }
+
+    cache.put(generation, queryID, parameters, rows);
+    QueryCursor cursor = new QueryCursor(null, null, rows.createShared());
+    System.arraycopy(times, 0, cursor.nanos, 0, times.length);
+    return cursor.measured(queryID, sql, parameters);
+  }
+
+  /**
+   * Marks the cursor with the number of its query, so its times are given to QueryMetrics when it
+   * is closed
+   *
+   * @param queryID the number of the query
+   * @return this cursor
+   */
+  public QueryCursor measured(int queryID) {
+    this.queryID = queryID;
+    return this;
+  }
+
+  /**
+   * Marks the cursor as one page of a query, so its times are given to QueryMetrics as a page
+   * when it is closed, apart from the calls of the query
+   *
+   * @param queryID the number of the query
+   * @return this cursor
+   */
+  public QueryCursor measuredPage(int queryID) {
+    this.page = true;
+    return measured(queryID);
+  }
+
+  /**
+   * Standard getter for the result set of the query. It stays owned by the cursor, so it should
+   * not be closed on its own.
+   *
+   * @return the result set of the query
+   */
+  public ResultSet getResultSet() {
+    return timedRows;
+  }
+
+  /**
+   * Moves the cursor to the next row of the results
+   *
+   * @return true if there is a row and false if all the rows have been read
+   * @throws SQLException if there is a problem with the database
+   */
+  public boolean next() throws SQLException {
+    return timedRows.next();
+  }
+
+  /**
+   * Runs the renderer over the rows of the cursor, taking the time it takes, without the time
+   * spent fetching the rows, as the time spent rendering them
+   *
+   * @param <T> what the rows are turned into
+   * @param renderer what turns the rows into something else
+   * @return what the renderer gives
+   * @throws SQLException if there is a problem reading the rows
+   */
+  public <T> T render(Renderer<T> renderer) throws SQLException {
+    int fetch = QueryMetrics.Phase.FETCH.ordinal();
+    int render = QueryMetrics.Phase.RENDER.ordinal();
+    long fetched = nanos[fetch];
+    long start = System.nanoTime();
+
+    try {
+      return renderer.render(timedRows);
+    } finally {
+      long spent = System.nanoTime() - start - (nanos[fetch] - fetched);
+      nanos[render] = Math.max(nanos[render], 0) + spent;
+    }
+  }
+
+  /**
+   * Runs the consumer on every row of the results and closes the cursor afterwards, even if the
+   * consumer throws an exception. Only one row is held in memory at a time.
+   *
+   * @param consumer the action carried out for every row
+   * @return the amount of rows that were read
+   * @throws SQLException if there is a problem reading the rows
+   */
+  public long forEachRow(RowConsumer consumer) throws SQLException {
+    long rows = 0;
+
+    try {
+      while (timedRows.next()) {
+        consumer.accept(timedRows);
+        rows++;
+      }
+    } finally {
+      close();
+    }
+
+    return rows;
+  }
+
+  /**
+   * Records that a name given to the query was not found and the closest name was used instead.
+   * Nothing is recorded if both names are the same.
+   *
+   * @param typed the name that was given
+   * @param used the name the query was run with
+   * @return this cursor
+   */
+  public QueryCursor withCorrection(String typed, String used) {
+    if (!Objects.equals(typed, used)) {
+      corrections.put(typed, used);
+    }
+    return this;
+  }
+
+  /**
+   * Standard getter for the names that were replaced before running the query
+   *
+   * @return the names that were given, each one with the name used instead of it
+   */
+  public Map<String, String> getCorrections() {
+    return Collections.unmodifiableMap(corrections);
+  }
+
+  /**
+   * Checks if the cursor has been closed
+   *
+   * @return true if it has been closed and false if it is still open
+   */
+  public boolean isClosed() {
+    return closed;
+  }
+
+  /**
+   * Closes the result set and the statement and gives the connection back to the pool. Calling it
+   * more than once does nothing.
+   *
+   * @throws SQLException if there is a problem closing any of them
+   */
+  @Override
+  public void close() throws SQLException {
+    if (closed) {
+      return;
+    }
+    closed = true;
+
+    try {
+      // Cursors over kept results share their rows with the cache, and closing them would empty it
+      if (connection != null) {
+        try {
+          resultSet.close();
+        } finally {
+          try {
+            statement.close();
+          } finally {
+            connection.close();
+          }
+        }
+      }
+    } finally {
+      if (queryID > 0 && page) {
+        QueryMetrics.recordPage(queryID, nanos, sql, parameters);
+      } else if (queryID > 0) {
+        QueryMetrics.record(queryID, nanos, sql, parameters);
+      }
+    }
+  }
+
+  private QueryCursor measured(int queryID, String sql, Object[] parameters) {
+    this.sql = sql;
+    this.parameters = parameters;
+    return measured(queryID);
+  }
+
+  // Adds the time of every call to next to the time spent fetching
+  private ResultSet timed(ResultSet rows) {
+    int fetch = QueryMetrics.Phase.FETCH.ordinal();
+    return (ResultSet)
+        Proxy.newProxyInstance(
+            ResultSet.class.getClassLoader(),
+            new Class<?>[] {ResultSet.class},
+            (proxy, method, arguments) -> {
+              if (!method.getName().equals("next")) {
+                return invoke(rows, method, arguments);
+              }
+
+              long start = System.nanoTime();
+
+              try {
+                return invoke(rows, method, arguments);
+              } finally {
+                nanos[fetch] += System.nanoTime() - start;
+              }
+            });
+  }
+
+  private static Object invoke(ResultSet rows, Method method, Object[] arguments)
+      throws Throwable {
+    try {
+      return method.invoke(rows, arguments);
+    } catch (InvocationTargetException e) {
+      throw e.getCause();
+    }
+  }
+}
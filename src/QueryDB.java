@@ -1,4 +1,10 @@
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.sql.*;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Map;
 
 /**
  * Allows for the retrieval of data from the database. This is done through a series of queries
@@ -8,113 +14,305 @@ import java.sql.*;
  * @author 230018374
  */
 public class QueryDB {
+    /** Amount of queries that can be run, numbered from 1. */
+    public static final int QUERY_COUNT = 11;
+    /** Critic source of query 5 when none is given. */
+    public static final String DEFAULT_CRITIC_SOURCE = "Rotten Tomatoes";
+
+    private static final String QUERY_1 = "SELECT m.name as 'Name' FROM Movies m";
+    private static final String QUERY_1_PAGE =
+            "SELECT m.name as 'Name', m.movieID FROM Movies m WHERE m.movieID > ? ORDER BY m.movieID LIMIT ?";
+    private static final String QUERY_2 =
+            "SELECT a.name as 'Actor Name'FROM Movies m INNER JOIN Cast c ON m.movieID = c.movieID INNER JOIN Actors a ON a.actorID = c.actorID WHERE m.name = ?";
+    private static final String QUERY_3 =
+            "SELECT m.plot as 'Plot' FROM Movies m INNER JOIN Cast c ON m.movieID = c.movieID INNER JOIN Actors a ON a.actorID = c.actorID INNER JOIN Director D on D.directorID = m.directorID WHERE a.name = ? AND D.name = ?";
+    private static final String QUERY_4 =
+            "SELECT d.name as 'Director', A.name as 'Particular Actor' FROM Director d INNER JOIN main.Movies M on d.directorID = M.directorID INNER JOIN main.Cast C on M.movieID = C.movieID INNER JOIN main.Actors A on A.actorID = C.actorID WHERE A.name = ?";
+    private static final String QUERY_5 =
+            MovieQuery.sql(EnumSet.of(MovieQuery.Filter.GENRE, MovieQuery.Filter.CRITIC_SOURCE));
+    private static final String QUERY_6 =
+            "SELECT ROUND(CAST(s.ageSum AS REAL) / s.actorCount) as 'Average Age', s.awardInstitution as 'Award Institution', s.motive as 'Motive' " +
+                    "FROM award_age_summary s ORDER BY s.awardInstitution";
+    private static final String QUERY_7 =
+            "SELECT m.name as 'Name', D.name as 'Director', snippet(MovieSearch, -1, '[', ']', '...', 12) as 'Match' " +
+                    "FROM MovieSearch s " +
+                    "INNER JOIN Movies m ON m.movieID = s.rowid " +
+                    "INNER JOIN Director D on D.directorID = m.directorID " +
+                    "WHERE MovieSearch MATCH ? ORDER BY bm25(MovieSearch, 10.0, 1.0, 5.0, 5.0) LIMIT ?";
+    private static final String QUERY_8 =
+            "SELECT name as 'Name', releaseDate as 'Release Date', runningTime as 'Running Time', director as 'Director', " +
+                    "genres as 'Genres', actors as 'Cast', ratings as 'Ratings', plot as 'Plot' FROM movie_summary WHERE name = ?";
+    private static final String MOVIE_SUMMARY_BY_ID =
+            "SELECT name as 'Name', releaseDate as 'Release Date', runningTime as 'Running Time', director as 'Director', " +
+                    "genres as 'Genres', actors as 'Cast', ratings as 'Ratings', plot as 'Plot' FROM movie_summary WHERE movieID = ?";
+
+    private static final QueryCache queryCache =
+            new QueryCache(QueryCache.DEFAULT_SIZE, QueryCache.DEFAULT_MAX_ROWS);
 
     /**
      * Runs a query which contains all the names of all the movies in the database
      *
-     * @return a result set that contains all the names of all the movies in the database
+     * @return a cursor over all the names of all the movies in the database
      * @throws ClassNotFoundException if the drivers are not loaded
      * @throws SQLException           if there is a problem with the SQL Code
      */
-    public static ResultSet executeQuery1() throws ClassNotFoundException, SQLException {
-        Statement statement;
-
-        Connection connection = InitialiseDB.preparation();
-        statement = connection.createStatement();
-        return statement.executeQuery("SELECT m.name as 'Name' FROM Movies m");
+    public static QueryCursor executeQuery1() throws ClassNotFoundException, SQLException {
+        return QueryCursor.open(QUERY_1).measured(1);
+    }
 
+    /**
+     * Prepares the same query as executeQuery1, but reads the movies one page at a time in the
+     * order of their IDs. Only one page is held in memory at a time, and the first page is ready as
+     * soon as it has been read. The ID of each movie is given as the last column of the rows.
+     *
+     * @param pageSize   the amount of movies in every page
+     * @param afterMovie the ID of the movie the first page starts after. 0 starts from the beginning
+     * @return the pages of the names of all the movies in the database
+     */
+    public static PagedQuery pageQuery1(int pageSize, long afterMovie) {
+        return new PagedQuery(1, QUERY_1_PAGE, pageSize, afterMovie);
     }
 
     /**
      * Runs a query which contains the names of the actors who perform in some specific movie inputted
-     * through the command line arguments
+     * through the command line arguments. Movies that are not in the NameFilters are replaced by the
+     * closest name, or answered without running the query if no name is close enough. The cache is
+     * looked at before the NameFilters, so every call counts as a hit or a miss
      *
-     * @return a result set that contains the names of the actors who perform in some specific movie
+     * @return a cursor over the names of the actors who perform in some specific movie
      * inputted through the command line arguments
      * @throws ClassNotFoundException if the drivers are not loaded
      * @throws SQLException           if there is a problem with the SQL Code
      */
-    public static ResultSet executeQuery2(String movie) throws ClassNotFoundException, SQLException {
-        PreparedStatement statement;
-        Connection connection = InitialiseDB.preparation();
-        statement =
-                connection.prepareStatement(
-                        "SELECT a.name as 'Actor Name'FROM Movies m INNER JOIN Cast c ON m.movieID = c.movieID INNER JOIN Actors a ON a.actorID = c.actorID WHERE m.name = ?");
-        statement.setString(1, movie);
-        return statement.executeQuery();
+    public static QueryCursor executeQuery2(String movie) throws ClassNotFoundException, SQLException {
+        QueryCursor kept = QueryCursor.kept(2, QUERY_2, movie);
+
+        if (kept != null) {
+            return kept;
+        }
 
+        NameFilters filters = NameFilters.current();
+        String match = NameFilters.resolve(filters.getMovies(), filters.getMovieTrigrams(), movie);
 
+        if (match == null) {
+            return QueryCursor.empty("Actor Name").measured(2);
+        }
+        return (match.equals(movie) ? QueryCursor.fresh(2, QUERY_2, match)
+                : QueryCursor.cached(2, QUERY_2, match)).withCorrection(movie, match);
     }
 
     /**
      * Runs a query which contains the synopses of a movie with a specified actor in it and directed
-     * by some particular director.
+     * by some particular director. Names that are not in the NameFilters are replaced by the closest
+     * ones, and the query is not run if no name is close enough
      *
-     * @return a result set that contains the synopses of a movie with a specified actor in it and
+     * @return a cursor over the synopses of a movie with a specified actor in it and
      * directed by some particular director. The actor and director are inputted using the
      * command line arguments.
      * @throws ClassNotFoundException if the drivers are not loaded
      * @throws SQLException           if there is a problem with the SQL Code
      */
-    public static ResultSet executeQuery3(String actor, String director)
+    public static QueryCursor executeQuery3(String actor, String director)
             throws SQLException, ClassNotFoundException {
-        PreparedStatement statement;
-        Connection connection = InitialiseDB.preparation();
-        statement =
-                connection.prepareStatement(
-                        "SELECT m.plot as 'Plot' FROM Movies m INNER JOIN Cast c ON m.movieID = c.movieID INNER JOIN Actors a ON a.actorID = c.actorID INNER JOIN Director D on D.directorID = m.directorID WHERE a.name = ? AND D.name = ?");
-        statement.setString(1, actor);
-        statement.setString(2, director);
-        return statement.executeQuery();
+        QueryCursor kept = QueryCursor.kept(3, QUERY_3, actor, director);
+
+        if (kept != null) {
+            return kept;
+        }
 
+        NameFilters filters = NameFilters.current();
+        String actorMatch = NameFilters.resolve(filters.getActors(), filters.getActorTrigrams(), actor);
+        String directorMatch =
+                NameFilters.resolve(filters.getDirectors(), filters.getDirectorTrigrams(), director);
 
+        if (actorMatch == null || directorMatch == null) {
+            return QueryCursor.empty("Plot").measured(3);
+        }
+        boolean exact = actorMatch.equals(actor) && directorMatch.equals(director);
+        return (exact ? QueryCursor.fresh(3, QUERY_3, actorMatch, directorMatch)
+                : QueryCursor.cached(3, QUERY_3, actorMatch, directorMatch))
+                .withCorrection(actor, actorMatch)
+                .withCorrection(director, directorMatch);
     }
 
     /**
      * Runs a query which contains the directors of the movies that have a particular actor in them.
+     * Actors that are not in the NameFilters are replaced by the closest name, and the query is not
+     * run if no name is close enough
      *
-     * @return a result set that contains the directors of the movies that have a particular actor in
+     * @return a cursor over the directors of the movies that have a particular actor in
      * them. The actor is inputted using the command line arguments.
      * @throws ClassNotFoundException if the drivers are not loaded
      * @throws SQLException           if there is a problem with the SQL Code
      */
-    public static ResultSet executeQuery4(String actor) throws SQLException, ClassNotFoundException {
-        PreparedStatement statement;
-        Connection connection = InitialiseDB.preparation();
-        statement =
-                connection.prepareStatement(
-                        "SELECT d.name as 'Director', A.name as 'Particular Actor' FROM Director d INNER JOIN main.Movies M on d.directorID = M.directorID INNER JOIN main.Cast C on M.movieID = C.movieID INNER JOIN main.Actors A on A.actorID = C.actorID WHERE A.name = ?");
-        statement.setString(1, actor);
-        return statement.executeQuery();
+    public static QueryCursor executeQuery4(String actor) throws SQLException, ClassNotFoundException {
+        QueryCursor kept = QueryCursor.kept(4, QUERY_4, actor);
+
+        if (kept != null) {
+            return kept;
+        }
 
+        NameFilters filters = NameFilters.current();
+        String match = NameFilters.resolve(filters.getActors(), filters.getActorTrigrams(), actor);
 
+        if (match == null) {
+            return QueryCursor.empty("Director", "Particular Actor").measured(4);
+        }
+        return (match.equals(actor) ? QueryCursor.fresh(4, QUERY_4, match)
+                : QueryCursor.cached(4, QUERY_4, match)).withCorrection(actor, match);
     }
 
     /**
-     * Runs a query which contains the movies directed by a director with more than three movies directed,
-     * who also have a critic from Rotten Tomatoes better than 4 and have been released in a
-     * particular year, while also matching with a particular genre. This is returned in alphabetical
-     * order
+     * Runs a query which contains the movies of a particular genre that have a critic from Rotten
+     * Tomatoes, in alphabetical order
      *
-     * @return a result set that contains the movies directed by a director with more than three movies
-     * directed, who also have a critic from Rotten Tomatoes better than 4
-     * while also matching with a particular genre.
+     * @param genre the name of the genre
+     * @return a cursor over the names of the movies of the genre rated by Rotten Tomatoes
      * @throws ClassNotFoundException if the drivers are not loaded
      * @throws SQLException           if there is a problem with the SQL Code
      */
-    public static ResultSet executeQuery5(String genre)
+    public static QueryCursor executeQuery5(String genre)
             throws SQLException, ClassNotFoundException {
-        PreparedStatement statement;
-        Connection connection = InitialiseDB.preparation();
-        statement =
-                connection.prepareStatement(
-                        "SELECT m.name FROM Movies m INNER JOIN Director D on D.directorID = m.directorID INNER JOIN MoviesWithRatings MWR on m.movieID = MWR.movieID INNER JOIN main.Ratings R on R.criticID = MWR.criticID INNER JOIN main.MoviesWithGenres MWG on m.movieID = MWG.movieID INNER JOIN main.Genres G on G.genreID = MWG.genreID WHERE R.criticSource = ? AND G.GenreName = ?");
-        statement.setString(1, "Rotten Tomatoes");
-        statement.setString(2, genre);
-        return statement.executeQuery();
+        return executeQuery5(genre, DEFAULT_CRITIC_SOURCE);
+    }
+
+    /**
+     * Runs a query which contains the movies of a particular genre that have a critic from a
+     * particular source, in alphabetical order. It is written by MovieQuery, so only the genres and
+     * the ratings are joined. A missing genre or critic source matches no movies, so the query is
+     * not run
+     *
+     * @param genre        the name of the genre
+     * @param criticSource the name of the critic source
+     * @return a cursor over the names of the movies of the genre rated by the critic source
+     * @throws ClassNotFoundException if the drivers are not loaded
+     * @throws SQLException           if there is a problem with the SQL Code
+     */
+    public static QueryCursor executeQuery5(String genre, String criticSource)
+            throws SQLException, ClassNotFoundException {
+        if (genre == null || criticSource == null) {
+            return QueryCursor.empty("Name").measured(5);
+        }
+
+        MovieQuery query = new MovieQuery().genre(genre).criticSource(criticSource);
+        return QueryCursor.cached(5, query.sql(), query.parameters());
+    }
+
+    /**
+     * Runs a query which contains the best rated movies of a particular genre for a critic source,
+     * such as the ten best rated thrillers on IMDb. The ratings are read in order from the index on
+     * the critic source and the rating, so they are not all sorted
+     *
+     * @param genre        the name of the genre
+     * @param criticSource the name of the critic source
+     * @param limit        the maximum amount of movies
+     * @return a cursor over the names, critic sources and ratings of the movies, best rated first
+     * @throws ClassNotFoundException if the drivers are not loaded
+     * @throws SQLException           if there is a problem with the SQL Code
+     */
+    public static QueryCursor executeTopRated(String genre, String criticSource, int limit)
+            throws SQLException, ClassNotFoundException {
+        return new MovieQuery()
+                .genre(genre)
+                .criticSource(criticSource)
+                .orderBy(MovieQuery.Order.BEST_RATED)
+                .limit(limit)
+                .cursor()
+                .measured(5);
+    }
+
+    /**
+     * Runs a full-text search over the titles, plots, cast and directors of the movies. The best
+     * matches come first, and a match in the title counts for more than one in the plot.
+     *
+     * @param search the words to look for, as described in FullTextSearch
+     * @return a cursor over the names and directors of the matching movies, together with the part
+     * of the movie that matched
+     * @throws ClassNotFoundException if the drivers are not loaded
+     * @throws SQLException           if there is a problem with the SQL Code
+     * @throws IllegalArgumentException if the search has no words
+     */
+    public static QueryCursor executeQuery7(String search) throws SQLException, ClassNotFoundException {
+        return QueryCursor.cached(
+                7, QUERY_7, FullTextSearch.expression(search), FullTextSearch.SEARCH_LIMIT);
+    }
+
+    /**
+     * Retrieves everything shown about a movie (its details, director, genres, cast and ratings by
+     * critic source) from the movie_summary table, through a single lookup on the index of the
+     * name
+     *
+     * @param movie the name of the movie
+     * @return a cursor over the summary of the movie, with one row per movie with that name
+     * @throws ClassNotFoundException if the drivers are not loaded
+     * @throws SQLException           if there is a problem with the SQL Code
+     */
+    public static QueryCursor executeQuery8(String movie) throws SQLException, ClassNotFoundException {
+        return QueryCursor.cached(8, QUERY_8, movie);
+    }
+
+    /**
+     * Finds one of the shortest chains of movies that joins two actors, where every two actors next
+     * to each other have been in the same movie. It is answered from the CoStarGraph instead of SQL
+     *
+     * @param actor      the name of the first actor
+     * @param otherActor the name of the second actor
+     * @return a cursor over the steps of the chain, which is empty if the actors are not connected
+     * @throws ClassNotFoundException if the drivers are not loaded
+     * @throws SQLException           if the graph cannot be loaded
+     */
+    public static QueryCursor executeQuery9(String actor, String otherActor)
+            throws SQLException, ClassNotFoundException {
+        return QueryCursor.computed(9, () -> CoStarGraph.current().pathRows(actor, otherActor));
+    }
+
+    /**
+     * Retrieves every actor within a number of movies of an actor, together with how many movies
+     * away they are. It is answered from the CoStarGraph instead of SQL
+     *
+     * @param actor the name of the actor
+     * @param hops  the maximum amount of movies between the actor and the ones retrieved
+     * @return a cursor over the actors that were found, closest first
+     * @throws ClassNotFoundException   if the drivers are not loaded
+     * @throws SQLException             if the graph cannot be loaded
+     * @throws IllegalArgumentException if the amount of hops is negative
+     */
+    public static QueryCursor executeQuery10(String actor, int hops)
+            throws SQLException, ClassNotFoundException {
+        return QueryCursor.computed(10, () -> CoStarGraph.current().neighbourhoodRows(actor, hops));
+    }
+
+    /**
+     * Retrieves the most popular actors, directors and movies whose name starts with a prefix, for
+     * type-ahead lookups. It is answered from the Autocomplete index instead of SQL
+     *
+     * @param prefix the start of the names, in any case
+     * @return a cursor over the names found, most popular first
+     * @throws ClassNotFoundException if the drivers are not loaded
+     * @throws SQLException           if the index cannot be built
+     */
+    public static QueryCursor executeQuery11(String prefix) throws SQLException, ClassNotFoundException {
+        return QueryCursor.computed(
+                11, () -> Autocomplete.current().completionRows(prefix, Autocomplete.DEFAULT_LIMIT));
+    }
+
+    /**
+     * Retrieves the summary of a movie in the same way as executeQuery8, but through the primary key
+     *
+     * @param movieID the ID of the movie
+     * @return a cursor over the summary of the movie, which is empty if there is no such movie
+     * @throws ClassNotFoundException if the drivers are not loaded
+     * @throws SQLException           if there is a problem with the SQL Code
+     */
+    public static QueryCursor executeMovieSummary(long movieID) throws SQLException, ClassNotFoundException {
+        return QueryCursor.open(MOVIE_SUMMARY_BY_ID, movieID);
     }
 
     public static void main(String[] args) {
+        if (QueryMetrics.DUMP_FILE != null) {
+            QueryMetrics.dumpOnShutdown();
+        }
+
         try {
             querying(args);
         } catch (NumberFormatException error) {
@@ -129,33 +327,78 @@ public class QueryDB {
     /**
      * Prints the results of the queries in a human-readable way. It first indicates the entry number
      * (in order of printing, it is not the actual entry number of the table) and then the column name
-     * with its respective value
+     * with its respective value. Other formats can be chosen through the moviesdb.format property,
+     * as described in ResultRenderer
      *
      * @param set the result set returned by the appropriate query
      * @throws SQLException if there is an SQL Code error
      */
     public static void printer(ResultSet set) throws SQLException {
-        int count = 1;
-
         if (resultSetChecker(set)) {
-            while (set.next()) {
-                System.out.println("Entry " + count);
+            try {
+                ResultRenderer.toStandardOutput(ResultRenderer.DEFAULT_FORMAT).render(set);
+            } catch (IOException e) {
+                System.out.println("There has been a problem writing the results. Please try again");
+            }
+        } else {
+            System.out.println("Based on the inputted data, there are no matches. Please try again");
+        }
+    }
 
-                for (int i = 1; i < set.getMetaData().getColumnCount() + 1; i++) {
-                    System.out.println(set.getMetaData().getColumnName(i) + ": " + set.getString(i));
+    /**
+     * Prints the results of one of the queries in the same way as the printer for result sets, and
+     * closes the cursor once everything has been printed, giving its connection back to the pool.
+     * If any name was replaced by a close one before running the query, it is said first.
+     *
+     * @param cursor the cursor returned by the appropriate query
+     * @throws SQLException if there is an SQL Code error
+     */
+    public static void printer(QueryCursor cursor) throws SQLException {
+        for (Map.Entry<String, String> correction : cursor.getCorrections().entrySet()) {
+            System.out.println("No exact match for \"" + correction.getKey()
+                    + "\". Showing results for \"" + correction.getValue() + "\"");
+        }
+
+        try (cursor) {
+            cursor.render(set -> {
+                printer(set);
+                return null;
+            });
+        }
+    }
+
+    /**
+     * Prints the rows of a paged query in the same way as the printer for result sets, page by page.
+     * The last column of every row is the key of the pagination, so it is not printed.
+     *
+     * @param pages the paged query, which has not been read yet
+     * @throws ClassNotFoundException if the drivers are not loaded
+     * @throws SQLException           if there is an SQL Code error
+     */
+    public static void printer(PagedQuery pages) throws ClassNotFoundException, SQLException {
+        ResultRenderer renderer = ResultRenderer.toStandardOutput(ResultRenderer.DEFAULT_FORMAT);
+
+        try {
+            pages.forEachRow(set -> {
+                try {
+                    renderer.row(set, set.getMetaData().getColumnCount() - 1);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
                 }
+            });
 
-                count++;
+            if (renderer.finish() == 0) {
+                System.out.println("Based on the inputted data, there are no matches. Please try again");
             }
-        } else {
-            System.out.println("Based on the inputted data, there are no matches. Please try again");
+        } catch (IOException | UncheckedIOException e) {
+            System.out.println("There has been a problem writing the results. Please try again");
         }
     }
 
     /**
      * Based on the values of elements inside the array, it runs certain queries. Using those
      * elements, it also fills out the values for queries that require input such as queries 2,3,4 and
-     * 5
+     * 5. The state of the database is taken from the DatabaseCatalog, so it is not read on every call
      *
      * @param array can handle any array, but ideally it is going to be used for the Args[] array of
      *              the main method
@@ -163,7 +406,7 @@ public class QueryDB {
     public static void querying(String[] array) throws SQLException, ClassNotFoundException {
         int parameter = 0;
 
-        if (!InitialiseDB.emptyDBChecker() && populatedTableChecker()) {
+        if (DatabaseCatalog.isPopulated()) {
             try {
                 if (array.length < 1) {
                     System.out.println("There is no args parameter. Please try again");
@@ -180,7 +423,7 @@ public class QueryDB {
                 case 1:
                     try {
                         if (array.length == 1) {
-                            printer(executeQuery1());
+                            printer(pageQuery1(PagedQuery.DEFAULT_PAGE_SIZE, 0));
                         } else {
                             System.out.println("Incorrect number of arguments");
                         }
@@ -245,6 +488,8 @@ public class QueryDB {
                     try {
                         if (array.length == 2) {
                             printer(executeQuery5(array[1]));
+                        } else if (array.length == 3) {
+                            printer(executeQuery5(array[1], array[2]));
                         } else {
                             System.out.println("Incorrect number of arguments");
                         }
@@ -274,14 +519,198 @@ public class QueryDB {
                     }
                     break;
 
+                case 7:
+                    try {
+                        if (array.length == 2) {
+                            printer(executeQuery7(array[1]));
+                        } else {
+                            System.out.println("Incorrect number of arguments");
+                        }
+                    } catch (SQLException e) {
+                        System.out.println(
+                                "SQL Code Error has been detected. Please try again with fixed code");
+                    } catch (ClassNotFoundException e) {
+                        System.out.println("There has been a problem loading the drivers. Please try again");
+                    } catch (IllegalArgumentException e) {
+                        System.out.println(e.getMessage());
+                    }
+                    break;
+
+                case 8:
+                    try {
+                        if (array.length == 2) {
+                            printer(executeQuery8(array[1]));
+                        } else {
+                            System.out.println("Incorrect number of arguments");
+                        }
+                    } catch (SQLException e) {
+                        System.out.println(
+                                "SQL Code Error has been detected. Please try again with fixed code");
+                    } catch (ClassNotFoundException e) {
+                        System.out.println("There has been a problem loading the drivers. Please try again");
+                    }
+                    break;
+
+                case 9:
+                    try {
+                        if (array.length == 3) {
+                            printer(executeQuery9(array[1], array[2]));
+                        } else {
+                            System.out.println("Incorrect number of arguments");
+                        }
+                    } catch (SQLException e) {
+                        System.out.println(
+                                "SQL Code Error has been detected. Please try again with fixed code");
+                    } catch (ClassNotFoundException e) {
+                        System.out.println("There has been a problem loading the drivers. Please try again");
+                    }
+                    break;
+
+                case 10:
+                    try {
+                        if (array.length == 3) {
+                            printer(executeQuery10(array[1], Integer.parseInt(array[2])));
+                        } else {
+                            System.out.println("Incorrect number of arguments");
+                        }
+                    } catch (SQLException e) {
+                        System.out.println(
+                                "SQL Code Error has been detected. Please try again with fixed code");
+                    } catch (ClassNotFoundException e) {
+                        System.out.println("There has been a problem loading the drivers. Please try again");
+                    } catch (NumberFormatException error) {
+                        System.out.println("Argument 2 is not an integer. Please try again");
+                    } catch (IllegalArgumentException e) {
+                        System.out.println(e.getMessage());
+                    }
+                    break;
+
+                case 11:
+                    try {
+                        if (array.length == 2) {
+                            printer(executeQuery11(array[1]));
+                        } else {
+                            System.out.println("Incorrect number of arguments");
+                        }
+                    } catch (SQLException e) {
+                        System.out.println(
+                                "SQL Code Error has been detected. Please try again with fixed code");
+                    } catch (ClassNotFoundException e) {
+                        System.out.println("There has been a problem loading the drivers. Please try again");
+                    }
+                    break;
+
                 default:
-                    System.out.println("The value is not recognised. Please try with a number between 1-6");
+                    System.out.println("The value is not recognised. Please try with a number between 1-" + QUERY_COUNT);
             }
         } else {
             System.out.println("The table has not been populated. Please try again");
         }
     }
 
+    /**
+     * Standard getter for the cache that keeps the results of queries 2 to 8. Query 1 is not kept,
+     * since it lists the whole Movies table, and queries 9 to 11 are worked out from the
+     * CoStarGraph and the Autocomplete index, which are kept on their own.
+     *
+     * @return the cache of the query results
+     */
+    public static QueryCache getQueryCache() {
+        return queryCache;
+    }
+
+    /**
+     * Runs one of the queries with its parameters given in order, in the same way as the arguments
+     * of querying after the number of the query. As in querying, query 5 takes the critic source as
+     * an optional second parameter
+     *
+     * @param queryID    the number of the query, between 1 and 11
+     * @param parameters the parameters of the query
+     * @return the cursor of the query
+     * @throws ClassNotFoundException   if the drivers are not loaded
+     * @throws SQLException             if there is a problem with the SQL Code
+     * @throws IllegalArgumentException if the query does not exist or the number of parameters is
+     *                                  wrong
+     */
+    public static QueryCursor execute(int queryID, String... parameters)
+            throws SQLException, ClassNotFoundException {
+        int expected = switch (queryID) {
+            case 1, 6 -> 0;
+            case 2, 4, 5, 7, 8, 11 -> 1;
+            case 3, 9, 10 -> 2;
+            default -> throw new IllegalArgumentException(
+                    "The value is not recognised. Please try with a number between 1-" + QUERY_COUNT);
+        };
+
+        boolean criticSource = queryID == 5 && parameters.length == 2;
+
+        if (parameters.length != expected && !criticSource) {
+            throw new IllegalArgumentException("Incorrect number of arguments");
+        }
+
+        return switch (queryID) {
+            case 1 -> executeQuery1();
+            case 2 -> executeQuery2(parameters[0]);
+            case 3 -> executeQuery3(parameters[0], parameters[1]);
+            case 4 -> executeQuery4(parameters[0]);
+            case 5 -> criticSource
+                    ? executeQuery5(parameters[0], parameters[1])
+                    : executeQuery5(parameters[0]);
+            case 6 -> executeQuery6();
+            case 7 -> executeQuery7(parameters[0]);
+            case 8 -> executeQuery8(parameters[0]);
+            case 9 -> executeQuery9(parameters[0], parameters[1]);
+            case 10 -> executeQuery10(parameters[0], Integer.parseInt(parameters[1]));
+            default -> executeQuery11(parameters[0]);
+        };
+    }
+
+    /**
+     * Returns the SQL Code run by one of the queries, without its parameters filled out
+     *
+     * @param queryID the number of the query, between 1 and 11
+     * @return the SQL Code of the query
+     */
+    public static String querySQL(int queryID) {
+        return switch (queryID) {
+            case 1 -> QUERY_1;
+            case 2 -> QUERY_2;
+            case 3 -> QUERY_3;
+            case 4 -> QUERY_4;
+            case 5 -> QUERY_5;
+            case 6 -> QUERY_6;
+            case 7 -> QUERY_7;
+            case 8 -> QUERY_8;
+            case 9, 10, 11 -> throw new IllegalArgumentException(
+                    "Query " + queryID + " is answered in memory and has no SQL Code");
+            default -> throw new IllegalArgumentException(
+                    "The value is not recognised. Please try with a number between 1-" + QUERY_COUNT);
+        };
+    }
+
+    /**
+     * Asks SQLite how it is going to run one of the queries through EXPLAIN QUERY PLAN. Each step of
+     * the plan says if a table is going to be read completely (SCAN) or through an index (SEARCH).
+     *
+     * @param queryID    the number of the query, between 1 and 11
+     * @param parameters the values of the parameters of the query. They do not change the plan, but
+     *                   they have to be given
+     * @return the steps of the plan in the order SQLite gives them
+     * @throws ClassNotFoundException if the drivers are not loaded
+     * @throws SQLException           if there is a problem with the SQL Code
+     */
+    public static List<String> explainQueryPlan(int queryID, Object... parameters)
+            throws ClassNotFoundException, SQLException {
+        List<String> plan = new ArrayList<>();
+
+        try (QueryCursor cursor = QueryCursor.open("EXPLAIN QUERY PLAN " + querySQL(queryID), parameters)) {
+            while (cursor.next()) {
+                plan.add(cursor.getResultSet().getString("detail"));
+            }
+        }
+        return plan;
+    }
+
     /**
      * Makes sure that the retrieved result set is not empty. This code was sourced from: //<a
      * href="https://stackoverflow.com/questions/867194/java-resultset-how-to-check-if-there-are-any-results">...</a>
@@ -296,28 +725,31 @@ public class QueryDB {
 
     /**
      * <p>
-     * Retrieves the average age of winners of all of the awards that can be won by an actor
+     * Retrieves the average age of winners of all of the awards that can be won by an actor. It is
+     * read from the totals kept in the award_age_summary table, one row per institution
      * </p>
      *
-     * @return a result set object containing average age of winners of all of the awards that can be won by an actor
+     * @return a cursor over average age of winners of all of the awards that can be won by an actor
      * @throws SQLException           if there are any issues with the database
      * @throws ClassNotFoundException if the drivers have not been loaded
      */
 
-    public static ResultSet executeQuery6() throws SQLException,
+    public static QueryCursor executeQuery6() throws SQLException,
             ClassNotFoundException {
-        Connection connection = InitialiseDB.preparation();
-        PreparedStatement statement =
-                connection.prepareStatement("SELECT ROUND(AVG(a.age)) as 'Average Age', A2.awardInstitution as 'Award Institution', A2.motive as 'Motive' " +
-                        "FROM Actors a " +
-                        "INNER JOIN main.awardWinningActor aWA on a.actorID = aWA.actorID " +
-                        "INNER JOIN main.Awards A2 on A2.awardID = aWA.awardID GROUP BY awardInstitution");
-        return statement.executeQuery();
+        return QueryCursor.cached(6, QUERY_6);
     }
+    /**
+     * Checks if the Actors table has any entries, which is used to know if the database has already
+     * been populated.
+     *
+     * @return true if the table has entries and false if it does not
+     * @throws SQLException           if there is a problem with the database
+     * @throws ClassNotFoundException if the drivers have not been loaded
+     */
     public static boolean populatedTableChecker() throws SQLException, ClassNotFoundException {
 
         try (Connection conn = InitialiseDB.preparation()){
-            return resultSetChecker(conn.createStatement().executeQuery("SELECT * FROM Actors"));
+            return populatedTableChecker(conn);
         } catch (ClassNotFoundException e) {
             throw new ClassNotFoundException();
         } catch (SQLException e) {
@@ -326,4 +758,19 @@ public class QueryDB {
 
 
     }
+
+    /**
+     * Checks if the Actors table has any entries using a connection that is already open. Only the
+     * first row is read.
+     *
+     * @param conn an open connection to the database
+     * @return true if the table has entries and false if it does not
+     * @throws SQLException if there is a problem with the database
+     */
+    public static boolean populatedTableChecker(Connection conn) throws SQLException {
+        try (Statement statement = conn.createStatement();
+             ResultSet set = statement.executeQuery("SELECT 1 FROM Actors LIMIT 1")) {
+            return resultSetChecker(set);
+        }
+    }
 }
@@ -0,0 +1,149 @@
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import javax.sql.rowset.CachedRowSet;
+import javax.sql.rowset.RowSetFactory;
+import javax.sql.rowset.RowSetProvider;
+
+/**
+ * Runs many queries of QueryDB at the same time. Every query runs on its own task (a virtual
+ * thread when the JVM supports them) and borrows a connection from the pool of read-only
+ * connections, so with the database in WAL mode the queries do not block each other or a
+ * population running in the background. The rows of each query are read completely on its task
+ * and handed back as a disconnected row set, so the connection is given back straight away.
+ *
+ * <p>The amount of queries running at once is limited to the size of the pool of readers. The rest
+ * wait for a permit on their task instead of timing out in the pool. On Java 21 onwards a waiting
+ * task is a virtual thread, which gives its platform thread back while it waits. On older JVMs,
+ * such as the Java 17 this project targets, the tasks share a fixed pool of platform threads, and
+ * every waiting query blocks one of them until a permit is free.
+ *
+ * @author 230018374
+ */
+public class QueryExecutor implements AutoCloseable {
+  private final ExecutorService executor;
+  private final Semaphore permits;
+  private final RowSetFactory rowSets;
+
+  /**
+   * Creates an executor that runs as many queries at once as there are connections in the pool
+   * of readers
+   *
+   * @throws ClassNotFoundException if the drivers could not be loaded
+   * @throws SQLException if the row sets cannot be created
+   */
+  public QueryExecutor() throws ClassNotFoundException, SQLException {
+    this(InitialiseDB.getReadPool().getMaxSize());
+  }
+
+  /**
+   * Creates an executor that runs up to the passed amount of queries at once
+   *
+   * @param parallelism the maximum amount of queries running at the same time
+   * @throws SQLException if the row sets cannot be created
+   */
+  public QueryExecutor(int parallelism) throws SQLException {
+    if (parallelism < 1) {
+      throw new IllegalArgumentException("At least one query has to be able to run");
+    }
+
+    this.executor = QueryServer.taskExecutor();
+    this.permits = new Semaphore(parallelism, true);
+    this.rowSets = RowSetProvider.newFactory();
+  }
+
+  /**
+   * Starts running a query in the background
+   *
+   * @param queryID the number of the query
+   * @param parameters the parameters of the query, in the same order as QueryDB.execute takes them
+   * @return the future rows of the query. It fails with the SQLException, ClassNotFoundException
+   *     or IllegalArgumentException thrown by the query
+   */
+  public CompletableFuture<CachedRowSet> submit(int queryID, String... parameters) {
+    return CompletableFuture.supplyAsync(
+        () -> {
+          try {
+            permits.acquire();
+          } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CompletionException(e);
+          }
+
+          try (QueryCursor cursor = QueryDB.execute(queryID, parameters)) {
+            CachedRowSet rows = rowSets.createCachedRowSet();
+            rows.populate(cursor.getResultSet());
+            return rows;
+          } catch (SQLException | ClassNotFoundException e) {
+            throw new CompletionException(e);
+          } finally {
+            permits.release();
+          }
+        },
+        executor);
+  }
+
+  /**
+   * Runs every command at the same time and waits for all of them to finish
+   *
+   * @param commands the commands, each one with the number of the query followed by its parameters
+   * @return the rows of every command, in the same order as the commands
+   * @throws SQLException if any of the queries fails
+   * @throws ClassNotFoundException if the drivers have not been loaded
+   */
+  public List<CachedRowSet> runAll(List<String[]> commands)
+      throws SQLException, ClassNotFoundException {
+    List<CompletableFuture<CachedRowSet>> futures = new ArrayList<>(commands.size());
+
+    for (String[] command : commands) {
+      String[] parameters = new String[command.length - 1];
+      System.arraycopy(command, 1, parameters, 0, parameters.length);
+      futures.add(submit(Integer.parseInt(command[0]), parameters));
+    }
+
+    List<CachedRowSet> results = new ArrayList<>(futures.size());
+
+    for (CompletableFuture<CachedRowSet> future : futures) {
+      try {
+        results.add(future.get());
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new SQLException("Interrupted while waiting for the queries");
+      } catch (ExecutionException e) {
+        if (e.getCause() instanceof SQLException cause) {
+          throw cause;
+        } else if (e.getCause() instanceof ClassNotFoundException cause) {
+          throw cause;
+        } else if (e.getCause() instanceof RuntimeException cause) {
+          throw cause;
+        }
+        throw new SQLException(e.getCause());
+      }
+    }
+
+    return results;
+  }
+
+  /**
+   * Stops accepting queries and waits for the ones that are running to finish
+   */
+  @Override
+  public void close() {
+    executor.shutdown();
+
+    try {
+      if (!executor.awaitTermination(ConnectionPool.DEFAULT_TIMEOUT, TimeUnit.MILLISECONDS)) {
+        executor.shutdownNow();
+      }
+    } catch (InterruptedException e) {
+      executor.shutdownNow();
+      Thread.currentThread().interrupt();
+    }
+  }
+}
@@ -0,0 +1,317 @@
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.Instant;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Latencies of the queries of QueryDB, with a histogram per query and phase, and a log of the
+ * slowest calls. The phases of a call are:
+ *
+ * <ul>
+ *   <li>CONNECT: borrowing a read-only connection from the pool
+ *   <li>EXECUTE: preparing the statement and running it until the first row is ready, or working
+ *       out the rows in memory for the queries answered by CoStarGraph and Autocomplete
+ *   <li>FETCH: moving through the rows
+ *   <li>RENDER: turning the rows into text, without the time spent fetching them
+ * </ul>
+ *
+ * <p>A call only has the phases it went through, so a result kept by the QueryCache has no
+ * CONNECT or EXECUTE. The pages read by a PagedQuery are kept in histograms of their own, apart
+ * from the calls of the same query, since a page only reads part of the rows. Every call or page
+ * whose phases add up to more than SLOW_THRESHOLD_MS is kept in the slow query log with its
+ * parameters and the plan SQLite gives for it, read again right after the call. Only the last
+ * SLOW_LOG_SIZE of them are kept.
+ *
+ * <p>The report can be read at any time through report, and it is written when the JVM stops if
+ * dumpOnShutdown has been called: to the file in the moviesdb.metrics.dump property if there is
+ * one, and to the standard output otherwise.
+ *
+ * @author 230018374
+ */
+public class QueryMetrics {
+  /** Phases of a call to a query, in the order they happen. */
+  public enum Phase {
+    CONNECT,
+    EXECUTE,
+    FETCH,
+    RENDER
+  }
+
+  /** Total latency in milliseconds above which a call is logged, set with moviesdb.slow.ms. */
+  public static final long SLOW_THRESHOLD_MS = Long.getLong("moviesdb.slow.ms", 200);
+
+  /** Amount of slow calls kept in the log, set with moviesdb.slow.log. */
+  public static final int SLOW_LOG_SIZE = Integer.getInteger("moviesdb.slow.log", 50);
+
+  /** File the report is written to when the JVM stops, set with moviesdb.metrics.dump. */
+  public static final String DUMP_FILE = System.getProperty("moviesdb.metrics.dump");
+
+  private static final LatencyHistogram[][] histograms =
+      new LatencyHistogram[QueryDB.QUERY_COUNT + 1][Phase.values().length];
+  private static final LatencyHistogram[][] pageHistograms =
+      new LatencyHistogram[QueryDB.QUERY_COUNT + 1][Phase.values().length];
+  private static final Deque<String> slowLog = new ArrayDeque<>();
+  private static boolean dumpRegistered;
+
+  static {
+    for (int queryID = 0; queryID <= QueryDB.QUERY_COUNT; queryID++) {
+      for (int i = 0; i < Phase.values().length; i++) {
+        histograms[queryID][i] = new LatencyHistogram();
+        pageHistograms[queryID][i] = new LatencyHistogram();
+      }
+    }
+  }
+
+  private QueryMetrics() {}
+
+  /**
+   * Records the phases of one call to a query, and logs it if it has been slow
+   *
+   * @param queryID the number of the query, between 1 and QUERY_COUNT
+   * @param nanos the latency of every phase in nanoseconds, indexed by Phase. Phases the call did
+   *     not go through are negative
+   * @param sql the SQL Code of the query, or null if it was answered in memory
+   * @param parameters the values of the placeholders of the SQL Code
+   */
+  public static void record(int queryID, long[] nanos, String sql, Object[] parameters) {
+    record(histograms, "query " + queryID, queryID, nanos, sql, parameters);
+  }
+
+  /**
+   * Records the phases of one page of a query read by a PagedQuery, and logs it if it has been
+   * slow. Pages are kept apart from the calls given to record.
+   *
+   * @param queryID the number of the query, between 1 and QUERY_COUNT
+   * @param nanos the latency of every phase in nanoseconds, indexed by Phase. Phases the page did
+   *     not go through are negative
+   * @param sql the SQL Code of the page
+   * @param parameters the values of the placeholders of the SQL Code
+   */
+  public static void recordPage(int queryID, long[] nanos, String sql, Object[] parameters) {
+    record(pageHistograms, "query " + queryID + " page", queryID, nanos, sql, parameters);
+  }
+
+  /**
+   * Standard getter for the histogram of a phase of a query
+   *
+   * @param queryID the number of the query, between 1 and QUERY_COUNT
+   * @param phase the phase
+   * @return the histogram of the latencies of that phase
+   */
+  public static LatencyHistogram getHistogram(int queryID, Phase phase) {
+    return histograms[queryID][phase.ordinal()];
+  }
+
+  /**
+   * Standard getter for the histogram of a phase of the pages of a query
+   *
+   * @param queryID the number of the query, between 1 and QUERY_COUNT
+   * @param phase the phase
+   * @return the histogram of the latencies of that phase for every page read
+   */
+  public static LatencyHistogram getPageHistogram(int queryID, Phase phase) {
+    return pageHistograms[queryID][phase.ordinal()];
+  }
+
+  /**
+   * Gives the slow calls that are still in the log
+   *
+   * @return one entry per slow call, oldest first
+   */
+  public static List<String> getSlowLog() {
+    synchronized (slowLog) {
+      return new ArrayList<>(slowLog);
+    }
+  }
+
+  /**
+   * Gives a one line summary of every phase of every query that has been called, followed by the
+   * pages that have been read
+   *
+   * @return a string with the count, percentiles and maximum of every histogram that is not empty
+   */
+  public static String getMetrics() {
+    List<String> parts = new ArrayList<>();
+    addMetrics(parts, histograms, ".");
+    addMetrics(parts, pageHistograms, ".page.");
+    return parts.isEmpty() ? "none" : String.join("; ", parts);
+  }
+
+  /**
+   * Writes the histograms of every query that has been called, followed by the slow query log
+   *
+   * @param out where the report is written
+   * @throws IOException if the report cannot be written
+   */
+  public static void report(Appendable out) throws IOException {
+    String newline = System.lineSeparator();
+    out.append("Query latencies").append(newline);
+
+    for (int queryID = 1; queryID <= QueryDB.QUERY_COUNT; queryID++) {
+      for (Phase phase : Phase.values()) {
+        LatencyHistogram histogram = histograms[queryID][phase.ordinal()];
+
+        if (histogram.getCount() > 0) {
+          out.append(String.format("  query %-2d %-7s %s", queryID, phase, histogram.getMetrics()))
+              .append(newline);
+        }
+      }
+    }
+
+    for (int queryID = 1; queryID <= QueryDB.QUERY_COUNT; queryID++) {
+      for (Phase phase : Phase.values()) {
+        LatencyHistogram histogram = pageHistograms[queryID][phase.ordinal()];
+
+        if (histogram.getCount() > 0) {
+          String line =
+              String.format("  query %-2d page %-7s %s", queryID, phase, histogram.getMetrics());
+          out.append(line).append(newline);
+        }
+      }
+    }
+
+    List<String> slow = getSlowLog();
+    out.append("Slow queries (over ").append(SLOW_THRESHOLD_MS + " ms): ")
+        .append(slow.size() + "").append(newline);
+
+    for (String entry : slow) {
+      out.append(entry).append(newline);
+    }
+  }
+
+  /**
+   * Makes the report be written when the JVM stops, to the file in DUMP_FILE or to the standard
+   * output if there is none. Calling it more than once does nothing.
+   */
+  public static synchronized void dumpOnShutdown() {
+    if (dumpRegistered) {
+      return;
+    }
+    dumpRegistered = true;
+    Runtime.getRuntime().addShutdownHook(new Thread(QueryMetrics::dump));
+  }
+
+  private static void dump() {
+    try {
+      if (DUMP_FILE != null) {
+        try (Writer writer = Files.newBufferedWriter(Path.of(DUMP_FILE), StandardCharsets.UTF_8)) {
+          report(writer);
+        }
+      } else {
+        PrintStream out = System.out;
+        report(out);
+        out.flush();
+      }
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  private static void record(
+      LatencyHistogram[][] kind,
+      String label,
+      int queryID,
+      long[] nanos,
+      String sql,
+      Object[] parameters) {
+    if (queryID < 1 || queryID > QueryDB.QUERY_COUNT) {
+      return;
+    }
+
+    long total = 0;
+
+    for (Phase phase : Phase.values()) {
+      if (nanos[phase.ordinal()] >= 0) {
+        kind[queryID][phase.ordinal()].record(nanos[phase.ordinal()]);
+        total += nanos[phase.ordinal()];
+      }
+    }
+
+    if (total >= SLOW_THRESHOLD_MS * 1_000_000) {
+      logSlow(label, nanos, total, sql, parameters);
+    }
+  }
+
+  private static void logSlow(
+      String label, long[] nanos, long total, String sql, Object[] parameters) {
+    StringBuilder entry =
+        new StringBuilder(
+            String.format("  %s %s took %.3f ms (", Instant.now(), label, total / 1_000_000.0));
+
+    for (Phase phase : Phase.values()) {
+      if (nanos[phase.ordinal()] >= 0) {
+        entry.append(entry.charAt(entry.length() - 1) == '(' ? "" : ", ")
+            .append(name(phase))
+            .append(String.format(" %.3f ms", nanos[phase.ordinal()] / 1_000_000.0));
+      }
+    }
+    entry.append(") with ").append(Arrays.toString(parameters));
+
+    for (String step : plan(sql, parameters)) {
+      entry.append(System.lineSeparator()).append("    ").append(step);
+    }
+
+    synchronized (slowLog) {
+      if (slowLog.size() == SLOW_LOG_SIZE) {
+        slowLog.removeFirst();
+      }
+      slowLog.addLast(entry.toString());
+    }
+  }
+
+  private static void addMetrics(List<String> parts, LatencyHistogram[][] kind, String separator) {
+    for (int queryID = 1; queryID <= QueryDB.QUERY_COUNT; queryID++) {
+      for (Phase phase : Phase.values()) {
+        LatencyHistogram histogram = kind[queryID][phase.ordinal()];
+
+        if (histogram.getCount() > 0) {
+          parts.add("query" + queryID + separator + name(phase) + ": " + histogram.getMetrics());
+        }
+      }
+    }
+  }
+
+  private static String name(Phase phase) {
+    return phase.name().toLowerCase(Locale.ROOT);
+  }
+
+  // Reads the plan straight from a connection, so looking it up is not measured itself
+  private static List<String> plan(String sql, Object[] parameters) {
+    List<String> plan = new ArrayList<>();
+
+    if (sql == null) {
+      plan.add("answered in memory");
+      return plan;
+    }
+
+    try (Connection conn = InitialiseDB.readPreparation();
+        PreparedStatement statement = conn.prepareStatement("EXPLAIN QUERY PLAN " + sql)) {
+      for (int i = 0; i < parameters.length; i++) {
+        statement.setObject(i + 1, parameters[i]);
+      }
+
+      try (ResultSet rs = statement.executeQuery()) {
+        while (rs.next()) {
+          plan.add(rs.getString("detail"));
+        }
+      }
+    } catch (SQLException | ClassNotFoundException e) {
+      plan.add("plan not available: " + e.getMessage());
+    }
+    return plan;
+  }
+}
@@ -0,0 +1,464 @@
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Resident server that answers the queries of QueryDB over HTTP, so that a single JVM keeps
+ * the drivers loaded and the pooled connections and prepared statements open between queries.
+ * It is built on the HTTP server that comes with the JDK. Every query is reached through
+ * /query/{number}, with its parameters given by name, and the results are returned as JSON:
+ *
+ * <pre>
+ *   GET /query/1?after=100&amp;limit=50
+ *   GET /query/2?movie=The Dark Knight
+ *   GET /query/3?actor=Cillian Murphy&amp;director=Christopher Nolan
+ *   GET /query/4?actor=Cillian Murphy
+ *   GET /query/5?genre=Action
+ *   GET /query/5?genre=Action&amp;critic=IMDb&amp;minRating=4&amp;from=1990&amp;to=2010
+ *   GET /query/5?genre=Thriller&amp;critic=IMDb&amp;sort=best&amp;limit=10
+ *   GET /query/6
+ *   GET /query/7?search=director:nolan dark*
+ *   GET /query/8?movie=The Dark Knight
+ *   GET /query/9?actor=Cillian Murphy&amp;other=Christian Bale
+ *   GET /query/10?actor=Cillian Murphy&amp;hops=2
+ *   GET /query/11?prefix=chr
+ *   GET /metrics
+ * </pre>
+ *
+ * <p>Query 1 lists every movie, so it is answered one page at a time. Its response also has a
+ * "next" value, which is passed as the after parameter to get the following page, and is null
+ * once the last page has been sent.
+ *
+ * <p>Query 5 also takes any of the filters of MovieQuery: critic, minRating, maxRating, from and to
+ * (years), actor and director. The critic is Rotten Tomatoes if it is not given. The rows can be
+ * sorted by rating with sort=best or sort=worst, and cut with limit. Only the plain query, with
+ * the genre and the critic alone, is kept in the QueryCache.
+ *
+ * <p>/metrics gives the state of the pools, the cache and the filters, the latency histograms of
+ * every query that has been called and the slow query log kept by QueryMetrics. The latencies are
+ * also written out when the server stops.
+ *
+ * <p>The state of the database is only checked once, when the server starts, and the Autocomplete
+ * index is built at the same time so the first type-ahead lookup does not wait for it.
+ *
+ * @author 230018374
+ */
+public class QueryServer {
+  /** Port used if none is passed through the command line arguments. */
+  public static final int DEFAULT_PORT = 8080;
+
+  private static final Set<String> PLAIN_QUERY_5 = Set.of("genre", "critic");
+
+  private final HttpServer server;
+  private final ExecutorService executor;
+
+  /**
+   * Creates the server and its handlers. It does not accept requests until it is started.
+   *
+   * @param port the port the server listens on. 0 picks any free port
+   * @throws IOException if the server cannot be bound to the port
+   */
+  public QueryServer(int port) throws IOException {
+    server = HttpServer.create(new InetSocketAddress(port), 0);
+    executor = taskExecutor();
+    server.createContext("/query/", this::handleQuery);
+    server.createContext("/metrics", this::handleMetrics);
+    server.setExecutor(executor);
+  }
+
+  public static void main(String[] args) {
+    int port;
+
+    try {
+      port = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_PORT;
+    } catch (NumberFormatException e) {
+      System.out.println("The port has to be a number. Please try again");
+      return;
+    }
+
+    try {
+      if (!DatabaseCatalog.isPopulated()) {
+        System.out.println("The table has not been populated. Please try again");
+        return;
+      }
+
+      Autocomplete.current();
+      QueryServer queryServer = new QueryServer(port);
+      Runtime.getRuntime().addShutdownHook(new Thread(() -> queryServer.stop(1)));
+      QueryMetrics.dumpOnShutdown();
+      queryServer.start();
+      System.out.println("Listening on port " + queryServer.getPort());
+    } catch (SQLException e) {
+      System.out.println("There has been a problem with the database during population validation. Please try again");
+    } catch (ClassNotFoundException e) {
+      System.out.println("The drivers have not been initialised");
+    } catch (IOException e) {
+      System.out.println("The server could not be started on port " + port + ". Please try again");
+    }
+  }
+
+  /**
+   * Starts accepting requests in the background
+   */
+  public void start() {
+    server.start();
+  }
+
+  /**
+   * Stops accepting requests and waits for the ones that are running to finish
+   *
+   * @param delay the maximum amount of seconds to wait for the running requests
+   */
+  public void stop(int delay) {
+    server.stop(delay);
+    executor.shutdown();
+  }
+
+  /**
+   * Standard getter for the port the server is listening on
+   *
+   * @return the port of the server
+   */
+  public int getPort() {
+    return server.getAddress().getPort();
+  }
+
+  /**
+   * Creates the executor that runs the requests. Every request gets a virtual thread when the JVM
+   * supports them (Java 21 onwards). Otherwise, requests share a pool of platform threads.
+   *
+   * @return the executor for the requests
+   */
+  public static ExecutorService taskExecutor() {
+    try {
+      return (ExecutorService)
+          Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+    } catch (ReflectiveOperationException e) {
+      return Executors.newFixedThreadPool(
+          Math.max(ConnectionPool.DEFAULT_SIZE, Runtime.getRuntime().availableProcessors() * 2));
+    }
+  }
+
+  /**
+   * Reads the number of the query from the path of a request
+   *
+   * @param path the path of the request, which starts with /query/
+   * @return the number of the query, or 0 if the rest of the path is not a number
+   */
+  private static int queryID(String path) {
+    try {
+      return Integer.parseInt(path.substring("/query/".length()));
+    } catch (NumberFormatException e) {
+      return 0;
+    }
+  }
+
+  private void handleQuery(HttpExchange exchange) throws IOException {
+    try (exchange) {
+      if (!exchange.getRequestMethod().equals("GET")) {
+        sendError(exchange, 405, "Only GET requests are accepted");
+        return;
+      }
+
+      int queryID = queryID(exchange.getRequestURI().getPath());
+
+      if (queryID < 1 || queryID > QueryDB.QUERY_COUNT) {
+        sendError(exchange, 404, "The query has to be a number between 1-" + QueryDB.QUERY_COUNT);
+        return;
+      }
+
+      Map<String, String> parameters = parameters(exchange.getRequestURI().getRawQuery());
+
+      if (queryID == 1) {
+        handlePage(exchange, parameters);
+        return;
+      }
+
+      try (QueryCursor cursor = execute(queryID, parameters)) {
+        send(exchange, 200, cursor.render(set -> toJSON(queryID, cursor)));
+      } catch (IllegalArgumentException e) {
+        sendError(exchange, 400, e.getMessage());
+      } catch (SQLException e) {
+        sendError(exchange, 500, "SQL Code Error has been detected. Please try again with fixed code");
+      } catch (ClassNotFoundException e) {
+        sendError(exchange, 500, "There has been a problem loading the drivers. Please try again");
+      }
+    }
+  }
+
+  private static void handlePage(HttpExchange exchange, Map<String, String> parameters)
+      throws IOException {
+    PagedQuery pages;
+
+    try {
+      pages =
+          QueryDB.pageQuery1(
+              Integer.parseInt(parameters.getOrDefault("limit", "" + PagedQuery.DEFAULT_PAGE_SIZE)),
+              Long.parseLong(parameters.getOrDefault("after", "0")));
+    } catch (IllegalArgumentException e) {
+      sendError(exchange, 400, "The after and limit parameters have to be positive numbers");
+      return;
+    }
+
+    StringBuilder json = new StringBuilder("{\"query\":1,\"rows\":[");
+    String[][] names = new String[1][];
+
+    try {
+      pages.nextPage(
+          row -> {
+            if (names[0] == null) {
+              names[0] = columnNames(row, row.getMetaData().getColumnCount() - 1);
+            }
+            appendRow(json, row, names[0]);
+          });
+    } catch (SQLException e) {
+      sendError(exchange, 500, "SQL Code Error has been detected. Please try again with fixed code");
+      return;
+    } catch (ClassNotFoundException e) {
+      sendError(exchange, 500, "There has been a problem loading the drivers. Please try again");
+      return;
+    }
+
+    json.append("],\"next\":").append(pages.hasNext() ? pages.getLastKey() + "" : "null");
+    send(exchange, 200, json.append('}').toString());
+  }
+
+  private void handleMetrics(HttpExchange exchange) throws IOException {
+    try (exchange) {
+      String metrics;
+      String readMetrics;
+
+      try {
+        metrics = InitialiseDB.getConnectionPool().getMetrics();
+        readMetrics = InitialiseDB.getReadPool().getMetrics();
+      } catch (ClassNotFoundException e) {
+        sendError(exchange, 500, "There has been a problem loading the drivers. Please try again");
+        return;
+      }
+
+      List<String> slowQueries =
+          QueryMetrics.getSlowLog().stream().map(QueryServer::jsonString).toList();
+      send(
+          exchange,
+          200,
+          "{\"pool\":"
+              + jsonString(metrics)
+              + ",\"readPool\":"
+              + jsonString(readMetrics)
+              + ",\"cache\":"
+              + jsonString(QueryDB.getQueryCache().getMetrics())
+              + ",\"filters\":"
+              + jsonString(NameFilters.getCurrentMetrics())
+              + ",\"queries\":"
+              + jsonString(QueryMetrics.getMetrics())
+              + ",\"slowQueries\":["
+              + String.join(",", slowQueries)
+              + "]}");
+    }
+  }
+
+  /**
+   * Runs one of the queries of QueryDB with the parameters of the request
+   *
+   * @param queryID the number of the query
+   * @param parameters the parameters of the request, by name
+   * @return the cursor of the query
+   * @throws IllegalArgumentException if the query does not exist or a parameter is missing
+   */
+  private static QueryCursor execute(int queryID, Map<String, String> parameters)
+      throws SQLException, ClassNotFoundException {
+    return switch (queryID) {
+      case 2 -> QueryDB.execute(2, required(parameters, "movie"));
+      case 3 -> QueryDB.execute(
+          3, required(parameters, "actor"), required(parameters, "director"));
+      case 4 -> QueryDB.execute(4, required(parameters, "actor"));
+      case 5 -> parameters.containsKey("genre") && PLAIN_QUERY_5.containsAll(parameters.keySet())
+          ? QueryDB.executeQuery5(
+              parameters.get("genre"),
+              parameters.getOrDefault("critic", QueryDB.DEFAULT_CRITIC_SOURCE))
+          : movieQuery(parameters).cursor().measured(5);
+      case 7 -> QueryDB.execute(7, required(parameters, "search"));
+      case 8 -> QueryDB.execute(8, required(parameters, "movie"));
+      case 9 -> QueryDB.execute(9, required(parameters, "actor"), required(parameters, "other"));
+      case 10 -> QueryDB.execute(10, required(parameters, "actor"), required(parameters, "hops"));
+      case 11 -> QueryDB.execute(11, required(parameters, "prefix"));
+      default -> QueryDB.execute(queryID);
+    };
+  }
+
+  private static MovieQuery movieQuery(Map<String, String> parameters) {
+    MovieQuery query =
+        new MovieQuery()
+            .criticSource(parameters.getOrDefault("critic", QueryDB.DEFAULT_CRITIC_SOURCE));
+
+    try {
+      if (parameters.containsKey("genre")) {
+        query.genre(parameters.get("genre"));
+      }
+      if (parameters.containsKey("actor")) {
+        query.actor(parameters.get("actor"));
+      }
+      if (parameters.containsKey("director")) {
+        query.director(parameters.get("director"));
+      }
+      if (parameters.containsKey("minRating")) {
+        query.minRating(Double.parseDouble(parameters.get("minRating")));
+      }
+      if (parameters.containsKey("maxRating")) {
+        query.maxRating(Double.parseDouble(parameters.get("maxRating")));
+      }
+      if (parameters.containsKey("from")) {
+        query.releasedFrom(Integer.parseInt(parameters.get("from")));
+      }
+      if (parameters.containsKey("to")) {
+        query.releasedTo(Integer.parseInt(parameters.get("to")));
+      }
+      if (parameters.containsKey("limit")) {
+        query.limit(Integer.parseInt(parameters.get("limit")));
+      }
+    } catch (NumberFormatException e) {
+      throw new IllegalArgumentException("The ratings, years and limit have to be numbers");
+    }
+
+    switch (parameters.getOrDefault("sort", "name")) {
+      case "name" -> query.orderBy(MovieQuery.Order.NAME);
+      case "best" -> query.orderBy(MovieQuery.Order.BEST_RATED);
+      case "worst" -> query.orderBy(MovieQuery.Order.WORST_RATED);
+      default -> throw new IllegalArgumentException("The sort has to be name, best or worst");
+    }
+    return query;
+  }
+
+  private static String required(Map<String, String> parameters, String name) {
+    String value = parameters.get(name);
+
+    if (value == null) {
+      throw new IllegalArgumentException("The parameter " + name + " is missing");
+    }
+    return value;
+  }
+
+  private static Map<String, String> parameters(String rawQuery) {
+    Map<String, String> parameters = new HashMap<>();
+
+    if (rawQuery == null || rawQuery.isEmpty()) {
+      return parameters;
+    }
+
+    for (String pair : rawQuery.split("&")) {
+      int equals = pair.indexOf('=');
+      String name = equals < 0 ? pair : pair.substring(0, equals);
+      String value = equals < 0 ? "" : pair.substring(equals + 1);
+      parameters.put(
+          URLDecoder.decode(name, StandardCharsets.UTF_8),
+          URLDecoder.decode(value, StandardCharsets.UTF_8));
+    }
+    return parameters;
+  }
+
+  /**
+   * Turns the rows of a query into a JSON object with the number of the query and one object per
+   * row, using the column names as keys. Names replaced by close ones are given under
+   * "corrections", from the name given to the name used.
+   */
+  private static String toJSON(int queryID, QueryCursor cursor) throws SQLException {
+    ResultSet set = cursor.getResultSet();
+    String[] names = columnNames(set, set.getMetaData().getColumnCount());
+    StringBuilder json = new StringBuilder("{\"query\":").append(queryID).append(",\"rows\":[");
+
+    while (set.next()) {
+      appendRow(json, set, names);
+    }
+    json.append(']');
+
+    if (!cursor.getCorrections().isEmpty()) {
+      json.append(",\"corrections\":{");
+
+      for (Map.Entry<String, String> correction : cursor.getCorrections().entrySet()) {
+        json.append(json.charAt(json.length() - 1) == '{' ? "" : ",")
+            .append(jsonString(correction.getKey()))
+            .append(':')
+            .append(jsonString(correction.getValue()));
+      }
+      json.append('}');
+    }
+
+    return json.append('}').toString();
+  }
+
+  /**
+   * Reads the labels of the first columns of a result set once, already escaped as JSON strings.
+   * Leaving the last columns out allows the key of a paged query to be skipped.
+   */
+  private static String[] columnNames(ResultSet set, int columns) throws SQLException {
+    ResultSetMetaData metaData = set.getMetaData();
+    String[] names = new String[columns];
+
+    for (int i = 0; i < columns; i++) {
+      names[i] = jsonString(metaData.getColumnLabel(i + 1));
+    }
+    return names;
+  }
+
+  /**
+   * Writes the current row of a result set as a JSON object, with one key per column name
+   */
+  private static void appendRow(StringBuilder json, ResultSet set, String[] names)
+      throws SQLException {
+    json.append(json.charAt(json.length() - 1) == '[' ? "{" : ",{");
+
+    for (int i = 0; i < names.length; i++) {
+      String value = set.getString(i + 1);
+      json.append(i == 0 ? "" : ",").append(names[i]).append(':');
+      json.append(value == null ? "null" : jsonString(value));
+    }
+    json.append('}');
+  }
+
+  /**
+   * Escapes a value so that it can be written as a JSON string
+   *
+   * @param value the value that is going to be written
+   * @return the value between quotes, with the special characters escaped
+   */
+  public static String jsonString(String value) {
+    StringBuilder escaped = new StringBuilder(value.length() + 2);
+
+    try {
+      ResultRenderer.appendJSON(escaped, value);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+    return escaped.toString();
+  }
+
+  private static void sendError(HttpExchange exchange, int status, String message)
+      throws IOException {
+    send(exchange, status, "{\"error\":" + jsonString(message) + "}");
+  }
+
+  private static void send(HttpExchange exchange, int status, String body) throws IOException {
+    byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+    exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+    exchange.sendResponseHeaders(status, bytes.length);
+
+    try (OutputStream output = exchange.getResponseBody()) {
+      output.write(bytes);
+    }
+  }
+}
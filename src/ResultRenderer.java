@@ -0,0 +1,351 @@
+import java.io.BufferedWriter;
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Writes the rows of a query to a sink in one of several formats. The names of the columns are
+ * read from the metadata once, when the first row arrives, and everything is written through a
+ * large buffer, so the output is not limited by one call to println per value.
+ *
+ * <p>The formats are:
+ *
+ * <ul>
+ *   <li>ENTRIES: the layout used by QueryDB since the beginning, with an "Entry" line per row and
+ *       a "column: value" line per column
+ *   <li>TABLE: aligned columns under a header. The widths are taken from the first rows, which are
+ *       held back until there are enough of them, and the rest of the rows are streamed
+ *   <li>CSV: a header line and one line per row, quoted as in RFC 4180
+ *   <li>NDJSON: one JSON object per line, with one key per column
+ * </ul>
+ *
+ * @author 230018374
+ */
+public class ResultRenderer implements Flushable {
+  /** Formats the rows can be written in. */
+  public enum Format {
+    ENTRIES,
+    TABLE,
+    CSV,
+    NDJSON
+  }
+
+  /** Format used by QueryDB, set with the moviesdb.format property. */
+  public static final Format DEFAULT_FORMAT = format(System.getProperty("moviesdb.format"));
+
+  /** Size in characters of the buffer in front of the sinks. */
+  public static final int BUFFER_SIZE = 1 << 16;
+
+  /** Rows held back by the TABLE format to work out the width of the columns. */
+  public static final int TABLE_SAMPLE = 1000;
+
+  private static final String NEWLINE = System.lineSeparator();
+
+  private final Format format;
+  private final Writer sink;
+  private final List<String[]> sample = new ArrayList<>();
+  private String[] names;
+  private int[] widths;
+  private long rows;
+
+  /**
+   * Creates a renderer that writes to the passed sink. The sink is flushed when the rows are
+   * finished, but it is never closed.
+   *
+   * @param format the format of the output
+   * @param sink where the output is written. It should already be buffered
+   */
+  public ResultRenderer(Format format, Writer sink) {
+    this.format = format;
+    this.sink = sink;
+  }
+
+  /**
+   * Creates a renderer that writes to the standard output as it is at the moment of the call,
+   * through a buffer of BUFFER_SIZE characters
+   *
+   * @param format the format of the output
+   * @return the renderer for the standard output
+   */
+  public static ResultRenderer toStandardOutput(Format format) {
+    return new ResultRenderer(
+        format,
+        new BufferedWriter(
+            new OutputStreamWriter(System.out, Charset.defaultCharset()), BUFFER_SIZE));
+  }
+
+  /**
+   * Opens a file in UTF-8 behind a buffer of BUFFER_SIZE characters, to be used as the sink of a
+   * renderer. The file is replaced if it already exists, and it has to be closed by the caller
+   * once the rows are finished.
+   *
+   * @param file the file where the output is written
+   * @return the sink of the file
+   * @throws IOException if the file cannot be opened
+   */
+  public static Writer fileSink(Path file) throws IOException {
+    return new BufferedWriter(
+        new OutputStreamWriter(Files.newOutputStream(file), StandardCharsets.UTF_8), BUFFER_SIZE);
+  }
+
+  /**
+   * Reads the name of a format, ignoring its case
+   *
+   * @param name the name of the format. If it is null or not recognised, ENTRIES is used
+   * @return the format with that name
+   */
+  public static Format format(String name) {
+    if (name != null) {
+      for (Format format : Format.values()) {
+        if (format.name().equalsIgnoreCase(name.trim())) {
+          return format;
+        }
+      }
+    }
+    return Format.ENTRIES;
+  }
+
+  /**
+   * Writes every remaining row of the result set and finishes the output
+   *
+   * @param set the result set returned by a query
+   * @return the amount of rows written
+   * @throws SQLException if the rows cannot be read
+   * @throws IOException if the output cannot be written
+   */
+  public long render(ResultSet set) throws SQLException, IOException {
+    int columns = set.getMetaData().getColumnCount();
+
+    while (set.next()) {
+      row(set, columns);
+    }
+    return finish();
+  }
+
+  /**
+   * Writes the current row of a result set. The first call also reads the names of the columns
+   * and writes the header of the format.
+   *
+   * @param set the result set, already placed on the row that is going to be written
+   * @param columns the amount of columns written, counting from the first one. The rest are left
+   *     out, which allows the key of a paged query to be skipped
+   * @throws SQLException if the row cannot be read
+   * @throws IOException if the output cannot be written
+   */
+  public void row(ResultSet set, int columns) throws SQLException, IOException {
+    if (names == null) {
+      ResultSetMetaData metaData = set.getMetaData();
+      names = new String[columns];
+
+      for (int i = 0; i < columns; i++) {
+        names[i] = metaData.getColumnLabel(i + 1);
+      }
+      header();
+    }
+
+    String[] values = new String[names.length];
+
+    for (int i = 0; i < values.length; i++) {
+      values[i] = set.getString(i + 1);
+    }
+
+    rows++;
+    write(values);
+  }
+
+  /**
+   * Writes whatever rows are held back and flushes the sink
+   *
+   * @return the amount of rows written
+   * @throws IOException if the output cannot be written
+   */
+  public long finish() throws IOException {
+    if (format == Format.TABLE && widths == null && names != null) {
+      tableHeader();
+    }
+    flush();
+    return rows;
+  }
+
+  /**
+   * Flushes the sink without finishing the output
+   *
+   * @throws IOException if the output cannot be written
+   */
+  @Override
+  public void flush() throws IOException {
+    sink.flush();
+  }
+
+  /**
+   * Standard getter for the amount of rows written so far
+   *
+   * @return the amount of rows
+   */
+  public long getRowCount() {
+    return rows;
+  }
+
+  /**
+   * Writes a value as a JSON string, between quotes and with the special characters escaped
+   *
+   * @param out where the value is written
+   * @param value the value that is going to be written
+   * @throws IOException if the value cannot be written
+   */
+  public static void appendJSON(Appendable out, String value) throws IOException {
+    out.append('"');
+
+    for (int i = 0; i < value.length(); i++) {
+      char c = value.charAt(i);
+
+      switch (c) {
+        case '"' -> out.append("\\\"");
+        case '\\' -> out.append("\\\\");
+        case '\n' -> out.append("\\n");
+        case '\r' -> out.append("\\r");
+        case '\t' -> out.append("\\t");
+        default -> {
+          if (c < 0x20) {
+            out.append(String.format("\\u%04x", (int) c));
+          } else {
+            out.append(c);
+          }
+        }
+      }
+    }
+
+    out.append('"');
+  }
+
+  private void header() throws IOException {
+    if (format == Format.CSV) {
+      for (int i = 0; i < names.length; i++) {
+        if (i > 0) {
+          sink.write(',');
+        }
+        csv(names[i]);
+      }
+      sink.write(NEWLINE);
+    }
+  }
+
+  private void write(String[] values) throws IOException {
+    switch (format) {
+      case ENTRIES -> {
+        sink.write("Entry " + rows + NEWLINE);
+
+        for (int i = 0; i < values.length; i++) {
+          sink.write(names[i]);
+          sink.write(": ");
+          sink.write(String.valueOf(values[i]));
+          sink.write(NEWLINE);
+        }
+      }
+      case TABLE -> {
+        if (widths == null) {
+          sample.add(values);
+
+          if (sample.size() >= TABLE_SAMPLE) {
+            tableHeader();
+          }
+        } else {
+          tableRow(values);
+        }
+      }
+      case CSV -> {
+        for (int i = 0; i < values.length; i++) {
+          if (i > 0) {
+            sink.write(',');
+          }
+          if (values[i] != null) {
+            csv(values[i]);
+          }
+        }
+        sink.write(NEWLINE);
+      }
+      case NDJSON -> {
+        sink.write('{');
+
+        for (int i = 0; i < values.length; i++) {
+          if (i > 0) {
+            sink.write(',');
+          }
+          appendJSON(sink, names[i]);
+          sink.write(':');
+
+          if (values[i] == null) {
+            sink.write("null");
+          } else {
+            appendJSON(sink, values[i]);
+          }
+        }
+        sink.write('}');
+        sink.write(NEWLINE);
+      }
+    }
+  }
+
+  private void tableHeader() throws IOException {
+    widths = new int[names.length];
+
+    for (int i = 0; i < names.length; i++) {
+      widths[i] = names[i].length();
+
+      for (String[] values : sample) {
+        widths[i] = Math.max(widths[i], String.valueOf(values[i]).length());
+      }
+    }
+
+    tableRow(names);
+    String[] rule = new String[names.length];
+
+    for (int i = 0; i < names.length; i++) {
+      rule[i] = "-".repeat(widths[i]);
+    }
+    tableRow(rule);
+
+    for (String[] values : sample) {
+      tableRow(values);
+    }
+    sample.clear();
+  }
+
+  private void tableRow(String[] values) throws IOException {
+    StringBuilder line = new StringBuilder();
+
+    for (int i = 0; i < values.length; i++) {
+      String value = String.valueOf(values[i]);
+      line.append(i == 0 ? "" : " | ").append(value);
+
+      if (i < values.length - 1) {
+        line.append(" ".repeat(Math.max(0, widths[i] - value.length())));
+      }
+    }
+    sink.write(line.toString());
+    sink.write(NEWLINE);
+  }
+
+  private void csv(String value) throws IOException {
+    if (value.indexOf(',') < 0
+        && value.indexOf('"') < 0
+        && value.indexOf('\n') < 0
+        && value.indexOf('\r') < 0) {
+      sink.write(value);
+    } else {
+      sink.write('"');
+      sink.write(value.replace("\"", "\"\""));
+      sink.write('"');
+    }
+  }
+}
@@ -0,0 +1,203 @@
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * Inverted index from the trigrams (groups of three characters) of a list of names to the names
+ * that contain them, used to find the names closest to one that has been misspelled. Two names
+ * are compared by the Jaccard similarity of their sets of trigrams: the amount of trigrams they
+ * share divided by the amount of different trigrams between the two of them.
+ *
+ * <p>Names are compared in lower case, with everything that is not a letter or a digit taken as a
+ * single space and with two spaces at the start and one at the end, so short words and the start
+ * of the name count for more. "Nolan" becomes the trigrams "  n", " no", "nol", "ola", "lan" and
+ * "an ".
+ *
+ * <p>The trigrams are packed in a long each and kept sorted, and the names of every trigram are
+ * kept in compressed sparse row form, so a lookup is a binary search per trigram of the misspelled
+ * name followed by a count over the names that share any trigram with it.
+ *
+ * @author 230018374
+ */
+public class TrigramIndex {
+  /** Lowest similarity for a name to be taken as a match, set with moviesdb.fuzzy.threshold. */
+  public static final double DEFAULT_THRESHOLD =
+      Double.parseDouble(System.getProperty("moviesdb.fuzzy.threshold", "0.4"));
+
+  private final String[] names;
+  private final Set<String> exact;
+  private final int[] gramCounts;
+  private final long[] grams;
+  private final int[] gramStart;
+  private final int[] gramNames;
+
+  /**
+   * Builds the index of a list of names
+   *
+   * @param names the names, in any order. Null values are left out
+   */
+  public TrigramIndex(List<String> names) {
+    this.names = names.stream().filter(name -> name != null).toArray(String[]::new);
+    this.exact = new HashSet<>(Arrays.asList(this.names));
+    this.gramCounts = new int[this.names.length];
+    long[][] nameGrams = new long[this.names.length][];
+    int total = 0;
+
+    for (int i = 0; i < this.names.length; i++) {
+      nameGrams[i] = trigrams(this.names[i]);
+      gramCounts[i] = nameGrams[i].length;
+      total += gramCounts[i];
+    }
+
+    long[] all = new long[total];
+    int position = 0;
+
+    for (long[] current : nameGrams) {
+      System.arraycopy(current, 0, all, position, current.length);
+      position += current.length;
+    }
+    this.grams = distinct(all);
+    this.gramStart = new int[grams.length + 1];
+    this.gramNames = new int[total];
+
+    for (long[] current : nameGrams) {
+      for (long gram : current) {
+        gramStart[Arrays.binarySearch(grams, gram) + 1]++;
+      }
+    }
+    for (int i = 1; i < gramStart.length; i++) {
+      gramStart[i] += gramStart[i - 1];
+    }
+
+    int[] next = Arrays.copyOf(gramStart, grams.length);
+
+    for (int i = 0; i < nameGrams.length; i++) {
+      for (long gram : nameGrams[i]) {
+        gramNames[next[Arrays.binarySearch(grams, gram)]++] = i;
+      }
+    }
+  }
+
+  /**
+   * Finds the name most similar to the passed one
+   *
+   * @param name the name that is looked up, which might be misspelled
+   * @param threshold the lowest similarity accepted, between 0 and 1
+   * @return the most similar name, or null if no name is at least as similar as the threshold. If
+   *     several names are just as similar, the shortest one is given
+   */
+  public String bestMatch(String name, double threshold) {
+    if (name == null) {
+      return null;
+    }
+
+    long[] query = trigrams(name);
+    int[] shared = new int[names.length];
+    int[] candidates = new int[names.length];
+    int candidateCount = 0;
+
+    for (long gram : query) {
+      int g = Arrays.binarySearch(grams, gram);
+
+      if (g >= 0) {
+        for (int i = gramStart[g]; i < gramStart[g + 1]; i++) {
+          if (shared[gramNames[i]]++ == 0) {
+            candidates[candidateCount++] = gramNames[i];
+          }
+        }
+      }
+    }
+
+    int best = -1;
+    double bestSimilarity = 0;
+
+    for (int i = 0; i < candidateCount; i++) {
+      int candidate = candidates[i];
+      double similarity =
+          (double) shared[candidate] / (query.length + gramCounts[candidate] - shared[candidate]);
+
+      if (similarity > bestSimilarity
+          || (similarity == bestSimilarity && names[candidate].length() < names[best].length())) {
+        best = candidate;
+        bestSimilarity = similarity;
+      }
+    }
+
+    return best >= 0 && bestSimilarity >= threshold ? names[best] : null;
+  }
+
+  /**
+   * Works out the similarity of two names in the same way the index compares them
+   *
+   * @param first one of the names
+   * @param second the other name
+   * @return the Jaccard similarity of their trigrams, between 0 and 1
+   */
+  public static double similarity(String first, String second) {
+    long[] a = trigrams(first);
+    long[] b = trigrams(second);
+    int shared = 0;
+
+    for (int i = 0, j = 0; i < a.length && j < b.length; ) {
+      if (a[i] == b[j]) {
+        shared++;
+        i++;
+        j++;
+      } else if (a[i] < b[j]) {
+        i++;
+      } else {
+        j++;
+      }
+    }
+    return a.length + b.length == 0 ? 1 : (double) shared / (a.length + b.length - shared);
+  }
+
+  /**
+   * Checks if a name is in the index exactly as it is written
+   *
+   * @param name the name that is looked up
+   * @return true if the index holds that exact name
+   */
+  public boolean contains(String name) {
+    return exact.contains(name);
+  }
+
+  /**
+   * Standard getter for the amount of names in the index
+   *
+   * @return the amount of names
+   */
+  public int getSize() {
+    return names.length;
+  }
+
+  // The distinct trigrams of a name, sorted, with each one packed as three 16 bit characters
+  private static long[] trigrams(String name) {
+    String normalised =
+        "  " + name.toLowerCase(Locale.ROOT).replaceAll("[^\\p{L}\\p{N}]+", " ").strip() + " ";
+    long[] found = new long[normalised.length() - 2];
+
+    for (int i = 0; i < found.length; i++) {
+      found[i] =
+          ((long) normalised.charAt(i) << 32)
+              | ((long) normalised.charAt(i + 1) << 16)
+              | normalised.charAt(i + 2);
+    }
+    return distinct(found);
+  }
+
+  private static long[] distinct(long[] values) {
+    long[] sorted = values.clone();
+    Arrays.sort(sorted);
+    int size = 0;
+
+    for (int i = 0; i < sorted.length; i++) {
+      if (size == 0 || sorted[size - 1] != sorted[i]) {
+        sorted[size++] = sorted[i];
+      }
+    }
+    return Arrays.copyOf(sorted, size);
+  }
+}